@@ -0,0 +1,98 @@
+import benchmark.ParserHarness;
+
+import java.nio.ByteBuffer;
+
+public class DefaultParserHarness implements ParserHarness {
+
+    @Override
+    public Object grammar(String fileName) throws Throwable {
+        return new Grammar(fileName);
+    }
+
+    @Override
+    public Object parseTable(Object grammar) throws Throwable {
+        ParseTable parseTable = new ParseTable((Grammar) grammar);
+        parseTable.generate();
+        return parseTable;
+    }
+
+    @Override
+    public Object parser(Object grammar) throws Throwable {
+        return new TableDrivenParser((Grammar) grammar);
+    }
+
+    @Override
+    public Object parser(Object grammar, boolean compressed) throws Throwable {
+        return new TableDrivenParser((ParseTable) parseTable(grammar, compressed));
+    }
+
+    @Override
+    public Object parallelParser(Object grammar) throws Throwable {
+        return new ParallelParser(new TableDrivenParser((Grammar) grammar), "|", "^");
+    }
+
+    @Override
+    public Object parseTable(Object grammar, boolean compressed) throws Throwable {
+        ParseTable parseTable = new ParseTable((Grammar) grammar);
+        parseTable.generate(compressed ? 0 : Integer.MAX_VALUE);
+        return parseTable;
+    }
+
+    @Override
+    public int ruleToApply(Object parseTable, int nonTerminal, int terminal) {
+        ParseTable table = (ParseTable) parseTable;
+        return table.ruleToApply(table.symbols().terminalCount() + nonTerminal, terminal);
+    }
+
+    @Override
+    public long tableSizeInBytes(Object parseTable) {
+        return ((ParseTable) parseTable).tableSizeInBytes();
+    }
+
+    @Override
+    public int nonTerminalCount(Object parseTable) {
+        return ((ParseTable) parseTable).symbols().nonTerminalCount();
+    }
+
+    @Override
+    public int terminalCount(Object parseTable) {
+        return ((ParseTable) parseTable).symbols().terminalCount();
+    }
+
+    @Override
+    public Object generatedParser(Object parseTable) throws Throwable {
+        return new ParserGenerator((ParseTable) parseTable).compile("GeneratedParser");
+    }
+
+    @Override
+    public boolean parse(Object parser, String input) {
+        try {
+            return ((Parser) parser).parse(input);
+        } catch (SyntaxException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean parseBytes(Object parser, ByteBuffer input) {
+        try {
+            return ((TableDrivenParser) parser).parse(input);
+        } catch (SyntaxException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Object evaluator(Object parseTable) throws Throwable {
+        return new BooleanEvaluator((ParseTable) parseTable);
+    }
+
+    @Override
+    public int evaluate(Object evaluator, String input) {
+        try {
+            return ((Evaluator) evaluator).valueOf(input);
+        } catch (SyntaxException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of loading a grammar and generating its parse table, for language.bnf
+ * and for synthetic grammars of growing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrammarBenchmark {
+
+    // 0 stands for language.bnf, anything else for a synthetic grammar with that many non terminals
+    @Param({"0", "16", "128", "1024"})
+    public int nonTerminals;
+
+    private ParserHarness harness;
+    private String fileName;
+    private Object grammar;
+
+    @Setup
+    public void setUp() throws Throwable {
+        harness = ParserHarness.load();
+        if(nonTerminals == 0) {
+            fileName = "language.bnf";
+        } else {
+            Path file = Files.createTempFile("synthetic-" + nonTerminals, ".bnf");
+            file.toFile().deleteOnExit();
+            new SyntheticGrammar(nonTerminals, 8, nonTerminals).write(file);
+            fileName = file.toString();
+        }
+        grammar = harness.grammar(fileName);
+    }
+
+    @Benchmark
+    public Object loadGrammar() throws Throwable {
+        return harness.grammar(fileName);
+    }
+
+    @Benchmark
+    public Object generateParseTable() throws Throwable {
+        return harness.parseTable(grammar);
+    }
+}
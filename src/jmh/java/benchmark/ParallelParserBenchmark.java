@@ -0,0 +1,53 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to parse one very long expression of language.bnf sequentially and in parts on the
+ * common fork join pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelParserBenchmark {
+
+    // terms of the expression, about 12 characters each
+    @Param({"100000", "1000000"})
+    public int terms;
+
+    private ParserHarness harness;
+    private Object parser;
+    private Object parallelParser;
+    private String input;
+
+    @Setup
+    public void setUp() throws Throwable {
+        harness = ParserHarness.load();
+        Object grammar = harness.grammar("language.bnf");
+        parser = harness.parser(grammar);
+        parallelParser = harness.parallelParser(grammar);
+        StringBuilder input = new StringBuilder();
+        for(int i = 0; i < terms; i++) {
+            input.append(i % 3 == 0 ? "~1 ^ " : "(0 | 1) ^ ").append(i % 2).append(" | ");
+        }
+        this.input = input.append('1').toString();
+        if(!harness.parse(parallelParser, this.input)) {
+            throw new IllegalStateException("Benchmark input is invalid");
+        }
+    }
+
+    @Benchmark
+    public boolean parse() {
+        return harness.parse(parser, input);
+    }
+
+    @Benchmark
+    public boolean parseParallel() {
+        return harness.parse(parallelParser, input);
+    }
+}
@@ -0,0 +1,57 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of looking up random cells of dense and compressed parse tables of synthetic
+ * grammars of growing size. The memory of each table is printed when it is set up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseTableBenchmark {
+    private static final int LOOKUPS = 4096;
+
+    @Param({"16", "128", "1024"})
+    public int nonTerminals;
+
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    private ParserHarness harness;
+    private Object parseTable;
+    private final int[] rows = new int[LOOKUPS];
+    private final int[] columns = new int[LOOKUPS];
+    private int next;
+
+    @Setup
+    public void setUp() throws Throwable {
+        harness = ParserHarness.load();
+        Path file = Files.createTempFile("synthetic-" + nonTerminals, ".bnf");
+        file.toFile().deleteOnExit();
+        new SyntheticGrammar(nonTerminals, 8, nonTerminals).write(file);
+        parseTable = harness.parseTable(harness.grammar(file.toString()), compressed);
+        System.out.println((compressed ? "Compressed" : "Dense") + " table of " + nonTerminals + " non terminals: "
+                            + harness.tableSizeInBytes(parseTable) + " bytes");
+
+        Random random = new Random(nonTerminals);
+        for(int i = 0; i < LOOKUPS; i++) {
+            rows[i] = random.nextInt(harness.nonTerminalCount(parseTable));
+            columns[i] = random.nextInt(harness.terminalCount(parseTable));
+        }
+    }
+
+    @Benchmark
+    public int ruleToApply() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return harness.ruleToApply(parseTable, rows[next], columns[next]);
+    }
+}
@@ -0,0 +1,101 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing throughput of the table driven parser on language.bnf over short, long and
+ * deeply nested inputs, valid and invalid, compared with the parser written by
+ * ParserGenerator, and of evaluating the same inputs. parseBytes parses the input as bytes,
+ * checked by the Prescanner first.
+ * Run with -prof gc for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"short", "long", "nested"})
+    public String shape;
+
+    @Param({"true", "false"})
+    public boolean valid;
+
+    private ParserHarness harness;
+    private Object parser;
+    private Object generatedParser;
+    private Object evaluator;
+    private String input;
+    private ByteBuffer bytes;
+
+    @Setup
+    public void setUp() throws Throwable {
+        harness = ParserHarness.load();
+        Object grammar = harness.grammar("language.bnf");
+        parser = harness.parser(grammar);
+        Object parseTable = harness.parseTable(grammar);
+        generatedParser = harness.generatedParser(parseTable);
+        evaluator = harness.evaluator(parseTable);
+        input = input(shape, valid);
+        bytes = ByteBuffer.wrap(input.getBytes(StandardCharsets.ISO_8859_1));
+        if(harness.parse(parser, input) != valid) {
+            throw new IllegalStateException("Benchmark input has the wrong validity: " + input);
+        }
+    }
+
+    @Benchmark
+    public boolean parse() {
+        return harness.parse(parser, input);
+    }
+
+    @Benchmark
+    public boolean parseBytes() {
+        return harness.parseBytes(parser, bytes);
+    }
+
+    @Benchmark
+    public boolean parseGenerated() {
+        return harness.parse(generatedParser, input);
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return harness.evaluate(evaluator, input);
+    }
+
+    static String input(String shape, boolean valid) {
+        StringBuilder input = new StringBuilder();
+        switch(shape) {
+            case "short":
+                input.append("~(1 | 0) ^ 1");
+                break;
+            case "long":
+                for(int i = 0; i < 1000; i++) {
+                    input.append(i % 3 == 0 ? "~1 ^ " : "(0 | 1) ^ ").append(i % 2).append(" | ");
+                }
+                input.append('1');
+                break;
+            case "nested":
+                for(int i = 0; i < 1000; i++) {
+                    input.append("~(");
+                }
+                input.append('1');
+                for(int i = 0; i < 1000; i++) {
+                    input.append(')');
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown input shape " + shape);
+        }
+        if(!valid) { // fail at the very end, after all the work of a valid parse
+            input.append(" |");
+        }
+        return input.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package benchmark;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gives the benchmarks access to the parser classes. JMH does not accept benchmarks in
+ * the default package, and the parser classes live there, so the benchmarks go through
+ * this interface. It is implemented by DefaultParserHarness in the default package.
+ * Throwable is declared because the parser exceptions do not extend Exception.
+ */
+public interface ParserHarness {
+
+    Object grammar(String fileName) throws Throwable;
+
+    Object parseTable(Object grammar) throws Throwable;
+
+    Object parser(Object grammar) throws Throwable;
+
+    /**
+     * @return a parser with its own table, compressed or dense whatever its size
+     */
+    Object parser(Object grammar, boolean compressed) throws Throwable;
+
+    /**
+     * @return a ParallelParser of language.bnf, splitting inputs at | and ^
+     */
+    Object parallelParser(Object grammar) throws Throwable;
+
+    /**
+     * @return a table of the grammar, compressed or dense whatever its size
+     */
+    Object parseTable(Object grammar, boolean compressed) throws Throwable;
+
+    /**
+     * @return the production in a cell of the table, looked up by non terminal and terminal index
+     */
+    int ruleToApply(Object parseTable, int nonTerminal, int terminal);
+
+    long tableSizeInBytes(Object parseTable);
+
+    int nonTerminalCount(Object parseTable);
+
+    int terminalCount(Object parseTable);
+
+    /**
+     * @return the parser written by ParserGenerator for the table, compiled at run time
+     */
+    Object generatedParser(Object parseTable) throws Throwable;
+
+    /**
+     * @return true if the input is valid, false on a syntax error
+     */
+    boolean parse(Object parser, String input);
+
+    /**
+     * @return true if the ISO-8859-1 bytes are valid, false on a syntax error
+     */
+    boolean parseBytes(Object parser, ByteBuffer input);
+
+    Object evaluator(Object parseTable) throws Throwable;
+
+    /**
+     * @return the value of the input, or -1 on a syntax error
+     */
+    int evaluate(Object evaluator, String input);
+
+    static ParserHarness load() throws ReflectiveOperationException {
+        return (ParserHarness) Class.forName("DefaultParserHarness").getDeclaredConstructor().newInstance();
+    }
+}
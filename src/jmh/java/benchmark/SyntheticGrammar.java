@@ -0,0 +1,158 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates LL(1) grammars of a chosen size, and random inputs for them.
+ *
+ * Non terminal Xi has one production per leading terminal, all ending in an
+ * optional part Oi and ';':
+ * <pre>
+ * &lt;Xi&gt; ::= 'c'&lt;Xj&gt;&lt;Xk&gt;&lt;Oi&gt;';'    j, k &gt; i
+ * &lt;Oi&gt; ::= '!'&lt;Xj&gt;
+ * &lt;Oi&gt; ::= ''
+ * </pre>
+ * Leading terminals are distinct within a non terminal and every body ends with a
+ * terminal, so the grammar is always LL(1). X0 also has '('&lt;X0&gt;')' for nesting.
+ */
+public class SyntheticGrammar {
+    private static final String LEADING = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    private final int nonTerminals;
+    private final int alternatives;
+    // bodies[i][a] lists the non terminals referenced by alternative a of Xi
+    private final int[][][] bodies;
+    private final char[][] leading;
+    private final int[] optional;
+
+    public SyntheticGrammar(int nonTerminals, int alternatives, long seed) {
+        if(alternatives < 1 || alternatives > LEADING.length()) {
+            throw new IllegalArgumentException("alternatives must be between 1 and " + LEADING.length());
+        }
+        this.nonTerminals = nonTerminals;
+        this.alternatives = alternatives;
+        this.bodies = new int[nonTerminals][alternatives][];
+        this.leading = new char[nonTerminals][alternatives];
+        this.optional = new int[nonTerminals];
+
+        Random random = new Random(seed);
+        for(int i = 0; i < nonTerminals; i++) {
+            List<Character> letters = new ArrayList<>();
+            for(char c : LEADING.toCharArray()) {
+                letters.add(c);
+            }
+            Collections.shuffle(letters, random);
+            for(int a = 0; a < alternatives; a++) {
+                leading[i][a] = letters.get(a);
+                // the first alternative references nothing, so every derivation can end
+                int references = a == 0 || i == nonTerminals - 1 ? 0 : random.nextInt(3);
+                bodies[i][a] = new int[references];
+                for(int r = 0; r < references; r++) {
+                    bodies[i][a][r] = i + 1 + random.nextInt(nonTerminals - i - 1);
+                }
+            }
+            optional[i] = i == nonTerminals - 1 ? -1 : i + 1 + random.nextInt(nonTerminals - i - 1);
+        }
+    }
+
+    public int numberOfProductions() {
+        return nonTerminals * (alternatives + 2) + 1;
+    }
+
+    public List<String> bnf() {
+        List<String> lines = new ArrayList<>();
+        for(int i = 0; i < nonTerminals; i++) {
+            for(int a = 0; a < alternatives; a++) {
+                StringBuilder body = new StringBuilder().append('\'').append(leading[i][a]).append('\'');
+                for(int reference : bodies[i][a]) {
+                    body.append("<X").append(reference).append('>');
+                }
+                body.append("<O").append(i).append(">';'");
+                lines.add("<X" + i + "> ::= " + body);
+            }
+            if(i == 0) {
+                lines.add("<X0> ::= '('<X0>')'");
+            }
+            lines.add("<O" + i + "> ::= '!'" + (optional[i] < 0 ? "'.'" : "<X" + optional[i] + ">"));
+            lines.add("<O" + i + "> ::= ''");
+        }
+        return lines;
+    }
+
+    public Path write(Path file) throws IOException {
+        return Files.write(file, bnf());
+    }
+
+    /**
+     * @param maxDepth depth after which only productions without non terminals are chosen
+     * @param nesting number of parentheses around the input
+     */
+    public String validInput(Random random, int maxDepth, int nesting) {
+        StringBuilder input = new StringBuilder();
+        for(int i = 0; i < nesting; i++) {
+            input.append('(');
+        }
+        derive(0, 0, maxDepth, random, input);
+        for(int i = 0; i < nesting; i++) {
+            input.append(')');
+        }
+        return input.toString();
+    }
+
+    /**
+     * A valid input with one character replaced by a terminal that cannot appear there.
+     */
+    public String invalidInput(Random random, int maxDepth, int nesting) {
+        StringBuilder input = new StringBuilder(validInput(random, maxDepth, nesting));
+        int position = input.length() / 2 + random.nextInt(input.length() - input.length() / 2);
+        input.setCharAt(position, input.charAt(position) == ';' ? ')' : ';');
+        return input.toString();
+    }
+
+    private void derive(int nonTerminal, int depth, int maxDepth, Random random, StringBuilder input) {
+        int a = depth >= maxDepth ? 0 : random.nextInt(alternatives);
+        input.append(leading[nonTerminal][a]);
+        for(int reference : bodies[nonTerminal][a]) {
+            derive(reference, depth + 1, maxDepth, random, input);
+        }
+        if(depth < maxDepth && random.nextBoolean()) {
+            input.append('!');
+            if(optional[nonTerminal] < 0) {
+                input.append('.');
+            } else {
+                derive(optional[nonTerminal], depth + 1, maxDepth, random, input);
+            }
+        }
+        input.append(';');
+    }
+
+    /**
+     * Writes grammars of growing size and matching inputs for producing scaling curves offline.
+     * Usage: SyntheticGrammar outputDirectory [largestNonTerminalCount]
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "build/synthetic");
+        int largest = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        Files.createDirectories(directory);
+
+        Random random = new Random(42);
+        for(int size = 8; size <= largest; size *= 2) {
+            SyntheticGrammar grammar = new SyntheticGrammar(size, 8, size);
+            grammar.write(directory.resolve("grammar-" + size + ".bnf"));
+
+            List<String> inputs = new ArrayList<>();
+            for(int i = 0; i < 1000; i++) {
+                inputs.add(i % 10 == 0 ? grammar.invalidInput(random, 6, i % 4) : grammar.validInput(random, 6, i % 4));
+            }
+            Files.write(directory.resolve("inputs-" + size + ".txt"), inputs);
+            System.out.println("grammar-" + size + ".bnf: " + grammar.numberOfProductions() + " productions");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing throughput on random inputs of synthetic grammars of growing size, with a dense
+ * and a compressed parse table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyntheticParserBenchmark {
+    private static final int INPUTS = 1024;
+
+    @Param({"16", "128", "1024"})
+    public int nonTerminals;
+
+    @Param({"true", "false"})
+    public boolean valid;
+
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    private ParserHarness harness;
+    private Object parser;
+    private String[] inputs = new String[INPUTS];
+    private int next;
+
+    @Setup
+    public void setUp() throws Throwable {
+        harness = ParserHarness.load();
+        SyntheticGrammar grammar = new SyntheticGrammar(nonTerminals, 8, nonTerminals);
+        Path file = Files.createTempFile("synthetic-" + nonTerminals, ".bnf");
+        file.toFile().deleteOnExit();
+        parser = harness.parser(harness.grammar(grammar.write(file).toString()), compressed);
+
+        Random random = new Random(nonTerminals);
+        for(int i = 0; i < INPUTS; i++) {
+            inputs[i] = valid ? grammar.validInput(random, 8, i % 8) : grammar.invalidInput(random, 8, i % 8);
+        }
+    }
+
+    @Benchmark
+    public boolean parse() {
+        next = (next + 1) & (INPUTS - 1);
+        return harness.parse(parser, inputs[next]);
+    }
+}
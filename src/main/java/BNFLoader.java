@@ -0,0 +1,413 @@
+import java.util.*;
+
+/**
+ * Reads the productions of a BNF grammar in a single pass over its text, interning
+ * every symbol as it goes. The result is the symbol names in id order and every
+ * production as arrays of symbol ids, ready for Grammar.
+ *
+ * Syntax:
+ * <pre>
+ * # a comment, up to the end of the line
+ * &lt;A&gt; ::= &lt;B&gt;'+'&lt;C&gt; | 'if' [identifier] | ''
+ *       | '('&lt;A&gt;')'{action}
+ * </pre>
+ * Alternatives are separated by |, on the same line or at the start of the following
+ * lines. '' on its own is the empty body. Blank lines are ignored. The head of the
+ * first production is the start symbol.
+ */
+class BNFLoader {
+    private static final int TERMINAL = 0;
+    private static final int NON_TERMINAL = 1;
+    private static final int ACTION = 2;
+    // symbols are stored as ordinal << KIND_BITS | kind until the ids are known
+    private static final int KIND_BITS = 2;
+
+    private final CharSequence text;
+    private int position;
+    private int line = 1;
+    private int lineStart;
+
+    private final Map<String, Integer> terminalOrdinals = new HashMap<>();
+    private final List<String> terminals = new ArrayList<>();
+    private final Map<String, Integer> nonTerminalOrdinals = new HashMap<>();
+    private final List<String> nonTerminals = new ArrayList<>();
+    // ordinal of every non terminal with a production, in order of its first production
+    private final List<Integer> defined = new ArrayList<>();
+    private final BitSet isDefined = new BitSet();
+    private final Map<String, Integer> actionOrdinals = new HashMap<>();
+    private final List<String> actions = new ArrayList<>();
+
+    private final List<Integer> heads = new ArrayList<>();
+    private final List<int[]> bodies = new ArrayList<>();
+    private final List<String> bodyTexts = new ArrayList<>();
+    private final StringBuilder name = new StringBuilder();
+
+    // results, see load
+    private List<String> nonTerminalOrder;
+    private int[] productionHeads;
+    private int[][] productionSymbols;
+    private int[][] productionSteps;
+
+    BNFLoader(CharSequence text) {
+        this.text = text;
+    }
+
+    /**
+     * Reads the whole text. EOF is added as the last terminal.
+     */
+    void load() throws BNFGrammarException {
+        while(skipBlankLines()) {
+            production();
+        }
+        if(heads.isEmpty()) {
+            throw new BNFGrammarException("The grammar has no productions");
+        }
+        if(!terminalOrdinals.containsKey(Grammar.EOF)) {
+            terminals.add(Grammar.EOF);
+        }
+        intern();
+    }
+
+    String startSymbol() {
+        return nonTerminals.get(heads.get(0));
+    }
+
+    /**
+     * @return the terminal names in id order
+     */
+    List<String> terminals() {
+        return terminals;
+    }
+
+    /**
+     * @return the non terminal names in id order: defined ones in the order of their first
+     *         production, then those that are used but not defined
+     */
+    List<String> nonTerminals() {
+        return nonTerminalOrder;
+    }
+
+    List<String> actions() {
+        return actions;
+    }
+
+    int numberOfProductions() {
+        return heads.size();
+    }
+
+    int productionHead(int production) {
+        return productionHeads[production];
+    }
+
+    int[] productionSymbols(int production) {
+        return productionSymbols[production];
+    }
+
+    int[] productionSteps(int production) {
+        return productionSteps[production];
+    }
+
+    String productionBody(int production) {
+        return bodyTexts.get(production);
+    }
+
+    private void production() throws BNFGrammarException {
+        if(peek() != '<') {
+            throw error("Production head must be enclosed in angular brackets <>");
+        }
+        int head = nonTerminal(bracketed('>'));
+        if(!isDefined.get(head)) {
+            isDefined.set(head);
+            defined.add(head);
+        }
+
+        skipSpaces();
+        if(!lookingAt("::=")) {
+            throw error("Expected ::= after the production head");
+        }
+        position += 3;
+        do {
+            alternative(head);
+        } while(nextAlternative());
+    }
+
+    private void alternative(int head) throws BNFGrammarException {
+        skipSpaces();
+        int start = position;
+        int end = position;
+        int[] symbols = new int[8];
+        int count = 0;
+        boolean epsilon = false;
+        while(true) {
+            skipSpaces();
+            char c = peek();
+            if(c == 0 || c == '\n' || c == '\r' || c == '|' || c == '#') {
+                break;
+            }
+            int tokenStart = position;
+            int symbol;
+            switch(c) {
+                case '<':
+                    symbol = nonTerminal(bracketed('>')) << KIND_BITS | NON_TERMINAL;
+                    break;
+                case '[':
+                    String tokenClass = "[" + bracketed(']') + "]";
+                    if(!tokenClass.equals(Lexer.IDENTIFIER) && !tokenClass.equals(Lexer.NUMBER)) {
+                        position = tokenStart;
+                        throw error("Unknown token class " + tokenClass);
+                    }
+                    symbol = terminal(tokenClass) << KIND_BITS | TERMINAL;
+                    break;
+                case '{':
+                    String action = bracketed('}');
+                    if(action.isEmpty()) {
+                        position = tokenStart;
+                        throw error("Empty action {}");
+                    }
+                    symbol = action(action) << KIND_BITS | ACTION;
+                    break;
+                case '\'':
+                    if(lookingAt("''")) {
+                        position += 2;
+                        epsilon = true;
+                        end = position;
+                        continue;
+                    }
+                    symbol = terminal(quoted()) << KIND_BITS | TERMINAL;
+                    break;
+                default:
+                    throw error("Unexpected character " + c);
+            }
+            if(count == symbols.length) {
+                symbols = Arrays.copyOf(symbols, count * 2);
+            }
+            symbols[count++] = symbol;
+            end = position;
+        }
+
+        if(epsilon && count > 0) {
+            throw error("'' must be the whole body of a production");
+        }
+        if(!epsilon && count == 0) {
+            throw error("Empty alternative, use '' for an empty body");
+        }
+        heads.add(head);
+        bodies.add(Arrays.copyOf(symbols, count));
+        bodyTexts.add(epsilon ? "" : text.subSequence(start, end).toString());
+    }
+
+    /**
+     * Moves past the | of the next alternative of the current production, if there is one.
+     */
+    private boolean nextAlternative() {
+        if(peek() == '|') {
+            ++position;
+            return true;
+        }
+        // an alternative can also start a following line
+        int savedPosition = position;
+        int savedLine = line;
+        int savedLineStart = lineStart;
+        if(skipBlankLines() && peek() == '|') {
+            ++position;
+            return true;
+        }
+        position = savedPosition;
+        line = savedLine;
+        lineStart = savedLineStart;
+        return false;
+    }
+
+    /**
+     * Skips whitespace, comments and line ends.
+     * @return false at the end of the text
+     */
+    private boolean skipBlankLines() {
+        while(position < text.length()) {
+            char c = text.charAt(position);
+            if(c == '\n') {
+                ++position;
+                ++line;
+                lineStart = position;
+            } else if(c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+                ++position;
+            } else if(c == '#') {
+                while(position < text.length() && text.charAt(position) != '\n') {
+                    ++position;
+                }
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipSpaces() {
+        while(position < text.length() && (text.charAt(position) == ' ' || text.charAt(position) == '\t')) {
+            ++position;
+        }
+    }
+
+    /**
+     * Reads from an opening bracket to the closing one, which must be on the same line.
+     * @return the text in between
+     */
+    private String bracketed(char close) throws BNFGrammarException {
+        int start = position;
+        ++position;
+        while(position < text.length() && text.charAt(position) != close && text.charAt(position) != '\n') {
+            ++position;
+        }
+        if(position == text.length() || text.charAt(position) != close) {
+            position = start;
+            throw error("Missing closing brackets " + close);
+        }
+        String inside = text.subSequence(start + 1, position).toString();
+        ++position;
+        return inside;
+    }
+
+    /**
+     * Reads a quoted terminal. \' and \\ stand for ' and \.
+     * @return the terminal without quotes
+     */
+    private String quoted() throws BNFGrammarException {
+        int start = position;
+        ++position;
+        name.setLength(0);
+        while(position < text.length()) {
+            char c = text.charAt(position);
+            if(c == '\'') {
+                ++position;
+                return name.toString();
+            }
+            if(c == '\n') {
+                break;
+            }
+            if(c == '\\' && position + 1 < text.length()) {
+                c = text.charAt(++position);
+            }
+            name.append(c);
+            ++position;
+        }
+        position = start;
+        throw error("Missing closing apostrophe '");
+    }
+
+    private int terminal(String terminal) {
+        Integer ordinal = terminalOrdinals.get(terminal);
+        if(ordinal == null) {
+            ordinal = terminals.size();
+            terminalOrdinals.put(terminal, ordinal);
+            terminals.add(terminal);
+        }
+        return ordinal;
+    }
+
+    private int nonTerminal(String nonTerminal) {
+        Integer ordinal = nonTerminalOrdinals.get(nonTerminal);
+        if(ordinal == null) {
+            ordinal = nonTerminals.size();
+            nonTerminalOrdinals.put(nonTerminal, ordinal);
+            nonTerminals.add(nonTerminal);
+        }
+        return ordinal;
+    }
+
+    private int action(String action) {
+        Integer ordinal = actionOrdinals.get(action);
+        if(ordinal == null) {
+            ordinal = actions.size();
+            actionOrdinals.put(action, ordinal);
+            actions.add(action);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Turns the ordinals of the productions into symbol ids, see SymbolTable.
+     */
+    private void intern() {
+        int terminalCount = terminals.size();
+        int symbolCount = terminalCount + nonTerminals.size();
+        int[] nonTerminalIds = new int[nonTerminals.size()];
+        nonTerminalOrder = new ArrayList<>(nonTerminals.size());
+        for(int ordinal : defined) {
+            nonTerminalIds[ordinal] = terminalCount + nonTerminalOrder.size();
+            nonTerminalOrder.add(nonTerminals.get(ordinal));
+        }
+        for(int ordinal = 0; ordinal < nonTerminals.size(); ordinal++) {
+            if(!isDefined.get(ordinal)) {
+                nonTerminalIds[ordinal] = terminalCount + nonTerminalOrder.size();
+                nonTerminalOrder.add(nonTerminals.get(ordinal));
+            }
+        }
+
+        // productions are grouped by head, in the order of the first production of each head
+        int productions = heads.size();
+        int[] order = new int[productions];
+        int[] firstOfHead = new int[nonTerminals.size() + 1];
+        for(int head : heads) {
+            ++firstOfHead[nonTerminalIds[head] - terminalCount + 1];
+        }
+        for(int i = 1; i < firstOfHead.length; i++) {
+            firstOfHead[i] += firstOfHead[i - 1];
+        }
+        for(int production = 0; production < productions; production++) {
+            order[firstOfHead[nonTerminalIds[heads.get(production)] - terminalCount]++] = production;
+        }
+
+        List<String> texts = new ArrayList<>(bodyTexts);
+        productionHeads = new int[productions];
+        productionSymbols = new int[productions][];
+        productionSteps = new int[productions][];
+        for(int production = 0; production < productions; production++) {
+            productionHeads[production] = nonTerminalIds[heads.get(order[production])];
+            bodyTexts.set(production, texts.get(order[production]));
+            int[] body = bodies.get(order[production]);
+            int[] steps = new int[body.length];
+            int symbolCountOfBody = 0;
+            for(int i = 0; i < body.length; i++) {
+                int ordinal = body[i] >>> KIND_BITS;
+                switch(body[i] & ((1 << KIND_BITS) - 1)) {
+                    case TERMINAL:
+                        steps[i] = ordinal;
+                        ++symbolCountOfBody;
+                        break;
+                    case NON_TERMINAL:
+                        steps[i] = nonTerminalIds[ordinal];
+                        ++symbolCountOfBody;
+                        break;
+                    default:
+                        steps[i] = symbolCount + ordinal;
+                }
+            }
+            productionSteps[production] = steps;
+            if(symbolCountOfBody == steps.length) { // no actions
+                productionSymbols[production] = steps;
+            } else {
+                productionSymbols[production] = Arrays.stream(steps).filter(step -> step < symbolCount).toArray();
+            }
+        }
+    }
+
+    private char peek() {
+        return position < text.length() ? text.charAt(position) : 0;
+    }
+
+    private boolean lookingAt(String expected) {
+        if(position + expected.length() > text.length()) {
+            return false;
+        }
+        for(int i = 0; i < expected.length(); i++) {
+            if(text.charAt(position + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private BNFGrammarException error(String message) {
+        return new BNFGrammarException("Line " + line + ", column " + (position - lineStart + 1) + ": " + message);
+    }
+}
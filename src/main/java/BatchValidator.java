@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Validates many independent inputs in parallel with one shared parser.
+ * Every input gets a ValidationResult; nothing is thrown for invalid inputs.
+ */
+public class BatchValidator {
+    // inputs validated by one task before it stops splitting
+    private static final int TASK_SIZE = 256;
+    // inputs read ahead from a stream before they are validated together
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final Parser parser;
+    private final ForkJoinPool pool;
+
+    public BatchValidator(Parser parser) {
+        this(parser, ForkJoinPool.commonPool());
+    }
+
+    public BatchValidator(Parser parser, ForkJoinPool pool) {
+        this.parser = parser;
+        this.pool = pool;
+    }
+
+    public ValidationResult validate(long index, String input) {
+        try {
+            parser.parse(input);
+            return ValidationResult.valid(index);
+        } catch (SyntaxException e) {
+            return ValidationResult.invalid(index, e);
+        }
+    }
+
+    /**
+     * @return the result of every input, in the order of the inputs
+     */
+    public List<ValidationResult> validate(List<String> inputs) {
+        if(!(inputs instanceof RandomAccess)) {
+            inputs = new ArrayList<>(inputs);
+        }
+        ValidationResult[] results = new ValidationResult[inputs.size()];
+        pool.invoke(new ValidateRange(inputs, 0, 0, inputs.size(), results));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Validates a stream of inputs a block at a time, so the stream can be much larger than memory.
+     * Results are handed to the consumer in input order, on the calling thread.
+     * @return the number of invalid inputs
+     */
+    public long validate(Stream<String> inputs, Consumer<ValidationResult> results) {
+        long invalid = 0;
+        long index = 0;
+        List<String> block = new ArrayList<>(BLOCK_SIZE);
+        ValidationResult[] blockResults = new ValidationResult[BLOCK_SIZE];
+
+        Iterator<String> iterator = inputs.iterator();
+        while(iterator.hasNext()) {
+            block.add(iterator.next());
+            if(block.size() == BLOCK_SIZE || !iterator.hasNext()) {
+                pool.invoke(new ValidateRange(block, index, 0, block.size(), blockResults));
+                for(int i = 0; i < block.size(); i++) {
+                    if(!blockResults[i].isValid()) {
+                        ++invalid;
+                    }
+                    results.accept(blockResults[i]);
+                    blockResults[i] = null;
+                }
+                index += block.size();
+                block.clear();
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * Validates every line of a file as a separate input.
+     * @return the number of invalid lines
+     */
+    public long validateLines(Path file, Consumer<ValidationResult> results) throws IOException {
+        try(Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return validate(lines, results);
+        }
+    }
+
+    private class ValidateRange extends RecursiveAction {
+        private final List<String> inputs;
+        private final long firstIndex;
+        private final int from;
+        private final int to;
+        private final ValidationResult[] results;
+
+        ValidateRange(List<String> inputs, long firstIndex, int from, int to, ValidationResult[] results) {
+            this.inputs = inputs;
+            this.firstIndex = firstIndex;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= TASK_SIZE) {
+                for(int i = from; i < to; i++) {
+                    results[i] = validate(firstIndex + i, inputs.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ValidateRange(inputs, firstIndex, from, middle, results),
+                        new ValidateRange(inputs, firstIndex, middle, to, results));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Evaluates the boolean expressions of language.bnf: 0 and 1 combined with
+ * | (or), ^ (and) and ~ (not). Values are 0 and 1 on the value stack.
+ */
+public class BooleanEvaluator extends Evaluator {
+    private static final int TRUE = 0;
+    private static final int FALSE = 1;
+    private static final int NOT = 2;
+    private static final int AND = 3;
+    private static final int OR = 4;
+
+    // the operation of every action of the grammar
+    private final int[] operations;
+
+    /**
+     * @throws BNFGrammarException if the grammar uses an action other than
+     *                             {true}, {false}, {not}, {and} and {or}
+     */
+    public BooleanEvaluator(ParseTable parseTable) throws BNFGrammarException {
+        this(parseTable, ParserLimits.NONE);
+    }
+
+    public BooleanEvaluator(ParseTable parseTable, ParserLimits limits) throws BNFGrammarException {
+        super(parseTable, limits);
+        this.operations = new int[parseTable.actionCount()];
+        for(int action = 0; action < operations.length; action++) {
+            operations[action] = operationOf(parseTable.actionName(action));
+        }
+    }
+
+    private static int operationOf(String action) throws BNFGrammarException {
+        switch(action) {
+            case "true":
+                return TRUE;
+            case "false":
+                return FALSE;
+            case "not":
+                return NOT;
+            case "and":
+                return AND;
+            case "or":
+                return OR;
+            default:
+                throw new BNFGrammarException("Unknown action {" + action + "} in a boolean grammar");
+        }
+    }
+
+    public boolean evaluate(final CharSequence input) throws SyntaxException {
+        return valueOf(input) != 0;
+    }
+
+    @Override
+    protected int arity(String action) throws BNFGrammarException {
+        switch(operationOf(action)) {
+            case NOT:
+                return 1;
+            case AND:
+            case OR:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    protected void apply(int action, ParseStack values) {
+        switch(operations[action]) {
+            case TRUE:
+                values.push(1);
+                break;
+            case FALSE:
+                values.push(0);
+                break;
+            case NOT:
+                values.push(values.pop() ^ 1);
+                break;
+            case AND:
+                values.push(values.pop() & values.pop());
+                break;
+            case OR:
+                values.push(values.pop() | values.pop());
+                break;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Remembers the results of a TableDrivenParser, and of an Evaluator of the same table, for
+ * inputs seen before, so a repeated input is answered without parsing it again. Valid inputs
+ * and syntax errors are both cached, values are cached once an input has been evaluated.
+ *
+ * The cache is bounded by an estimate of the memory of its entries and evicts the entries
+ * used least recently. It is split in segments with a lock each, so threads using different
+ * segments do not wait for each other.
+ *
+ * When every terminal of the grammar is one character long and there are no identifiers or
+ * numbers, whitespace cannot change how an input is split into terminals, and inputs that
+ * only differ in whitespace share one entry. Their errors are at different offsets, so an
+ * error is only reused for exactly the same input.
+ *
+ * Errors of limits, ParseLimitException, are not cached. valueOf checks an input with the
+ * parser before evaluating it, so the limits and the lookahead of the parser decide whether
+ * an input is valid, whichever method is called first.
+ */
+public class CachingParser implements Parser {
+    // bytes of an entry besides its characters: the entry, the key and the result objects
+    static final int ENTRY_OVERHEAD = 128;
+
+    private final TableDrivenParser parser;
+    // null if values are not computed
+    private final Evaluator evaluator;
+    private final boolean ignoresWhitespace;
+    private final Cache<String, Result> results;
+
+    public CachingParser(TableDrivenParser parser, long maximumBytes) {
+        this(parser, null, maximumBytes);
+    }
+
+    /**
+     * @param evaluator computes the values of valueOf, for the same table as the parser
+     * @param maximumBytes the estimated memory of the cached entries, at most
+     */
+    public CachingParser(TableDrivenParser parser, Evaluator evaluator, long maximumBytes) {
+        this.parser = parser;
+        this.evaluator = evaluator;
+        Lexer lexer = parser.parseTable().lexer();
+        this.ignoresWhitespace = !lexer.hasTokenClasses() && lexer.longestLiteral() <= 1;
+        this.results = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((String key, Result result) -> result.weight(key))
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public boolean parse(String input) throws SyntaxException {
+        String key = keyOf(input);
+        Result result = key == null ? null : results.getIfPresent(key);
+        if(result == null || !result.answers(input)) {
+            result = cache(key, input, parsed(input));
+        }
+        if(result.error != null) {
+            throw result.error.toException();
+        }
+        return true;
+    }
+
+    /**
+     * @return the value of the input computed by the evaluator
+     * @throws IllegalStateException if the parser was created without an evaluator
+     */
+    public int valueOf(String input) throws SyntaxException {
+        if(evaluator == null) {
+            throw new IllegalStateException("The parser was created without an evaluator");
+        }
+        String key = keyOf(input);
+        Result result = key == null ? null : results.getIfPresent(key);
+        if(result == null || !result.answers(input)) {
+            result = cache(key, input, evaluated(input, parsed(input)));
+        } else if(result.error == null && !result.evaluated) {
+            result = cache(key, input, evaluated(input, result));
+        }
+        if(result.error != null) {
+            throw result.error.toException();
+        }
+        return result.value;
+    }
+
+    private Result parsed(String input) throws SyntaxException {
+        try {
+            parser.parse(input);
+            return Result.VALID;
+        } catch (SyntaxException e) {
+            return Result.invalid(input, e);
+        }
+    }
+
+    /**
+     * @param parsed the result of the parser for the input
+     */
+    private Result evaluated(String input, Result parsed) throws SyntaxException {
+        if(parsed.error != null || parsed.uncached != null) {
+            return parsed;
+        }
+        try {
+            return Result.value(evaluator.valueOf(input));
+        } catch (SyntaxException e) {
+            return Result.invalid(input, e);
+        }
+    }
+
+    /**
+     * @return the result, cached unless it is the error of a limit
+     */
+    private Result cache(String key, String input, Result result) throws SyntaxException {
+        if(result.uncached != null) {
+            throw result.uncached;
+        }
+        if(key != null) {
+            results.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the key of the input, or null if the input is not cached
+     */
+    private String keyOf(String input) {
+        if(input.length() > parser.limits().maxInputLength()) { // always parsed, to throw
+            return null;
+        }
+        if(!ignoresWhitespace) {
+            return input;
+        }
+        int i = 0;
+        while(i < input.length() && !TableDrivenParser.isWhitespace(input.charAt(i))) {
+            ++i;
+        }
+        if(i == input.length()) {
+            return input;
+        }
+        StringBuilder key = new StringBuilder(input.length());
+        key.append(input, 0, i);
+        for(; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if(!TableDrivenParser.isWhitespace(c)) {
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    public long size() {
+        return results.size();
+    }
+
+    /**
+     * @return hits, misses and evictions. A cached error asked for with other whitespace
+     *         counts as a hit, although the input is parsed again.
+     */
+    public CacheStats stats() {
+        return results.stats();
+    }
+
+    public void invalidateAll() {
+        results.invalidateAll();
+    }
+
+    /**
+     * Validity of an input, its value once evaluated, or its error.
+     */
+    private static class Result {
+        static final Result VALID = new Result(null, null, null, false, 0);
+
+        // the input of the error, null if valid
+        private final String input;
+        private final SyntaxError error;
+        // an error that is thrown and not cached
+        private final SyntaxException uncached;
+        private final boolean evaluated;
+        private final int value;
+
+        private Result(String input, SyntaxError error, SyntaxException uncached, boolean evaluated, int value) {
+            this.input = input;
+            this.error = error;
+            this.uncached = uncached;
+            this.evaluated = evaluated;
+            this.value = value;
+        }
+
+        static Result value(int value) {
+            return new Result(null, null, null, true, value);
+        }
+
+        static Result invalid(String input, SyntaxException e) {
+            // subclasses, such as ParseLimitException, would lose their type in a SyntaxError
+            if(e.getClass() != SyntaxException.class) {
+                return new Result(null, null, e, false, 0);
+            }
+            return new Result(input, new SyntaxError(e.getInvalidSymbol(), e.getOffset(), e.getExpected(),
+                                                     e.getMessage()), null, false, 0);
+        }
+
+        boolean answers(String input) {
+            return error == null || this.input.equals(input);
+        }
+
+        int weight(String key) {
+            int chars = key.length() + (input == null || input.equals(key) ? 0 : input.length());
+            return ENTRY_OVERHEAD + 2 * chars + (error == null ? 0 : 2 * error.message().length());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * The cells of a parse table packed into a few small arrays, for grammars whose dense table
+ * would not fit in the processor caches. Lookups stay O(1) and give the same productions as
+ * the dense table.
+ *
+ * A bitmap of one bit per cell tells the cells that have a production from those with
+ * NO_RULE. Each row has a default production, the one in most of its cells, and only the
+ * cells with another production are stored. Those are packed by row displacement: row r
+ * stores column c at entry bases[r] + c of one array shared by all rows, with the rows
+ * shifted so that their entries do not collide, and every entry records the row it
+ * belongs to.
+ */
+final class CompressedTable {
+    private static final int FREE = -1;
+
+    private final int columns;
+    private final long[] valid;
+    private final int[] defaults;
+    private final int[] bases;
+    // pairs of the row owning the entry and its production
+    private final int[] entries;
+
+    /**
+     * @param cells a dense table of rows * columns cells, row by row, with NO_RULE in empty cells
+     */
+    CompressedTable(int[] cells, int rows, int columns) {
+        this.columns = columns;
+        this.valid = new long[(cells.length + 63) / 64];
+        this.defaults = new int[rows];
+        this.bases = new int[rows];
+        for(int cell = 0; cell < cells.length; cell++) {
+            if(cells[cell] != ParseTable.NO_RULE) {
+                valid[cell >>> 6] |= 1L << cell;
+            }
+        }
+
+        int[][] exceptions = new int[rows][];
+        for(int row = 0; row < rows; row++) {
+            int[] production = Arrays.copyOfRange(cells, row * columns, (row + 1) * columns);
+            defaults[row] = mostFrequent(production);
+            int defaultProduction = defaults[row];
+            exceptions[row] = IntStream.range(0, columns)
+                    .filter(column -> production[column] != ParseTable.NO_RULE
+                                        && production[column] != defaultProduction)
+                    .toArray();
+        }
+
+        // the rows with most entries are placed first, while the array is still empty
+        Integer[] order = IntStream.range(0, rows).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingInt((Integer row) -> exceptions[row].length).reversed());
+        int[] owners = new int[columns];
+        Arrays.fill(owners, FREE);
+        int end = 0;
+        for(int row : order) {
+            int[] stored = exceptions[row];
+            if(stored.length == 0) {
+                continue;
+            }
+            int base = 0;
+            while(!fits(owners, base, stored)) {
+                ++base;
+            }
+            if(base + columns > owners.length) {
+                int size = owners.length;
+                owners = Arrays.copyOf(owners, Math.max(2 * size, base + columns));
+                Arrays.fill(owners, size, owners.length, FREE);
+            }
+            for(int column : stored) {
+                owners[base + column] = row;
+            }
+            bases[row] = base;
+            end = Math.max(end, base + columns);
+        }
+        // every base + column of a lookup is inside the array, so lookups need no range check
+        this.entries = new int[2 * Math.max(end, columns)];
+        for(int entry = 0; entry < entries.length / 2; entry++) {
+            int row = entry < owners.length ? owners[entry] : FREE;
+            entries[2 * entry] = row;
+            entries[2 * entry + 1] = row == FREE ? ParseTable.NO_RULE
+                                                 : cells[row * columns + entry - bases[row]];
+        }
+    }
+
+    private static int mostFrequent(int[] productions) {
+        int[] sorted = productions.clone();
+        Arrays.sort(sorted);
+        int best = ParseTable.NO_RULE;
+        int bestCount = 0;
+        int count = 0;
+        for(int i = 0; i < sorted.length; i++) {
+            count = i > 0 && sorted[i] == sorted[i - 1] ? count + 1 : 1;
+            if(sorted[i] != ParseTable.NO_RULE && count > bestCount) {
+                best = sorted[i];
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    private static boolean fits(int[] owners, int base, int[] columns) {
+        for(int column : columns) {
+            if(base + column < owners.length && owners[base + column] != FREE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int get(int row, int column) {
+        int cell = row * columns + column;
+        if((valid[cell >>> 6] & (1L << cell)) == 0) {
+            return ParseTable.NO_RULE;
+        }
+        int entry = 2 * (bases[row] + column);
+        return entries[entry] == row ? entries[entry + 1] : defaults[row];
+    }
+
+    /**
+     * @return the memory of the arrays, without object headers
+     */
+    long sizeInBytes() {
+        return (long) valid.length * Long.BYTES
+                + (long) (defaults.length + bases.length + entries.length) * Integer.BYTES;
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ * Computes the value of an input in the same pass that parses it, without building a tree.
+ *
+ * Production bodies can contain semantic actions, written {name} in the BNF, e.g.
+ * &lt;Aprime&gt; ::= '|'&lt;B&gt;{or}&lt;Aprime&gt;. Actions are pushed on the parse stack
+ * with the rest of the body and run when they reach the top, that is once everything to
+ * their left has been parsed. They work on a stack of int values: an action pops the
+ * values of the symbols before it and pushes its result. The value of the input is the
+ * one value left when the parse ends.
+ *
+ * The constructor checks with the arity of every action that every valid input leaves one
+ * value, and that no action pops values that are not there, so a grammar whose actions do not
+ * fit together is rejected before anything is evaluated.
+ *
+ * Like TableDrivenParser, an Evaluator can be shared between threads, every evaluation is
+ * bounded by its ParserLimits, none by default, and the LookaheadPredictor of the table chooses
+ * the productions of a grammar that is not LL(1).
+ */
+public abstract class Evaluator {
+    private final ParseTable parseTable;
+    private final SymbolTable symbols;
+    private final Lexer lexer;
+    // step ids from here up are actions, see Grammar.productionSteps
+    private final int firstAction;
+    private final ParserLimits limits;
+    private final ThreadLocal<Stacks> stacks;
+
+    /**
+     * @throws BNFGrammarException if the actions of the grammar do not leave one value
+     */
+    protected Evaluator(ParseTable parseTable) throws BNFGrammarException {
+        this(parseTable, ParserLimits.NONE);
+    }
+
+    /**
+     * @param limits bound every evaluation, like those of a TableDrivenParser. Actions waiting on
+     *               the stack count towards its depth
+     * @throws BNFGrammarException if the actions of the grammar do not leave one value
+     */
+    protected Evaluator(ParseTable parseTable, ParserLimits limits) throws BNFGrammarException {
+        if(!parseTable.isGenerated()) {
+            throw new IllegalArgumentException("The parse table is not generated");
+        }
+        this.parseTable = parseTable;
+        this.symbols = parseTable.symbols();
+        this.lexer = parseTable.lexer();
+        this.firstAction = symbols.size();
+        this.limits = limits;
+        this.stacks = ThreadLocal.withInitial(() -> new Stacks(limits.maxStackDepth()));
+        checkActions();
+    }
+
+    public ParserLimits limits() {
+        return limits;
+    }
+
+    /**
+     * Runs an action: pops arity values and pushes one.
+     * @param action the number of the action in the parse table, see ParseTable.actionName
+     */
+    protected abstract void apply(int action, ParseStack values) throws SyntaxException;
+
+    /**
+     * Called by the constructor of Evaluator, so it cannot use the fields of a subclass.
+     * @return the number of values the action pops
+     * @throws BNFGrammarException if the action is not known
+     */
+    protected abstract int arity(String action) throws BNFGrammarException;
+
+    /**
+     * Checks that every production of a non terminal leaves as many values, that the start
+     * symbol leaves one, and finds how many values every non terminal pops from below it,
+     * which must be none for the start symbol. Productions are taken in rounds until nothing
+     * changes, as in Bellman-Ford: a non terminal that pops more values below it every time
+     * it nests keeps changing.
+     */
+    private void checkActions() throws BNFGrammarException {
+        int[] arities = new int[parseTable.actionCount()];
+        for(int action = 0; action < arities.length; action++) {
+            arities[action] = arity(parseTable.actionName(action));
+        }
+        // by non terminal index: the values left, whether that is known yet, and the values popped
+        int[] left = new int[symbols.nonTerminalCount()];
+        boolean[] known = new boolean[left.length];
+        int[] popped = new int[left.length];
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+            for(int production = 0; production < parseTable.numberOfProductions(); production++) {
+                int head = symbols.nonTerminalIndex(parseTable.productionHead(production));
+                int values = valuesLeft(production, arities, left, known);
+                if(values == Integer.MIN_VALUE) {
+                    continue;
+                }
+                if(!known[head]) {
+                    known[head] = true;
+                    left[head] = values;
+                    changed = true;
+                } else if(left[head] != values) {
+                    String name = symbols.nameOf(parseTable.productionHead(production));
+                    throw new BNFGrammarException("The productions of <" + name + "> leave " + left[head] + " and "
+                                                    + values + " values");
+                }
+            }
+        }
+        for(int round = 0; ; round++) {
+            changed = false;
+            for(int production = 0; production < parseTable.numberOfProductions(); production++) {
+                if(valuesLeft(production, arities, left, known) == Integer.MIN_VALUE) {
+                    continue;
+                }
+                int head = symbols.nonTerminalIndex(parseTable.productionHead(production));
+                int values = 0;
+                int needed = 0;
+                for(int step : parseTable.productionSteps(production)) {
+                    if(step >= firstAction) {
+                        needed = Math.max(needed, arities[step - firstAction] - values);
+                        values += 1 - arities[step - firstAction];
+                    } else if(!symbols.isTerminal(step)) {
+                        needed = Math.max(needed, popped[symbols.nonTerminalIndex(step)] - values);
+                        values += left[symbols.nonTerminalIndex(step)];
+                    }
+                }
+                if(needed > popped[head]) {
+                    popped[head] = needed;
+                    changed = true;
+                }
+            }
+            if(!changed) {
+                break;
+            }
+            if(round == left.length) {
+                throw new BNFGrammarException("The actions of the grammar pop more values than there are");
+            }
+        }
+        int start = symbols.nonTerminalIndex(parseTable.startSymbol());
+        if(known[start] && left[start] != 1) {
+            throw new BNFGrammarException("The actions of the grammar leave " + left[start] + " values instead of one");
+        }
+        if(popped[start] > 0) {
+            throw new BNFGrammarException("The actions of the grammar pop " + popped[start]
+                                            + " values that are not there");
+        }
+    }
+
+    /**
+     * @return the values the production leaves, or Integer.MIN_VALUE if those of one of its non
+     *         terminals are not known
+     */
+    private int valuesLeft(int production, int[] arities, int[] left, boolean[] known) {
+        int values = 0;
+        for(int step : parseTable.productionSteps(production)) {
+            if(step >= firstAction) {
+                values += 1 - arities[step - firstAction];
+            } else if(!symbols.isTerminal(step)) {
+                if(!known[symbols.nonTerminalIndex(step)]) {
+                    return Integer.MIN_VALUE;
+                }
+                values += left[symbols.nonTerminalIndex(step)];
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Parses the input and runs the actions of the productions used.
+     * @return the value computed by the actions
+     */
+    public int valueOf(final CharSequence input) throws SyntaxException {
+        LookaheadPredictor predictor = parseTable.predictor();
+        LookaheadPredictor.SequenceTokens tokens = predictor == null ? null
+                : new LookaheadPredictor.SequenceTokens(parseTable, input);
+        Stacks stacks = this.stacks.get();
+        ParseStack stack = stacks.symbols;
+        ParseStack values = stacks.values;
+        // the stacks of a failed parse are left as they are
+        stack.clear();
+        values.clear();
+        stack.push(parseTable.eof());
+        stack.push(parseTable.startSymbol());
+
+        int length = input.length();
+        if(length > limits.maxInputLength()) {
+            throw new ParseLimitException(ParseLimitException.Limit.INPUT_LENGTH, limits.maxInputLength(), 0);
+        }
+        int index = 0;
+        long steps = 0;
+        while(true) {
+            while(index < length && TableDrivenParser.isWhitespace(input.charAt(index))) {
+                ++index;
+            }
+            if(index == length) {
+                break;
+            }
+            long match = lexer.match(input, index, length);
+            if(match == Lexer.NO_MATCH) {
+                throw TableDrivenParser.unrecognizedSymbol(parseTable, String.valueOf(input.charAt(index)),
+                                                            stack.peek(), index).toException();
+            }
+            if(tokens != null) {
+                tokens.at(index + Lexer.lengthOf(match));
+            }
+            steps += consume(stack, values, Lexer.terminalOf(match), index, predictor, tokens);
+            checkSteps(steps, index);
+            index += Lexer.lengthOf(match);
+        }
+        if(tokens != null) {
+            tokens.at(length);
+        }
+        steps += consume(stack, values, parseTable.eof(), length, predictor, tokens);
+        checkSteps(steps, length);
+
+        if(values.size() != 1) { // the grammar was checked, so apply does not keep to the arities
+            throw new IllegalStateException("The actions left " + values.size() + " values instead of one");
+        }
+        return values.pop();
+    }
+
+    private void checkSteps(long steps, long offset) throws ParseLimitException {
+        if(steps > limits.maxSteps()) {
+            throw new ParseLimitException(ParseLimitException.Limit.STEPS, limits.maxSteps(), offset);
+        }
+    }
+
+    /**
+     * Like TableDrivenParser.consume, but runs the actions that come to the top of the stack.
+     * @param predictor the predictor of the table and the terminals after this one, or null
+     * @return the number of non terminals expanded
+     */
+    private int consume(ParseStack stack, ParseStack values, int terminal, long offset, LookaheadPredictor predictor,
+                        LookaheadPredictor.Tokens tokens) throws SyntaxException {
+        int expansions = 0;
+        int topOfStack = stack.peek();
+        while(topOfStack != terminal) {
+            if(symbols.isTerminal(topOfStack)) {
+                throw TableDrivenParser.unrecognizedSymbol(parseTable, symbols.nameOf(terminal), topOfStack, offset)
+                                        .toException();
+            }
+            if(topOfStack >= firstAction) {
+                stack.pop();
+                apply(topOfStack - firstAction, values);
+            } else {
+                int production = parseTable.ruleToApply(topOfStack, terminal);
+                if(production == ParseTable.NO_RULE) {
+                    throw TableDrivenParser.unableToExpand(parseTable, topOfStack, terminal, offset).toException();
+                }
+                if(predictor != null && predictor.isConflict(topOfStack, terminal)) {
+                    production = predictor.predict(topOfStack, terminal, tokens, stack);
+                }
+                stack.pop();
+                int[] body = parseTable.productionSteps(production);
+                if(!stack.hasRoomFor(body.length)) {
+                    throw new ParseLimitException(ParseLimitException.Limit.STACK_DEPTH, stack.maxSize(), offset);
+                }
+                stack.pushReversed(body);
+                ++expansions;
+            }
+            topOfStack = stack.peek();
+        }
+        stack.pop();
+        return expansions;
+    }
+
+    private static class Stacks {
+        private final ParseStack symbols;
+        private final ParseStack values = new ParseStack();
+
+        Stacks(int maxStackDepth) {
+            this.symbols = new ParseStack(ParseStack.INITIAL_CAPACITY, maxStackDepth);
+        }
+    }
+}
@@ -1,22 +1,47 @@
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.Multimaps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CharStreams;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
+/**
+ * A context free grammar read from a BNF file. A Grammar is not modified after
+ * it is constructed, so it can be shared between threads.
+ */
 public class Grammar {
     public static final String EOF = "$";
     public static final String EPSILON = "@#&";
 
     private String startSymbol; // always a non terminal
-    private Set<String> terminals = new HashSet<>();
-    private Multimap<String, String> rules = ArrayListMultimap.create();
+    private String contentHash;
+    private final Set<String> terminals = new LinkedHashSet<>();
+    private final ListMultimap<String, String> rules = MultimapBuilder.linkedHashKeys().arrayListValues().build();
+    // names of the semantic actions, in order of first use
+    private final List<String> actions = new ArrayList<>();
+
+    // interned form of the rules. Productions are numbered in the order of getRules().entries()
+    private SymbolTable symbols;
+    private int[] productionHeads;
+    private int[][] productionSymbols;
+    private String[] productionBodies;
+    // productionSymbols with the actions left in, see productionSteps
+    private int[][] productionSteps;
+
+    // indexed by non terminal index, see SymbolTable.nonTerminalIndex
+    private boolean[] nullable;
+    private BitSet[] firstSets;
+    private BitSet[] followSets;
 
     public Grammar(String fileName) throws IOException, BNFGrammarException {
         Path file = Paths.get(fileName);
@@ -26,156 +51,296 @@ public class Grammar {
         parse(file);
     }
 
+    /**
+     * Reads a grammar from BNF text, see BNFLoader for the syntax.
+     */
+    public Grammar(Reader reader) throws IOException, BNFGrammarException {
+        String text = CharStreams.toString(reader);
+        contentHash = hashOf(text.getBytes(StandardCharsets.UTF_8));
+        load(text);
+    }
+
     private void parse(Path file) throws IOException, BNFGrammarException {
-        List<String> productions = Files.lines(file).collect(Collectors.toList());
-        int ruleNumber = 1;
+        byte[] content = Files.readAllBytes(file);
+        contentHash = hashOf(content);
+        load(new String(content, StandardCharsets.UTF_8));
+    }
 
-        // save start symbol
-        String firstProduction = productions.get(0);
-        startSymbol = firstProduction.substring(1, firstProduction.indexOf(">", 0));
+    private void load(String text) throws BNFGrammarException {
+        BNFLoader loader = new BNFLoader(text);
+        loader.load();
+
+        startSymbol = loader.startSymbol();
+        terminals.addAll(loader.terminals());
+        actions.addAll(loader.actions());
+        symbols = new SymbolTable(loader.terminals(), loader.nonTerminals());
+
+        int size = loader.numberOfProductions();
+        productionHeads = new int[size];
+        productionSymbols = new int[size][];
+        productionBodies = new String[size];
+        productionSteps = new int[size][];
+        for(int production = 0; production < size; production++) {
+            productionHeads[production] = loader.productionHead(production);
+            productionSymbols[production] = loader.productionSymbols(production);
+            productionSteps[production] = loader.productionSteps(production);
+            productionBodies[production] = loader.productionBody(production);
+            rules.put(symbols.nameOf(productionHeads[production]), productionBodies[production]);
+        }
+        computeSets();
+    }
 
-        for(String line : productions) {
-            String[] production = line.split("::=");
+    private int[] symbolsOf(String body) throws BNFGrammarException {
+        List<String> tokens = bodyTokens(body);
+        tokens.removeIf(token -> token.charAt(0) == '{');
+        int[] ids = new int[tokens.size()];
+        for(int i = 0; i < ids.length; i++) {
+            String token = tokens.get(i);
+            String name = symbolName(token);
+            ids[i] = symbolIdOf(token.charAt(0) == '<' ? symbols.nonTerminalId(name) : symbols.terminalId(name), body);
+        }
+        return ids;
+    }
 
-            // first index has the production head. Second index has the body
-            String head = production[0].trim();
-            if(!head.startsWith("<") || !head.endsWith(">")) {
-                throw new BNFGrammarException("Production head must be enclosed in angular brackets <>");
+    /**
+     * Splits a production body into its symbols, keeping their delimiters: &lt;A&gt; for
+     * non terminals, 'if' for terminals, [identifier] or [number] for token classes, and
+     * {name} for semantic actions. Inside quotes, \' and \\ stand for ' and \.
+     */
+    static List<String> bodyTokens(String body) throws BNFGrammarException {
+        List<String> tokens = new ArrayList<>();
+        for(int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if(c == '<' || c == '[' || c == '{') {
+                char close = c == '<' ? '>' : c == '[' ? ']' : '}';
+                int end = body.indexOf(close, i + 1);
+                if(end < 0) {
+                    throw new BNFGrammarException("Missing closing brackets " + close + " in rule " + body);
+                }
+                if(c == '{' && end == i + 1) {
+                    throw new BNFGrammarException("Empty action {} inside rule " + body);
+                }
+                String token = body.substring(i, end + 1);
+                if(c == '[' && !token.equals(Lexer.IDENTIFIER) && !token.equals(Lexer.NUMBER)) {
+                    throw new BNFGrammarException("Unknown token class " + token + " in rule " + body);
+                }
+                tokens.add(token);
+                i = end;
+            } else if(c == '\'') {
+                int end = i + 1;
+                while(end < body.length() && body.charAt(end) != '\'') {
+                    if(body.charAt(end) == '\\') {
+                        ++end;
+                    }
+                    ++end;
+                }
+                if(end >= body.length()) {
+                    throw new BNFGrammarException("Missing closing apostrophe ' in rule " + body);
+                }
+                if(end == i + 1) {
+                    throw new BNFGrammarException("Empty terminal '' inside rule " + body);
+                }
+                tokens.add(body.substring(i, end + 1));
+                i = end;
             }
-            String productionHead = head.substring(1, head.length() - 1);
+        }
+        return tokens;
+    }
 
-            String productionBody = production[1].trim();
-            char[] body = productionBody.toCharArray();
+    /**
+     * @param token a token returned by bodyTokens
+     * @return the name of the symbol it stands for
+     */
+    static String symbolName(String token) {
+        switch(token.charAt(0)) {
+            case '<':
+            case '{':
+                return token.substring(1, token.length() - 1);
+            case '\'':
+                StringBuilder name = new StringBuilder(token.length());
+                for(int i = 1; i < token.length() - 1; i++) {
+                    char c = token.charAt(i);
+                    if(c == '\\') {
+                        c = token.charAt(++i);
+                    }
+                    name.append(c);
+                }
+                return name.toString();
+            default:
+                return token;
+        }
+    }
 
-            // if rule body is epsilon, put an empty list as its body
-            if(body.length == 2 && body[0] == '\'' && body[1] == '\'') {
-                rules.put(productionHead, "");
-                continue;
+    private static int symbolIdOf(int id, String body) throws BNFGrammarException {
+        if(id == SymbolTable.NOT_FOUND) {
+            throw new BNFGrammarException("Rule " + body + " uses a symbol that is not in the grammar");
+        }
+        return id;
+    }
+
+    /**
+     * Computes NULLABLE, FIRST and FOLLOW for every non terminal by iterating to a fixed point.
+     * The sets are bitsets over terminal ids and are computed once, when the grammar is loaded.
+     */
+    private void computeSets() {
+        int nonTerminalCount = symbols.nonTerminalCount();
+        nullable = new boolean[nonTerminalCount];
+        firstSets = new BitSet[nonTerminalCount];
+        followSets = new BitSet[nonTerminalCount];
+        for(int i = 0; i < nonTerminalCount; i++) {
+            firstSets[i] = new BitSet(symbols.terminalCount());
+            followSets[i] = new BitSet(symbols.terminalCount());
+        }
+
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+            for(int production = 0; production < productionHeads.length; production++) {
+                int head = symbols.nonTerminalIndex(productionHeads[production]);
+                BitSet first = firstSets[head];
+                int before = first.cardinality();
+                boolean bodyIsNullable = firstOfSequence(productionSymbols[production], 0, first);
+                if(bodyIsNullable && !nullable[head]) {
+                    nullable[head] = true;
+                    changed = true;
+                }
+                changed |= first.cardinality() != before;
             }
-            for(int i = 0; i < body.length; i++) {
-                if(body[i] == '\'') { // terminal symbols are enclosed in '' e.g '+'
-                    String terminalSymbol = "" + body[i+1];
-                    terminals.add(terminalSymbol);
-                    i += 2; // move to the next symbol in the body
+        }
+
+        followSets[symbols.nonTerminalIndex(symbols.nonTerminalId(startSymbol))].set(symbols.terminalId(EOF));
+        BitSet trailer = new BitSet(symbols.terminalCount());
+        changed = true;
+        while(changed) {
+            changed = false;
+            for(int production = 0; production < productionHeads.length; production++) {
+                // walk the body right to left, carrying what can follow the current symbol
+                int[] body = productionSymbols[production];
+                trailer.clear();
+                trailer.or(followSets[symbols.nonTerminalIndex(productionHeads[production])]);
+                for(int i = body.length - 1; i >= 0; i--) {
+                    int symbol = body[i];
+                    if(symbols.isTerminal(symbol)) {
+                        trailer.clear();
+                        trailer.set(symbol);
+                        continue;
+                    }
+                    int index = symbols.nonTerminalIndex(symbol);
+                    BitSet follow = followSets[index];
+                    int before = follow.cardinality();
+                    follow.or(trailer);
+                    changed |= follow.cardinality() != before;
+
+                    if(!nullable[index]) {
+                        trailer.clear();
+                    }
+                    trailer.or(firstSets[index]);
                 }
             }
-            rules.put(productionHead, productionBody);
         }
+    }
 
-        terminals.add(EOF);
+    /**
+     * Adds FIRST of body[from..] to the given set.
+     * @return true if the whole sequence can derive epsilon
+     */
+    private boolean firstOfSequence(int[] body, int from, BitSet firsts) {
+        for(int i = from; i < body.length; i++) {
+            int symbol = body[i];
+            if(symbols.isTerminal(symbol)) {
+                firsts.set(symbol);
+                return false;
+            }
+            int index = symbols.nonTerminalIndex(symbol);
+            firsts.or(firstSets[index]);
+            if(!nullable[index]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * TODO: Enhancement
-     *       We're assumming terminal symbols are one character long.
-     *       Change so that it recognizes terminals that are n characters long.
      * @param nonTerminal a non terminal symbol
-     * @return the first sets of the non terminal symbol
+     * @return the first sets of the non terminal symbol, with EPSILON if it can derive the empty string
      * @throws BNFGrammarException if the non terminal symbol is not in the grammar
      */
     public Set<String> firstOf(String nonTerminal) throws BNFGrammarException {
-        if(!rules.containsKey(nonTerminal)) {
-            throw new BNFGrammarException("Non-terminal symbol, " + nonTerminal
-                                            + ", is not in the grammar");
+        int index = nonTerminalIndexOf(nonTerminal);
+        Set<String> firsts = namesOf(firstSets[index]);
+        if(nullable[index]) {
+            firsts.add(EPSILON);
         }
-        Set<String> firstSets = new HashSet<>();
-        for(String rule : rules.get(nonTerminal)) {
-
-            if(rule.startsWith("\'")) { // a terminal
-                String terminalSymbol = rule.substring(1, 2);
-                firstSets.add(terminalSymbol);
-            } else if(rule.startsWith("<")) { // a nonterminal
-                String nonTerminalSymbol = rule.substring(1, rule.indexOf(">", 0));
-                firstSetOf(nonTerminalSymbol, firstSets);
-            } else { // epsilon production
-                firstSets.add(EPSILON);
-            }
-        }
-        return firstSets;
+        return firsts;
     }
 
+    /**
+     * @return the terminals that select the production nonTerminal ::= productionBody, that is
+     *         the first sets of the body plus the follow sets of the head if the body can derive epsilon
+     */
     public Set<String> firstOf(final String nonTerminal, final String productionBody) throws BNFGrammarException {
-        if(!rules.containsKey(nonTerminal)) {
-            throw new BNFGrammarException("Non-terminal symbol, " + nonTerminal
-                    + ", is not in the grammar");
-        }
-        Set<String> firsts = new HashSet<>();
-        if(productionBody.startsWith("\'")) { // starts with a terminal
-            String terminalSymbol = productionBody.substring(1, 2);
-            firsts.add(terminalSymbol);
-        } else if(productionBody.startsWith("<")) { // starts with a non-terminal
-            String nonTerminalSymbol = productionBody.substring(1, productionBody.indexOf(">", 0));
-            firsts = firstOf(nonTerminalSymbol);
-        } else if(productionBody.isEmpty()) { // epsilon transition
-            firsts = followSetOf(nonTerminal);
+        int index = nonTerminalIndexOf(nonTerminal);
+        BitSet firsts = new BitSet(symbols.terminalCount());
+        if(firstOfSequence(symbolsOf(productionBody), 0, firsts)) {
+            firsts.or(followSets[index]);
         }
-        return firsts;
+        return namesOf(firsts);
     }
 
-    private void firstSetOf(String nonTerminal, Set<String> firsts) {
-        for(String rule : rules.get(nonTerminal)) {
-            if(rule.startsWith("\'")) { // a terminal
-                String terminalSymbol = rule.substring(1, 2);
-                firsts.add(terminalSymbol);
-            } else if(rule.startsWith("<")) { // a nonterminal
-                String nonTerminalSymbol = rule.substring(1, rule.indexOf(">", 0));
-                firstSetOf(nonTerminalSymbol, firsts);
-            }
+    public Set<String> followSetOf(String nonTerminal) throws BNFGrammarException {
+        return namesOf(followSets[nonTerminalIndexOf(nonTerminal)]);
+    }
+
+    /**
+     * @param production the production number
+     * @return the ids of the terminals that select the production in an LL(1) parse
+     */
+    public BitSet predictSet(int production) {
+        BitSet predict = new BitSet(symbols.terminalCount());
+        if(firstOfSequence(productionSymbols[production], 0, predict)) {
+            predict.or(followSets[symbols.nonTerminalIndex(productionHeads[production])]);
         }
+        return predict;
     }
 
-    public Set<String> followSetOf(String nonTerminal) throws BNFGrammarException {
-        Set<String> follows = new HashSet<>();
-        followOf(nonTerminal, follows);
-        return follows;
+    /**
+     * @param nonTerminal the symbol id of a non terminal
+     * @return the ids of the terminals that can begin a string derived from it
+     */
+    public BitSet firstSet(int nonTerminal) {
+        return (BitSet) firstSets[symbols.nonTerminalIndex(nonTerminal)].clone();
     }
 
-    private void followOf(String nonTerminal, Set<String> follows) throws BNFGrammarException {
-        if(isStartSymbol(nonTerminal)) {
-            follows.add(EOF);
-        }
-        Multimap<String, String> rulesWithNonTerminalInBody = findRulesWithNonTerminalInBody(nonTerminal);
-        for(Map.Entry<String, String> production : rulesWithNonTerminalInBody.entries()) {
-            String head = production.getKey();
-            String body = production.getValue();
+    /**
+     * @param nonTerminal the symbol id of a non terminal
+     * @return the ids of the terminals that can follow it
+     */
+    public BitSet followSet(int nonTerminal) {
+        return (BitSet) followSets[symbols.nonTerminalIndex(nonTerminal)].clone();
+    }
 
-            // for rules S -> A where S is the start symbol
-            String bnfFormat = "<" + nonTerminal + ">";
-//            System.out.println("BNF: " + bnfFormat);
+    /**
+     * @param symbol any symbol id
+     * @return true if the symbol can derive the empty string
+     */
+    public boolean isNullable(int symbol) {
+        return !symbols.isTerminal(symbol) && nullable[symbols.nonTerminalIndex(symbol)];
+    }
 
-            if(body.matches("^.*" + bnfFormat + "$") && isStartSymbol(head)) {
-                follows.add(EOF);
-            }
-//            } else if(body.matches("^.*" + bnfFormat + "'.'.*$")) {
-                // for rules such as A -> <B>'+' where there a terminal immediately after the nonterminal
-//                int stringEndIndex = body.lastIndexOf(bnfFormat);
-//                follows.add(body.substring(stringEndIndex + bnfFormat.length() + 1, stringEndIndex + bnfFormat.length() + 2));
-            /*}*/ else if(body.matches("^.+" + bnfFormat + ".*$")) {
-                // for recursive rules such as A -> BA' or A -> +A') or A -> +
-                // if there is a nonterminal directly after the symbol we're checking,
-                // then get the first of the nonterminal
-                int index = body.lastIndexOf(bnfFormat) + bnfFormat.length();
-
-                if(index < body.length()) { // possibly some
-                    if(body.charAt(index) == '\'') { // a terminal
-                        int stringEndIndex = body.lastIndexOf(bnfFormat);
-                        follows.add(body.substring(index + 1, index + 2));
-                    }
-                    if(body.charAt(index) == '<') { // a non-terminal
-                        String nextNonterminal = body.substring(index + 1, body.indexOf('>', index));
-                        firstSetOf(nextNonterminal, follows);
+    private int nonTerminalIndexOf(String nonTerminal) throws BNFGrammarException {
+        if(!rules.containsKey(nonTerminal)) {
+            throw new BNFGrammarException("Non-terminal symbol, " + nonTerminal
+                                            + ", is not in the grammar");
+        }
+        return symbols.nonTerminalIndex(symbols.nonTerminalId(nonTerminal));
+    }
 
-                        if(hasEpsilonTransition(nextNonterminal)) {
-                            followOf(head, follows);
-                        }
-                    }
-                } else {
-                    followOf(head, follows);
-                }
-            } else {
-//                System.out.println("Ignoring this rule... " + body);
-            }
+    private Set<String> namesOf(BitSet terminals) {
+        Set<String> names = new HashSet<>();
+        for(int terminal = terminals.nextSetBit(0); terminal >= 0; terminal = terminals.nextSetBit(terminal + 1)) {
+            names.add(symbols.nameOf(terminal));
         }
+        return names;
     }
 
     Multimap<String, String> findRulesWithNonTerminalInBody(String nonTerminal) {
@@ -196,11 +361,11 @@ public class Grammar {
     }
 
     public Set<String> nonTerminals() {
-        return rules.keySet();
+        return Collections.unmodifiableSet(rules.keySet());
     }
 
     public Set<String> terminals() {
-        return terminals;
+        return Collections.unmodifiableSet(terminals);
     }
 
     public List<String> productionHeadsWith(String nonTerminal) throws BNFGrammarException {
@@ -208,7 +373,7 @@ public class Grammar {
             throw new BNFGrammarException("Non-terminal symbol, " + nonTerminal
                                                 + ", is not in the grammar");
         }
-        return (List<String>)rules.get(nonTerminal);
+        return Collections.unmodifiableList(rules.get(nonTerminal));
     }
 
     public boolean containsTerminalSymbol(String symbol) {
@@ -238,7 +403,7 @@ public class Grammar {
     public boolean hasEpsilonTransition(String nonTerminal) {
         // productions that go to epsilon have an empty body
         // They are represented using the empty string ""
-        List<String> productions = (List<String>)rules.get(nonTerminal);
+        List<String> productions = rules.get(nonTerminal);
         return productions.contains("");
     }
 
@@ -248,38 +413,67 @@ public class Grammar {
 
 
     public Multimap<String, String> getRules() {
-        return rules;
+        return Multimaps.unmodifiableListMultimap(rules);
+    }
+
+    /**
+     * @return the SHA-256 of the grammar file, in hex. Grammars read from identical files have the same hash
+     */
+    public String contentHash() {
+        return contentHash;
+    }
+
+    public static String hashOf(byte[] content) {
+        return Hashing.sha256().hashBytes(content).toString();
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * @param production the production number, between 0 and numberOfProductions() - 1
+     * @return the symbol id of the production head
+     */
+    public int productionHead(int production) {
+        return productionHeads[production];
+    }
+
+    /**
+     * The body of a production as symbol ids, left to right. An epsilon production
+     * has an empty body. The returned array is shared and must not be modified.
+     */
+    public int[] productionSymbols(int production) {
+        return productionSymbols[production];
+    }
+
+    public String productionBody(int production) {
+        return productionBodies[production];
+    }
+
+    /**
+     * The body of a production with its semantic actions in place, left to right. Symbols
+     * are symbol ids, and action a is symbols().size() + a, see actions(). Without actions
+     * this is the same array as productionSymbols.
+     */
+    public int[] productionSteps(int production) {
+        return productionSteps[production];
+    }
+
+    /**
+     * @return the names of the semantic actions used in production bodies, e.g. or for {or}
+     */
+    public List<String> actions() {
+        return Collections.unmodifiableList(actions);
     }
 
     public static List<String> fromBNF(String rule) throws BNFGrammarException {
         List<String> symbols = new ArrayList<>();
-        for(int i = 0; i < rule.length(); i++) {
-            if(rule.charAt(i) == '<') {
-                // find closing brackets
-                boolean found = false;
-                int j = i + 1;
-                while(j < rule.length()) {
-                    if(rule.charAt(j) == '>') {
-                        found = true;
-                        break;
-                    }
-                    ++j;
-                }
-                if(!found) {
-                    throw new BNFGrammarException("Missing closing brackets > in rule " + rule);
-                }
-                String nonTerminal = rule.substring(i+1, j);
-                symbols.add(nonTerminal);
-                i = j;
-            } else if(rule.charAt(i) == '\'') { // terminals are one character long
-                // check for closing apostrophe
-                if(rule.charAt(i+2) != '\'') {
-                    throw new BNFGrammarException("Missing closing apostrophe ' in rule " + rule);
-                }
-                String terminal = rule.substring(i+1, i+2);
-                symbols.add(terminal);
-                i += 2;
+        for(String token : bodyTokens(rule)) {
+            if(token.charAt(0) == '{') { // actions are not symbols
+                continue;
             }
+            symbols.add(symbolName(token));
         }
         return symbols;
     }
@@ -0,0 +1,539 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Checks a grammar for the problems that make it unusable for an LL(1) parser: conflict
+ * cells in the parse table, left recursion, unreachable, unproductive and undefined non
+ * terminals. Every check is a single pass over the productions, or a graph search over
+ * the non terminals, so grammars with thousands of productions are analysed quickly.
+ *
+ * A conflict cell that the LookaheadPredictor decides within MAX_LOOKAHEAD terminals is only
+ * a warning, since every parser decides it. Checking that simulates the cell on every input
+ * and parse stack up to that lookahead, so it is the one check that can take longer.
+ *
+ * It can also rewrite a grammar to remove left recursion or common prefixes. The
+ * rewritten grammar is returned as BNF lines.
+ */
+public class GrammarAnalyzer {
+    private final Grammar grammar;
+    private final SymbolTable symbols;
+    private final int terminalCount;
+    private final int nonTerminalCount;
+    // productions of every non terminal, by non terminal index
+    private final int[][] productionsOf;
+
+    public GrammarAnalyzer(Grammar grammar) {
+        this.grammar = grammar;
+        this.symbols = grammar.symbols();
+        this.terminalCount = symbols.terminalCount();
+        this.nonTerminalCount = symbols.nonTerminalCount();
+
+        int[] counts = new int[nonTerminalCount];
+        for(int production = 0; production < grammar.numberOfProductions(); production++) {
+            ++counts[indexOf(grammar.productionHead(production))];
+        }
+        this.productionsOf = new int[nonTerminalCount][];
+        for(int i = 0; i < nonTerminalCount; i++) {
+            productionsOf[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for(int production = 0; production < grammar.numberOfProductions(); production++) {
+            int head = indexOf(grammar.productionHead(production));
+            productionsOf[head][counts[head]++] = production;
+        }
+    }
+
+    /**
+     * Checks a grammar file and prints what it finds.
+     * Usage: GrammarAnalyzer grammar.bnf. Exits with status 1 if the grammar has errors.
+     */
+    public static void main(String[] args) throws IOException, BNFGrammarException {
+        if(args.length != 1) {
+            System.err.println("Usage: GrammarAnalyzer <grammar.bnf>");
+            System.exit(1);
+        }
+        List<GrammarDiagnostic> diagnostics = new GrammarAnalyzer(new Grammar(args[0])).analyze();
+        boolean errors = false;
+        for(GrammarDiagnostic diagnostic : diagnostics) {
+            System.out.println(args[0] + ": " + diagnostic);
+            errors |= diagnostic.kind().isError();
+        }
+        if(errors) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return every problem found, undefined symbols first and conflicts last
+     */
+    public List<GrammarDiagnostic> analyze() {
+        List<GrammarDiagnostic> diagnostics = new ArrayList<>();
+        diagnostics.addAll(undefined());
+        diagnostics.addAll(unproductive());
+        diagnostics.addAll(unreachable());
+        diagnostics.addAll(leftRecursion());
+        diagnostics.addAll(conflicts());
+        return diagnostics;
+    }
+
+    /**
+     * @return one diagnostic for every cell of the parse table that more than one production wants,
+     *         a LOOKAHEAD_CONFLICT if the LookaheadPredictor decides it, else a CONFLICT
+     */
+    public List<GrammarDiagnostic> conflicts() {
+        LookaheadPredictor predictor = null;
+        boolean generated = false;
+        List<GrammarDiagnostic> conflicts = new ArrayList<>();
+        // the production that claimed each terminal in the current row, valid if ownerRow matches
+        int[] owner = new int[terminalCount];
+        int[] ownerRow = new int[terminalCount];
+        Arrays.fill(ownerRow, -1);
+
+        for(int row = 0; row < nonTerminalCount; row++) {
+            Map<Integer, List<Integer>> cells = new TreeMap<>();
+            for(int production : productionsOf[row]) {
+                BitSet predict = grammar.predictSet(production);
+                for(int terminal = predict.nextSetBit(0); terminal >= 0; terminal = predict.nextSetBit(terminal + 1)) {
+                    if(ownerRow[terminal] != row) {
+                        ownerRow[terminal] = row;
+                        owner[terminal] = production;
+                    } else {
+                        cells.computeIfAbsent(terminal, t -> new ArrayList<>(Collections.singletonList(owner[t])))
+                                .add(production);
+                    }
+                }
+            }
+            for(Map.Entry<Integer, List<Integer>> cell : cells.entrySet()) {
+                if(!generated) {
+                    predictor = predictor();
+                    generated = true;
+                }
+                boolean decided = predictor != null && predictor.decides(row + terminalCount, cell.getKey());
+                String nonTerminal = symbols.nameOf(row + terminalCount);
+                String terminal = symbols.nameOf(cell.getKey());
+                StringBuilder message = new StringBuilder("LL(1) conflict at T[")
+                        .append(nonTerminal).append(", ").append(terminal).append("], ")
+                        .append(decided ? "decided with up to " : "not decided with ")
+                        .append(LookaheadPredictor.MAX_LOOKAHEAD).append(" terminals:");
+                for(int production : cell.getValue()) {
+                    message.append(" <").append(nonTerminal).append("> ::= ").append(bodyOf(production)).append(';');
+                }
+                message.setLength(message.length() - 1);
+                conflicts.add(new GrammarDiagnostic(decided ? GrammarDiagnostic.Kind.LOOKAHEAD_CONFLICT
+                                                            : GrammarDiagnostic.Kind.CONFLICT,
+                                                    Arrays.asList(nonTerminal, terminal), message.toString()));
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * @return the predictor of the parse table of the grammar, or null if it could not be generated
+     */
+    private LookaheadPredictor predictor() {
+        ParseTable parseTable = new ParseTable(grammar);
+        try {
+            parseTable.generate();
+        } catch (BNFGrammarException e) {
+            return null;
+        }
+        return parseTable.predictor();
+    }
+
+    /**
+     * A non terminal is left recursive if it can derive a string that starts with itself. Nullable
+     * symbols in front of a non terminal are looked through, so hidden left recursion is found too.
+     * @return one diagnostic for every set of non terminals that are left recursive through each other
+     */
+    public List<GrammarDiagnostic> leftRecursion() {
+        List<GrammarDiagnostic> recursion = new ArrayList<>();
+        int[][] leftCorners = leftCorners();
+        List<int[]> components = stronglyConnectedComponents(leftCorners);
+        components.sort(Comparator.comparingInt(component -> component[0])); // in grammar order
+        for(int[] component : components) {
+            int first = component[0];
+            if(component.length == 1 && !contains(leftCorners[first], first)) {
+                continue;
+            }
+            List<String> names = new ArrayList<>();
+            for(int nonTerminal : component) {
+                names.add(symbols.nameOf(nonTerminal + terminalCount));
+            }
+            String message = component.length == 1
+                    ? "Non-terminal <" + names.get(0) + "> is left recursive"
+                    : "Non-terminals " + bracketed(names) + " are left recursive through each other";
+            recursion.add(new GrammarDiagnostic(GrammarDiagnostic.Kind.LEFT_RECURSION, names, message));
+        }
+        return recursion;
+    }
+
+    public List<GrammarDiagnostic> unreachable() {
+        boolean[] reached = new boolean[nonTerminalCount];
+        ParseStack work = new ParseStack();
+        int start = indexOf(symbols.nonTerminalId(grammar.getStartSymbol()));
+        reached[start] = true;
+        work.push(start);
+        while(!work.isEmpty()) {
+            for(int production : productionsOf[work.pop()]) {
+                for(int symbol : grammar.productionSymbols(production)) {
+                    if(!symbols.isTerminal(symbol) && !reached[indexOf(symbol)]) {
+                        reached[indexOf(symbol)] = true;
+                        work.push(indexOf(symbol));
+                    }
+                }
+            }
+        }
+
+        List<GrammarDiagnostic> unreachable = new ArrayList<>();
+        for(int i = 0; i < nonTerminalCount; i++) {
+            if(!reached[i]) {
+                String name = symbols.nameOf(i + terminalCount);
+                unreachable.add(new GrammarDiagnostic(GrammarDiagnostic.Kind.UNREACHABLE,
+                                                        Collections.singletonList(name),
+                                                        "Non-terminal <" + name + "> cannot be reached from <"
+                                                            + grammar.getStartSymbol() + ">"));
+            }
+        }
+        return unreachable;
+    }
+
+    /**
+     * Undefined non terminals are not reported again here.
+     */
+    public List<GrammarDiagnostic> unproductive() {
+        // non terminals in each production body not yet known to be productive
+        int[] remaining = new int[grammar.numberOfProductions()];
+        // productions that use each non terminal, once per use
+        List<List<Integer>> uses = new ArrayList<>(nonTerminalCount);
+        for(int i = 0; i < nonTerminalCount; i++) {
+            uses.add(new ArrayList<>());
+        }
+        ParseStack work = new ParseStack();
+        for(int production = 0; production < remaining.length; production++) {
+            for(int symbol : grammar.productionSymbols(production)) {
+                if(!symbols.isTerminal(symbol)) {
+                    ++remaining[production];
+                    uses.get(indexOf(symbol)).add(production);
+                }
+            }
+            if(remaining[production] == 0) {
+                work.push(production);
+            }
+        }
+
+        boolean[] productive = new boolean[nonTerminalCount];
+        while(!work.isEmpty()) {
+            int head = indexOf(grammar.productionHead(work.pop()));
+            if(productive[head]) {
+                continue;
+            }
+            productive[head] = true;
+            for(int production : uses.get(head)) {
+                if(--remaining[production] == 0) {
+                    work.push(production);
+                }
+            }
+        }
+
+        List<GrammarDiagnostic> unproductive = new ArrayList<>();
+        for(int i = 0; i < nonTerminalCount; i++) {
+            if(!productive[i] && productionsOf[i].length > 0) {
+                String name = symbols.nameOf(i + terminalCount);
+                unproductive.add(new GrammarDiagnostic(GrammarDiagnostic.Kind.UNPRODUCTIVE,
+                                                        Collections.singletonList(name),
+                                                        "Non-terminal <" + name + "> never derives only terminals"));
+            }
+        }
+        return unproductive;
+    }
+
+    public List<GrammarDiagnostic> undefined() {
+        List<GrammarDiagnostic> undefined = new ArrayList<>();
+        boolean[] reported = new boolean[nonTerminalCount];
+        for(int production = 0; production < grammar.numberOfProductions(); production++) {
+            for(int symbol : grammar.productionSymbols(production)) {
+                if(!symbols.isTerminal(symbol) && productionsOf[indexOf(symbol)].length == 0
+                        && !reported[indexOf(symbol)]) {
+                    reported[indexOf(symbol)] = true;
+                    String name = symbols.nameOf(symbol);
+                    undefined.add(new GrammarDiagnostic(GrammarDiagnostic.Kind.UNDEFINED,
+                                                        Collections.singletonList(name),
+                                                        "Non-terminal <" + name + "> is used in <"
+                                                            + symbols.nameOf(grammar.productionHead(production))
+                                                            + "> ::= " + bodyOf(production) + " but never defined"));
+                }
+            }
+        }
+        return undefined;
+    }
+
+    /**
+     * Removes left recursion with the textbook algorithm: within every set of mutually left
+     * recursive non terminals, bodies starting with an earlier member are expanded, then
+     * direct left recursion A ::= A a | b is replaced by A ::= b A', A' ::= a A' | ''.
+     * Left recursion hidden behind a nullable prefix is left as it is.
+     * @return the rewritten grammar as BNF lines, start symbol first
+     */
+    public List<String> eliminateLeftRecursion() {
+        Map<String, List<List<String>>> rules = tokenizedRules();
+        List<String> order = new ArrayList<>(rules.keySet());
+
+        for(GrammarDiagnostic recursion : leftRecursion()) {
+            List<String> members = recursion.symbols();
+            for(int i = 0; i < members.size(); i++) {
+                String head = members.get(i);
+                for(int j = 0; j < i; j++) {
+                    String earlier = "<" + members.get(j) + ">";
+                    List<List<String>> bodies = new ArrayList<>();
+                    for(List<String> body : rules.get(head)) {
+                        if(!body.isEmpty() && body.get(0).equals(earlier)) {
+                            for(List<String> replacement : rules.get(members.get(j))) {
+                                List<String> expanded = new ArrayList<>(replacement);
+                                expanded.addAll(body.subList(1, body.size()));
+                                bodies.add(expanded);
+                            }
+                        } else {
+                            bodies.add(body);
+                        }
+                    }
+                    rules.put(head, bodies);
+                }
+                removeDirectLeftRecursion(head, rules, order);
+            }
+        }
+        return bnfOf(rules, order);
+    }
+
+    private void removeDirectLeftRecursion(String head, Map<String, List<List<String>>> rules, List<String> order) {
+        String self = "<" + head + ">";
+        List<List<String>> recursive = new ArrayList<>();
+        List<List<String>> others = new ArrayList<>();
+        for(List<String> body : rules.get(head)) {
+            if(!body.isEmpty() && body.get(0).equals(self)) {
+                if(body.size() > 1) { // A ::= A derives nothing new
+                    recursive.add(body.subList(1, body.size()));
+                }
+            } else {
+                others.add(body);
+            }
+        }
+        if(recursive.isEmpty()) {
+            return;
+        }
+        String tail = freshName(head + "prime", rules);
+        String tailSymbol = "<" + tail + ">";
+        List<List<String>> bodies = new ArrayList<>();
+        for(List<String> body : others) {
+            List<String> replaced = new ArrayList<>(body);
+            replaced.add(tailSymbol);
+            bodies.add(replaced);
+        }
+        List<List<String>> tailBodies = new ArrayList<>();
+        for(List<String> body : recursive) {
+            List<String> replaced = new ArrayList<>(body);
+            replaced.add(tailSymbol);
+            tailBodies.add(replaced);
+        }
+        tailBodies.add(Collections.emptyList());
+        rules.put(head, bodies);
+        rules.put(tail, tailBodies);
+        order.add(order.indexOf(head) + 1, tail);
+    }
+
+    /**
+     * Left factors the grammar: productions of a non terminal that start with the same
+     * symbols, A ::= x b | x c, become A ::= x A', A' ::= b | c, until no two productions
+     * of a non terminal start with the same symbol.
+     * @return the rewritten grammar as BNF lines, start symbol first
+     */
+    public List<String> leftFactor() {
+        Map<String, List<List<String>>> rules = tokenizedRules();
+        List<String> order = new ArrayList<>(rules.keySet());
+        Deque<String> work = new ArrayDeque<>(order);
+
+        while(!work.isEmpty()) {
+            String head = work.pop();
+            Map<String, List<List<String>>> byFirst = new LinkedHashMap<>();
+            List<List<String>> bodies = new ArrayList<>();
+            for(List<String> body : rules.get(head)) {
+                if(body.isEmpty()) {
+                    bodies.add(body);
+                } else {
+                    byFirst.computeIfAbsent(body.get(0), first -> new ArrayList<>()).add(body);
+                }
+            }
+            for(List<List<String>> group : byFirst.values()) {
+                if(group.size() == 1) {
+                    bodies.add(group.get(0));
+                    continue;
+                }
+                int prefix = commonPrefix(group);
+                String tail = freshName(head + "prime", rules);
+                List<String> factored = new ArrayList<>(group.get(0).subList(0, prefix));
+                factored.add("<" + tail + ">");
+                bodies.add(factored);
+
+                List<List<String>> tailBodies = new ArrayList<>();
+                for(List<String> body : group) {
+                    tailBodies.add(body.subList(prefix, body.size()));
+                }
+                rules.put(tail, tailBodies);
+                order.add(order.indexOf(head) + 1, tail);
+                work.add(tail);
+            }
+            rules.put(head, bodies);
+        }
+        return bnfOf(rules, order);
+    }
+
+    private static int commonPrefix(List<List<String>> bodies) {
+        int prefix = 0;
+        while(true) {
+            for(List<String> body : bodies) {
+                if(body.size() == prefix || !body.get(prefix).equals(bodies.get(0).get(prefix))) {
+                    return prefix;
+                }
+            }
+            ++prefix;
+        }
+    }
+
+    private Map<String, List<List<String>>> tokenizedRules() {
+        Map<String, List<List<String>>> rules = new LinkedHashMap<>();
+        for(Map.Entry<String, String> rule : grammar.getRules().entries()) {
+            try {
+                List<String> body = Grammar.bodyTokens(rule.getValue());
+                rules.computeIfAbsent(rule.getKey(), head -> new ArrayList<>()).add(body);
+            } catch (BNFGrammarException e) { // the grammar has already read every body
+                throw new IllegalStateException(e);
+            }
+        }
+        return rules;
+    }
+
+    private static String freshName(String name, Map<String, ?> rules) {
+        String fresh = name;
+        for(int i = 2; rules.containsKey(fresh); i++) {
+            fresh = name + i;
+        }
+        return fresh;
+    }
+
+    private static List<String> bnfOf(Map<String, List<List<String>>> rules, List<String> order) {
+        List<String> lines = new ArrayList<>();
+        for(String head : order) {
+            for(List<String> body : rules.get(head)) {
+                lines.add("<" + head + "> ::= " + (body.isEmpty() ? "''" : String.join("", body)));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return for every non terminal index, the non terminals that can start a string it derives
+     */
+    private int[][] leftCorners() {
+        int[][] edges = new int[nonTerminalCount][];
+        for(int i = 0; i < nonTerminalCount; i++) {
+            Set<Integer> corners = new LinkedHashSet<>();
+            for(int production : productionsOf[i]) {
+                for(int symbol : grammar.productionSymbols(production)) {
+                    if(symbols.isTerminal(symbol)) {
+                        break;
+                    }
+                    corners.add(indexOf(symbol));
+                    if(!grammar.isNullable(symbol)) {
+                        break;
+                    }
+                }
+            }
+            edges[i] = corners.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return edges;
+    }
+
+    /**
+     * Tarjan's algorithm, with explicit stacks so long chains of non terminals cannot overflow the call stack.
+     * @return the strongly connected components of the graph
+     */
+    static List<int[]> stronglyConnectedComponents(int[][] edges) {
+        int nodes = edges.length;
+        int[] index = new int[nodes];
+        Arrays.fill(index, -1);
+        int[] low = new int[nodes];
+        int[] nextEdge = new int[nodes];
+        boolean[] onStack = new boolean[nodes];
+        ParseStack stack = new ParseStack();
+        ParseStack calls = new ParseStack();
+        int counter = 0;
+
+        List<int[]> components = new ArrayList<>();
+        for(int root = 0; root < nodes; root++) {
+            if(index[root] != -1) {
+                continue;
+            }
+            index[root] = low[root] = counter++;
+            stack.push(root);
+            onStack[root] = true;
+            calls.push(root);
+            while(!calls.isEmpty()) {
+                int node = calls.peek();
+                if(nextEdge[node] < edges[node].length) {
+                    int next = edges[node][nextEdge[node]++];
+                    if(index[next] == -1) {
+                        index[next] = low[next] = counter++;
+                        stack.push(next);
+                        onStack[next] = true;
+                        calls.push(next);
+                    } else if(onStack[next]) {
+                        low[node] = Math.min(low[node], index[next]);
+                    }
+                    continue;
+                }
+                calls.pop();
+                if(!calls.isEmpty()) {
+                    low[calls.peek()] = Math.min(low[calls.peek()], low[node]);
+                }
+                if(low[node] == index[node]) {
+                    ParseStack component = new ParseStack();
+                    int member;
+                    do {
+                        member = stack.pop();
+                        onStack[member] = false;
+                        component.push(member);
+                    } while(member != node);
+                    int[] members = component.toArray();
+                    Arrays.sort(members);
+                    components.add(members);
+                }
+            }
+        }
+        return components;
+    }
+
+    private int indexOf(int nonTerminal) {
+        return symbols.nonTerminalIndex(nonTerminal);
+    }
+
+    private String bodyOf(int production) {
+        String body = grammar.productionBody(production);
+        return body.isEmpty() ? "''" : body;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for(int v : values) {
+            if(v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String bracketed(List<String> names) {
+        StringJoiner joined = new StringJoiner(", ");
+        for(String name : names) {
+            joined.add("<" + name + ">");
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A problem found in a grammar by GrammarAnalyzer.
+ */
+public class GrammarDiagnostic {
+
+    public enum Kind {
+        // two productions of a non terminal are predicted by the same terminal, and more lookahead
+        // does not tell them apart
+        CONFLICT(true),
+        // two productions of a non terminal are predicted by the same terminal, and the
+        // LookaheadPredictor tells them apart
+        LOOKAHEAD_CONFLICT(false),
+        LEFT_RECURSION(true),
+        // no derivation from the start symbol uses the non terminal
+        UNREACHABLE(false),
+        // the non terminal derives no string of terminals
+        UNPRODUCTIVE(true),
+        // used in a body but has no production
+        UNDEFINED(true);
+
+        private final boolean error;
+
+        Kind(boolean error) {
+            this.error = error;
+        }
+
+        /**
+         * @return true if the grammar cannot be parsed correctly with this problem, false for a warning
+         */
+        public boolean isError() {
+            return error;
+        }
+    }
+
+    private final Kind kind;
+    private final List<String> symbols;
+    private final String message;
+
+    public GrammarDiagnostic(Kind kind, List<String> symbols, String message) {
+        this.kind = kind;
+        this.symbols = Collections.unmodifiableList(symbols);
+        this.message = message;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return the symbols involved, e.g. the non terminal and terminal of a conflict cell, or
+     *         the non terminals of a left recursive cycle
+     */
+    public List<String> symbols() {
+        return symbols;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return (kind.isError() ? "error: " : "warning: ") + message;
+    }
+}
@@ -0,0 +1,214 @@
+import java.util.*;
+
+/**
+ * Splits input into terminal ids. It is built once from the terminals of a grammar:
+ * the literal terminals are compiled into a DFA (a trie stored as a transition table
+ * over character classes) and the [identifier] and [number] token classes are matched
+ * by fixed character class loops. The longest match wins, and a literal wins over a
+ * token class match of the same length, so keywords are reserved words.
+ *
+ * A match is returned as a long holding both the terminal and the length of the
+ * match, so lexing does not allocate. See terminalOf(long) and lengthOf(long).
+ */
+public class Lexer {
+    public static final String IDENTIFIER = "[identifier]";
+    public static final String NUMBER = "[number]";
+    public static final long NO_MATCH = SymbolTable.NOT_FOUND & 0xffffffffL;
+
+    private static final int NO_STATE = -1;
+
+    // character class of every ASCII character. Class 0 is for characters no literal uses
+    private final int[] asciiClasses = new int[128];
+    // character classes of the non ASCII characters used by literals, sorted by character
+    private final char[] otherChars;
+    private final int[] otherClasses;
+    private final int classCount;
+
+    // transitions[state * classCount + class] is the next state or NO_STATE
+    private final int[] transitions;
+    // terminal accepted in a state, or SymbolTable.NOT_FOUND
+    private final int[] accepting;
+    private final int longestLiteral;
+
+    private final int identifier;
+    private final int number;
+
+    public Lexer(SymbolTable symbols) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> literalTerminals = new ArrayList<>();
+        for(int terminal = 0; terminal < symbols.terminalCount(); terminal++) {
+            String name = symbols.nameOf(terminal);
+            if(name.equals(Grammar.EOF) || name.equals(IDENTIFIER) || name.equals(NUMBER)) {
+                continue; // end of input is never read from the input
+            }
+            literals.add(name);
+            literalTerminals.add(terminal);
+        }
+        this.identifier = symbols.terminalId(IDENTIFIER);
+        this.number = symbols.terminalId(NUMBER);
+
+        // number the characters used by literals
+        SortedSet<Character> others = new TreeSet<>();
+        int classes = 1;
+        int longest = 0;
+        for(String literal : literals) {
+            longest = Math.max(longest, literal.length());
+            for(char c : literal.toCharArray()) {
+                if(c < asciiClasses.length) {
+                    if(asciiClasses[c] == 0) {
+                        asciiClasses[c] = classes++;
+                    }
+                } else {
+                    others.add(c);
+                }
+            }
+        }
+        this.otherChars = new char[others.size()];
+        this.otherClasses = new int[others.size()];
+        int i = 0;
+        for(char c : others) {
+            otherChars[i] = c;
+            otherClasses[i++] = classes++;
+        }
+        this.classCount = classes;
+        this.longestLiteral = longest;
+
+        // build the trie, one state per distinct literal prefix
+        List<int[]> rows = new ArrayList<>();
+        List<Integer> accepts = new ArrayList<>();
+        rows.add(newRow());
+        accepts.add(SymbolTable.NOT_FOUND);
+        for(int l = 0; l < literals.size(); l++) {
+            int state = 0;
+            for(char c : literals.get(l).toCharArray()) {
+                int characterClass = classOf(c);
+                int next = rows.get(state)[characterClass];
+                if(next == NO_STATE) {
+                    next = rows.size();
+                    rows.get(state)[characterClass] = next;
+                    rows.add(newRow());
+                    accepts.add(SymbolTable.NOT_FOUND);
+                }
+                state = next;
+            }
+            accepts.set(state, literalTerminals.get(l));
+        }
+
+        this.transitions = new int[rows.size() * classCount];
+        this.accepting = new int[rows.size()];
+        for(int state = 0; state < rows.size(); state++) {
+            System.arraycopy(rows.get(state), 0, transitions, state * classCount, classCount);
+            accepting[state] = accepts.get(state);
+        }
+    }
+
+    private int[] newRow() {
+        int[] row = new int[classCount];
+        Arrays.fill(row, NO_STATE);
+        return row;
+    }
+
+    private int classOf(char c) {
+        if(c < asciiClasses.length) {
+            return asciiClasses[c];
+        }
+        int index = Arrays.binarySearch(otherChars, c);
+        return index < 0 ? 0 : otherClasses[index];
+    }
+
+    /**
+     * Matches the longest terminal starting at start. Input past end is not looked at.
+     * @return the terminal and the length of the match, or NO_MATCH
+     */
+    public long match(CharSequence input, int start, int end) {
+        int terminal = SymbolTable.NOT_FOUND;
+        int length = 0;
+
+        int state = 0;
+        for(int i = start; i < end; i++) {
+            int characterClass = classOf(input.charAt(i));
+            if(characterClass == 0) {
+                break;
+            }
+            state = transitions[state * classCount + characterClass];
+            if(state == NO_STATE) {
+                break;
+            }
+            if(accepting[state] != SymbolTable.NOT_FOUND) {
+                terminal = accepting[state];
+                length = i - start + 1;
+            }
+        }
+
+        if(identifier != SymbolTable.NOT_FOUND && isIdentifierStart(input.charAt(start))) {
+            int i = start + 1;
+            while(i < end && isIdentifierPart(input.charAt(i))) {
+                ++i;
+            }
+            if(i - start > length) {
+                terminal = identifier;
+                length = i - start;
+            }
+        }
+        if(number != SymbolTable.NOT_FOUND && isDigit(input.charAt(start))) {
+            int i = start + 1;
+            while(i < end && isDigit(input.charAt(i))) {
+                ++i;
+            }
+            if(i + 1 < end && input.charAt(i) == '.' && isDigit(input.charAt(i + 1))) {
+                i += 2;
+                while(i < end && isDigit(input.charAt(i))) {
+                    ++i;
+                }
+            }
+            if(i - start > length) {
+                terminal = number;
+                length = i - start;
+            }
+        }
+        return terminal == SymbolTable.NOT_FOUND ? NO_MATCH : ((long) length << 32) | terminal;
+    }
+
+    public static int terminalOf(long match) {
+        return (int) match;
+    }
+
+    public static int lengthOf(long match) {
+        return (int) (match >>> 32);
+    }
+
+    /**
+     * @return the length of the longest literal terminal. Identifiers and numbers can be longer
+     */
+    public int longestLiteral() {
+        return longestLiteral;
+    }
+
+    /**
+     * @return how many characters past the end of a match match() may need to see to know that
+     *         the match ends there: a number is only known to end before a '.' if what follows
+     *         the '.' is not a digit
+     */
+    public int lookahead() {
+        return number != SymbolTable.NOT_FOUND ? 2 : 1;
+    }
+
+    /**
+     * @return true if matches can be longer than longestLiteral()
+     */
+    public boolean hasTokenClasses() {
+        return identifier != SymbolTable.NOT_FOUND || number != SymbolTable.NOT_FOUND;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,684 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Chooses the production of the cells of a ParseTable where the grammar is not LL(1), by
+ * looking at up to MAX_LOOKAHEAD terminals instead of one. Every other cell keeps its single
+ * production, so only the conflicting decisions cost more than a table lookup.
+ *
+ * A decision simulates every candidate production on the terminals that follow, without the
+ * stack below the non terminal, until only one candidate can go on. The results are cached
+ * per decision in a tree of the terminal sequences seen, a lookahead DFA, so a sequence is
+ * only simulated once. When candidates cannot be told apart without knowing what is below
+ * the non terminal, the decision is simulated again on the parse stack, reading only as deep
+ * as the candidates go. Those results are cached too, in a tree of what the simulations read
+ * from the stack and the input, so a decision with the same symbols below it is not simulated
+ * again however deep the stack is.
+ *
+ * If the candidates still cannot be told apart within MAX_LOOKAHEAD terminals, the production
+ * of the LL(1) table is used, as without lookahead. If none of them fits the input, one of
+ * those that fit it longest is used, so the error is reported where the input goes wrong.
+ *
+ * The terminals after the decision come from Tokens, which a parse positions after the terminal
+ * it is consuming: SequenceTokens for an input held in memory, or one that reads ahead.
+ */
+class LookaheadPredictor {
+    static final int MAX_LOOKAHEAD = 8;
+    // sequences cached per decision, past which decisions are simulated every time
+    static final int MAX_STATES = 4096;
+    // expansions of one simulation step, past which a grammar is taken to be left recursive
+    private static final int MAX_EXPANSIONS = 10000;
+    private static final int UNDECIDED = -2;
+    private static final int CONTEXT_NEEDED = -3;
+    // below the bottom of the parse stack, or of the stack of a decision that does not look at it
+    private static final int BOTTOM = -4;
+    // a character no terminal matches, which no configuration can match either
+    static final int UNKNOWN = -1;
+    // simulations decides makes, past which a cell is taken as not decided
+    private static final int MAX_EXPLORED = 100000;
+    // productions decides looks below a cell through
+    private static final int MAX_CHAIN = 32;
+
+    private final ParseTable parseTable;
+    private final SymbolTable symbols;
+    private final int terminalCount;
+    // the candidate productions of every conflicting cell
+    private final Map<Integer, int[]> candidates;
+    private final BitSet conflicts = new BitSet();
+    private final Map<Integer, Decision> decisions = new ConcurrentHashMap<>();
+
+    /**
+     * @param candidates the productions of every conflicting cell, by the index of the cell in the
+     *                   dense table
+     */
+    LookaheadPredictor(ParseTable parseTable, Map<Integer, int[]> candidates) {
+        this.parseTable = parseTable;
+        this.symbols = parseTable.symbols();
+        this.terminalCount = symbols.terminalCount();
+        this.candidates = candidates;
+        for(int cell : candidates.keySet()) {
+            conflicts.set(cell);
+        }
+    }
+
+    /**
+     * @return the productions of every conflicting cell, by the index of the cell in the dense table
+     */
+    Map<Integer, int[]> candidates() {
+        return Collections.unmodifiableMap(candidates);
+    }
+
+    boolean isConflict(int nonTerminal, int terminal) {
+        return conflicts.get(cellOf(nonTerminal, terminal));
+    }
+
+    private int cellOf(int nonTerminal, int terminal) {
+        return symbols.nonTerminalIndex(nonTerminal) * terminalCount + terminal;
+    }
+
+    /**
+     * @param nonTerminal on top of the stack, with a conflict for the terminal
+     * @param terminal the next terminal of the input
+     * @param tokens the terminals after it
+     * @param stack the parse stack with the non terminal on top. Entries that are not symbols,
+     *              such as actions or the node ends of a tree, are left out of the simulation
+     * @return the production to apply
+     */
+    int predict(int nonTerminal, int terminal, Tokens tokens, ParseStack stack) {
+        int cell = cellOf(nonTerminal, terminal);
+        Decision decision = decisions.computeIfAbsent(cell, c -> new Decision(nonTerminal, terminal));
+        State state = decision.root;
+        while(state.production == UNDECIDED) {
+            state = decision.next(state, tokens.get(state.depth));
+        }
+        if(state.production != CONTEXT_NEEDED) {
+            return state.production;
+        }
+
+        Context context = new Context(tokens, stack);
+        Read read = state.context.get();
+        while(read != null && read.production == UNDECIDED) {
+            read = read.next.get(context.read(read.query));
+        }
+        if(read != null) {
+            return read.production;
+        }
+        int production = simulate(cell, nonTerminal, terminal, context);
+        decision.cache(state, context.reads, production);
+        return production;
+    }
+
+    /**
+     * Simulates the decision again on top of the parse stack.
+     */
+    private int simulate(int cell, int nonTerminal, int terminal, Context context) {
+        Set<Configuration> configurations = new LinkedHashSet<>();
+        for(int production : candidates.get(cell)) {
+            configurations.add(new Configuration(production, parseTable.productionSymbols(production)));
+        }
+        Set<Configuration> previous = configurations;
+        configurations = advance(configurations, terminal, context);
+        for(int depth = 1; depth < MAX_LOOKAHEAD && configurations != null; depth++) {
+            int production = onlyProduction(configurations);
+            if(production == ParseTable.NO_RULE) {
+                return preferred(previous, nonTerminal, terminal);
+            } else if(production != UNDECIDED) {
+                return production;
+            }
+            previous = configurations;
+            configurations = advance(configurations, context.token(depth), context);
+        }
+        if(configurations == null) {
+            return parseTable.ruleToApply(nonTerminal, terminal);
+        }
+        return preferred(configurations.isEmpty() ? previous : configurations, nonTerminal, terminal);
+    }
+
+    /**
+     * Checks that every decision of a conflicting cell ends within MAX_LOOKAHEAD terminals:
+     * every sequence of terminals is simulated on every parse stack below the non terminal that
+     * the grammar allows, each chosen when the simulation first reads below what it has.
+     * @return false if some input keeps more than one candidate, or if that could not be told
+     */
+    boolean decides(int nonTerminal, int terminal) {
+        Set<Configuration> configurations = new LinkedHashSet<>();
+        for(int production : candidates.get(cellOf(nonTerminal, terminal))) {
+            configurations.add(new Configuration(production, parseTable.productionSymbols(production)));
+        }
+        return decides(configurations, terminal, 0, new Chain(new int[0], nonTerminal, 0), new int[1]);
+    }
+
+    /**
+     * @param depth of the terminal, 0 for the one of the cell
+     * @param explored the simulations made so far
+     */
+    private boolean decides(Set<Configuration> configurations, int terminal, int depth, Chain chain,
+                            int[] explored) {
+        if(++explored[0] > MAX_EXPLORED) {
+            return false;
+        }
+        Set<Configuration> advanced;
+        try {
+            advanced = advance(configurations, terminal, chain.context());
+        } catch (BelowChain e) {
+            if(chain.length == MAX_CHAIN) {
+                return false;
+            }
+            for(Chain longer : chain.longer()) {
+                if(!decides(configurations, terminal, depth, longer, explored)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if(advanced == null) {
+            return false;
+        }
+        if(onlyProduction(advanced) != UNDECIDED) { // decided, or the input is invalid
+            return true;
+        }
+        if(depth + 1 == MAX_LOOKAHEAD) {
+            return false;
+        }
+        for(int next = 0; next < terminalCount; next++) {
+            if(!decides(advanced, next, depth + 1, chain, explored)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the production of the LL(1) table if it is still a candidate, else the first one
+     */
+    private int preferred(Set<Configuration> configurations, int nonTerminal, int terminal) {
+        int tableProduction = parseTable.ruleToApply(nonTerminal, terminal);
+        for(Configuration configuration : configurations) {
+            if(configuration.production == tableProduction) {
+                return tableProduction;
+            }
+        }
+        return configurations.isEmpty() ? tableProduction : configurations.iterator().next().production;
+    }
+
+    /**
+     * @return the production of all the configurations, NO_RULE if there are none, or UNDECIDED
+     */
+    private static int onlyProduction(Set<Configuration> configurations) {
+        int production = ParseTable.NO_RULE;
+        for(Configuration configuration : configurations) {
+            if(production != ParseTable.NO_RULE && configuration.production != production) {
+                return UNDECIDED;
+            }
+            production = configuration.production;
+        }
+        return production;
+    }
+
+    /**
+     * Matches the terminal in every configuration, expanding the non terminals on top.
+     * Configurations that do not match are dropped, and one with an empty stack stays as it is,
+     * since what is below the decision is not known.
+     * @param context the parse stack below the decision, or null to leave it out
+     * @return the configurations after the terminal, or null if a left recursive grammar
+     *         keeps expanding
+     */
+    private Set<Configuration> advance(Set<Configuration> configurations, int terminal, Context context) {
+        Set<Configuration> advanced = new LinkedHashSet<>();
+        List<Configuration> pending = new ArrayList<>(configurations);
+        Set<Configuration> expanded = new LinkedHashSet<>();
+        while(!pending.isEmpty()) {
+            Configuration configuration = pending.remove(pending.size() - 1);
+            if(!expanded.add(configuration)) {
+                continue;
+            }
+            if(expanded.size() > MAX_EXPANSIONS) {
+                return null;
+            }
+            int top = configuration.top(context);
+            if(top == BOTTOM) {
+                advanced.add(configuration);
+            } else if(top == terminal) {
+                advanced.add(configuration.pop());
+            } else if(terminal != UNKNOWN && !symbols.isTerminal(top)) {
+                int cell = cellOf(top, terminal);
+                int[] productions = conflicts.get(cell) ? candidates.get(cell)
+                                                        : new int[] {parseTable.ruleToApply(top, terminal)};
+                for(int production : productions) {
+                    if(production != ParseTable.NO_RULE) {
+                        pending.add(configuration.expand(parseTable.productionSymbols(production)));
+                    }
+                }
+            }
+        }
+        return advanced;
+    }
+
+    /**
+     * The lookahead DFA of one conflicting cell: a tree of the terminals read after the first
+     * one, with the configurations left after them.
+     */
+    private class Decision {
+        private final int nonTerminal;
+        private final int terminal;
+        private final State root;
+        private final AtomicInteger states = new AtomicInteger();
+
+        Decision(int nonTerminal, int terminal) {
+            this.nonTerminal = nonTerminal;
+            this.terminal = terminal;
+            Set<Configuration> configurations = new LinkedHashSet<>();
+            for(int production : candidates.get(cellOf(nonTerminal, terminal))) {
+                configurations.add(new Configuration(production, parseTable.productionSymbols(production)));
+            }
+            this.root = state(configurations, advance(configurations, terminal, null), 1);
+        }
+
+        State next(State state, int terminal) {
+            State next = state.next.get(terminal);
+            if(next == null) {
+                next = state(state.configurations, advance(state.configurations, terminal, null), state.depth + 1);
+                if(reserve()) {
+                    State raced = state.next.putIfAbsent(terminal, next);
+                    next = raced == null ? next : raced;
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Adds the reads of a simulation on the parse stack to the tree of the state, ending with
+         * the production it chose.
+         */
+        void cache(State state, List<int[]> reads, int production) {
+            Read read = state.context.get();
+            if(read == null) {
+                if(!reserve()) {
+                    return;
+                }
+                state.context.compareAndSet(null, reads.isEmpty() ? new Read(0, production)
+                                                                  : new Read(reads.get(0)[0], UNDECIDED));
+                read = state.context.get();
+            }
+            for(int i = 0; i < reads.size(); i++) {
+                int answer = reads.get(i)[1];
+                Read next = read.next.get(answer);
+                if(next == null) {
+                    if(!reserve()) {
+                        return;
+                    }
+                    next = i + 1 < reads.size() ? new Read(reads.get(i + 1)[0], UNDECIDED) : new Read(0, production);
+                    Read raced = read.next.putIfAbsent(answer, next);
+                    next = raced == null ? next : raced;
+                }
+                read = next;
+            }
+        }
+
+        /**
+         * @return true if one more state can be cached, counting it
+         */
+        private boolean reserve() {
+            for(int count = states.get(); count < MAX_STATES; count = states.get()) {
+                if(states.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param previous the configurations before the last terminal
+         */
+        private State state(Set<Configuration> previous, Set<Configuration> configurations, int depth) {
+            if(configurations == null) {
+                return new State(null, parseTable.ruleToApply(nonTerminal, terminal), depth);
+            }
+            int production = onlyProduction(configurations);
+            if(production == ParseTable.NO_RULE) {
+                // the input is invalid, the parse reports it where the longest candidate fails
+                production = preferred(previous, nonTerminal, terminal);
+            } else if(production == UNDECIDED && (depth == MAX_LOOKAHEAD || allEmpty(configurations))) {
+                production = CONTEXT_NEEDED;
+            }
+            return new State(configurations, production, depth);
+        }
+
+        private boolean allEmpty(Set<Configuration> configurations) {
+            for(Configuration configuration : configurations) {
+                if(configuration.stack.length > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class State {
+        // null once decided
+        private final Set<Configuration> configurations;
+        private final int production;
+        private final int depth;
+        private final Map<Integer, State> next = new ConcurrentHashMap<>();
+        // the simulations on the parse stack, once the production is CONTEXT_NEEDED
+        private final AtomicReference<Read> context = new AtomicReference<>();
+
+        State(Set<Configuration> configurations, int production, int depth) {
+            this.configurations = production == UNDECIDED ? configurations : null;
+            this.production = production;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * A node of the tree of the simulations on the parse stack of one state: the read made there,
+     * with the node for every answer, or the production chosen.
+     */
+    private static class Read {
+        private final int query;
+        private final int production;
+        private final Map<Integer, Read> next = new ConcurrentHashMap<>();
+
+        /**
+         * @param query as for Context.read
+         * @param production UNDECIDED but for the last node
+         */
+        Read(int query, int production) {
+            this.query = query;
+            this.production = production;
+        }
+    }
+
+    /**
+     * The symbols below a decision on the parse stack and the terminals after it, read when a
+     * simulation first needs them. The first reads are kept in order, with their answers, as
+     * the path of the simulation in the tree of its state.
+     */
+    private class Context {
+        private final Tokens tokens;
+        private final ParseStack stack;
+        // the stack goes on below what it holds, see Chain
+        private final boolean open;
+        private final List<int[]> reads = new ArrayList<>();
+        // below the non terminal on top
+        private int entry = 1;
+        private int[] below = new int[MAX_LOOKAHEAD];
+        private int belowCount;
+        private int tokenCount = 1;
+
+        Context(Tokens tokens, ParseStack stack) {
+            this(tokens, stack, false);
+        }
+
+        private Context(Tokens tokens, ParseStack stack, boolean open) {
+            this.tokens = tokens;
+            this.stack = stack;
+            this.open = open;
+        }
+
+        /**
+         * @param query the depth of a terminal, or minus the depth of a symbol below the decision
+         */
+        int read(int query) {
+            return query > 0 ? token(query) : symbol(-query);
+        }
+
+        int token(int depth) {
+            int terminal = tokens.get(depth);
+            if(depth >= tokenCount) {
+                tokenCount = depth + 1;
+                reads.add(new int[] {depth, terminal});
+            }
+            return terminal;
+        }
+
+        /**
+         * @return the symbol depth symbols below the decision, leaving out the entries of the
+         *         stack that are not symbols, or BOTTOM
+         */
+        int symbol(int depth) {
+            while(belowCount <= depth) {
+                if(belowCount > 0 && below[belowCount - 1] == BOTTOM) {
+                    return BOTTOM;
+                }
+                int symbol = BOTTOM;
+                while(symbol == BOTTOM && entry < stack.size()) {
+                    int value = stack.peek(entry++);
+                    symbol = value >= 0 && value < symbols.size() ? value : BOTTOM;
+                }
+                if(symbol == BOTTOM && open) {
+                    throw BelowChain.INSTANCE;
+                }
+                if(belowCount == below.length) {
+                    below = Arrays.copyOf(below, belowCount * 2);
+                }
+                below[belowCount] = symbol;
+                reads.add(new int[] {-belowCount, symbol});
+                ++belowCount;
+            }
+            return below[depth];
+        }
+    }
+
+    /**
+     * A parse stack below a non terminal, as far as decides has chosen it: the symbols left of
+     * the productions the non terminal is in, nearest first, then the non terminal whose
+     * production comes below them, or BOTTOM once the end of input is reached.
+     */
+    private class Chain {
+        private final int[] below;
+        private final int next;
+        // the productions looked through
+        private final int length;
+
+        Chain(int[] below, int next, int length) {
+            this.below = below;
+            this.next = next;
+            this.length = length;
+        }
+
+        Context context() {
+            ParseStack stack = new ParseStack(below.length + 1);
+            for(int i = below.length - 1; i >= 0; i--) {
+                stack.push(below[i]);
+            }
+            stack.push(next); // in place of the non terminal decided, which is not read
+            return new Context(null, stack, next != BOTTOM);
+        }
+
+        /**
+         * @return every way the stack can go on, one production further. Productions that end
+         *         with the non terminal are looked through to the productions of their head
+         */
+        List<Chain> longer() {
+            List<Chain> chains = new ArrayList<>();
+            BitSet heads = new BitSet();
+            ParseStack work = new ParseStack();
+            heads.set(next);
+            work.push(next);
+            while(!work.isEmpty()) {
+                int head = work.pop();
+                if(head == parseTable.startSymbol()) {
+                    chains.add(new Chain(append(new int[] {parseTable.eof()}, 0), BOTTOM, length + 1));
+                }
+                for(int production = 0; production < parseTable.numberOfProductions(); production++) {
+                    int[] body = parseTable.productionSymbols(production);
+                    for(int i = 0; i < body.length; i++) {
+                        if(body[i] != head) {
+                            continue;
+                        }
+                        int above = parseTable.productionHead(production);
+                        if(i + 1 < body.length) {
+                            chains.add(new Chain(append(body, i + 1), above, length + 1));
+                        } else if(!heads.get(above)) {
+                            heads.set(above);
+                            work.push(above);
+                        }
+                    }
+                }
+            }
+            return chains;
+        }
+
+        private int[] append(int[] body, int from) {
+            int[] longer = Arrays.copyOf(below, below.length + body.length - from);
+            System.arraycopy(body, from, longer, below.length, body.length - from);
+            return longer;
+        }
+    }
+
+    /**
+     * Thrown by a Context of decides that is read below the Chain it was made from.
+     */
+    private static class BelowChain extends RuntimeException {
+        private static final BelowChain INSTANCE = new BelowChain();
+
+        private BelowChain() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * A candidate production and the symbols left to match, top of the stack last. Once they
+     * are matched, a simulation on the parse stack goes on with the symbols below the decision.
+     */
+    private static class Configuration {
+        private final int production;
+        private final int[] stack;
+        // the symbols below the decision matched or expanded
+        private final int below;
+
+        Configuration(int production, int[] body) {
+            this(production, new int[0], 0, body);
+        }
+
+        private Configuration(int production, int[] rest, int below, int[] body) {
+            this.production = production;
+            this.stack = Arrays.copyOf(rest, rest.length + body.length);
+            this.below = below;
+            for(int i = 0; i < body.length; i++) {
+                stack[rest.length + i] = body[body.length - 1 - i];
+            }
+        }
+
+        /**
+         * @param context the parse stack below the decision, or null to leave it out
+         */
+        int top(Context context) {
+            if(stack.length > 0) {
+                return stack[stack.length - 1];
+            }
+            return context == null ? BOTTOM : context.symbol(below);
+        }
+
+        Configuration pop() {
+            return expand(new int[0]);
+        }
+
+        /**
+         * Replaces the top with the body.
+         */
+        Configuration expand(int[] body) {
+            if(stack.length == 0) {
+                return new Configuration(production, stack, below + 1, body);
+            }
+            return new Configuration(production, Arrays.copyOf(stack, stack.length - 1), below, body);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Configuration)) {
+                return false;
+            }
+            Configuration other = (Configuration) o;
+            return production == other.production && below == other.below && Arrays.equals(stack, other.stack);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * production + below) + Arrays.hashCode(stack);
+        }
+    }
+
+    /**
+     * The terminals of the input after the one being decided, lexed when first needed.
+     * Past the end of the input every terminal is the end of input, and past a character no
+     * terminal matches every terminal is UNKNOWN. A parse keeps one and positions it after
+     * every terminal it consumes, so the terminals are lexed once for all the decisions there.
+     */
+    abstract static class Tokens {
+        private final int[] terminals = new int[MAX_LOOKAHEAD];
+        private int count = 1;
+
+        /**
+         * @param depth 1 for the terminal after the one being decided, less than MAX_LOOKAHEAD
+         */
+        int get(int depth) {
+            while(count <= depth) {
+                terminals[count++] = lex();
+            }
+            return terminals[depth];
+        }
+
+        /**
+         * Forgets the terminals lexed, when the parse moves on.
+         */
+        void clear() {
+            count = 1;
+        }
+
+        /**
+         * @return the next terminal, the end of input past it, or UNKNOWN
+         */
+        abstract int lex();
+    }
+
+    /**
+     * The terminals of an input held in memory.
+     */
+    static class SequenceTokens extends Tokens {
+        private final ParseTable parseTable;
+        private final CharSequence input;
+        private int index;
+
+        SequenceTokens(ParseTable parseTable, CharSequence input) {
+            this.parseTable = parseTable;
+            this.input = input;
+        }
+
+        /**
+         * @param next the index in the input after the terminal being consumed
+         */
+        SequenceTokens at(int next) {
+            index = next;
+            clear();
+            return this;
+        }
+
+        @Override
+        int lex() {
+            int length = input.length();
+            while(index < length && TableDrivenParser.isWhitespace(input.charAt(index))) {
+                ++index;
+            }
+            if(index == length) {
+                return parseTable.eof();
+            }
+            long match = parseTable.lexer().match(input, index, length);
+            if(match == Lexer.NO_MATCH) {
+                return UNKNOWN;
+            }
+            index += Lexer.lengthOf(match);
+            return Lexer.terminalOf(match);
+        }
+    }
+}
@@ -1,27 +1,61 @@
-import java.io.IOException;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Stream;
 
 public class Main {
     private static final String BANNER_FILE = "banner.txt";
+    private static final String GRAMMAR_FILE = "language.bnf";
+    // written by the compileParseTable task of the build
+    private static final String TABLE_FILE = "build/tables/language.llt";
 
+    /**
+     * Usage:
+     * <pre>
+     * Main                                 reads expressions from the console and evaluates them
+     * Main --batch [grammar.bnf]           validates every line of stdin, one result per line on stdout
+     * Main --server port [grammar.bnf]     validates lines sent over TCP on localhost, see ValidationServer
+     * </pre>
+     */
     public static void main(String[] args) throws IOException, BNFGrammarException {
-        Grammar grammar = new Grammar("language.bnf");
-        Parser parser = new TableDrivenParser(grammar);
+        if(args.length == 0) {
+            interactive();
+        } else if(args[0].equals("--batch") && args.length <= 2) {
+            long invalid = batch(parserOf(args, 1), System.in, System.out);
+            System.exit(invalid == 0 ? 0 : 1);
+        } else if(args[0].equals("--server") && (args.length == 2 || args.length == 3)) {
+            serve(parserOf(args, 2), Integer.parseInt(args[1]));
+        } else {
+            System.err.println("Usage: Main [--batch [grammar.bnf] | --server port [grammar.bnf]]");
+            System.exit(2);
+        }
+    }
+
+    private static void interactive() throws IOException, BNFGrammarException {
+        ParseTable parseTable = ParseTableFile.loadOrGenerate(Paths.get(TABLE_FILE), Paths.get(GRAMMAR_FILE));
+        BooleanEvaluator evaluator = new BooleanEvaluator(parseTable);
         Scanner scanner = new Scanner(System.in);
 
         printBanner();
 
         while(true) {
             System.out.print("> ");
+            if(!scanner.hasNextLine()) { // end of input, e.g. ctrl-d
+                System.out.println();
+                return;
+            }
             String input = scanner.nextLine();
 
             try {
-                parser.parse(input);
-                System.out.println("Valid input");
+                boolean value = evaluator.evaluate(input);
+                System.out.println("Valid input. Evaluates to " + (value ? 1 : 0));
             } catch (SyntaxException e) {
                 System.out.println("Syntax error.");
                 System.out.println(e.getMessage());
@@ -30,6 +64,39 @@ public class Main {
         }
     }
 
+    /**
+     * @return a parser of the grammar named by args[index], or of language.bnf
+     */
+    private static Parser parserOf(String[] args, int index) throws IOException, BNFGrammarException {
+        if(index < args.length) {
+            return new TableDrivenParser(new Grammar(args[index]));
+        }
+        return new TableDrivenParser(ParseTableFile.loadOrGenerate(Paths.get(TABLE_FILE), Paths.get(GRAMMAR_FILE)));
+    }
+
+    /**
+     * Validates every line of input, and writes a ValidationResult per line to output.
+     * @return the number of invalid lines
+     */
+    static long batch(Parser parser, InputStream input, PrintStream output) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        long invalid = new BatchValidator(parser).validate(reader.lines(), output::println);
+        output.flush();
+        return invalid;
+    }
+
+    private static void serve(Parser parser, int port) throws IOException {
+        // only local clients, the server does not authenticate them
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try(ValidationServer server = new ValidationServer(parser, workers, address)) {
+            System.err.println("Listening on " + server.address());
+            server.run();
+        } finally {
+            workers.shutdown();
+        }
+    }
+
     private static void printBanner() throws IOException {
         Path path = Paths.get(BANNER_FILE);
         if(Files.exists(path)) {
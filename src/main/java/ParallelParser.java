@@ -0,0 +1,263 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Experimental: parses a very long input in parts on many threads. The input is split before
+ * separator terminals at bracket depth zero, such as | and ^ of language.bnf, and every part
+ * is parsed from the stack the first part ends with, as a guess of the stack the sequential
+ * parse has at that point.
+ *
+ * A part that ends with the same stack it started from proves the guess for the next part, so
+ * when every part does, the input is valid exactly as if it had been parsed sequentially. If a
+ * part fails or ends with another stack, the input is parsed again sequentially, which gives
+ * the same result and SyntaxException as TableDrivenParser.
+ *
+ * Bracket depths are counted with a parallel prefix sum over blocks of the input, for the
+ * bracket pairs the grammar keeps balanced, see Prescanner. Inputs shorter than two parts are
+ * parsed sequentially, and so are all inputs of a parser with a limit of steps, which is
+ * counted for the whole input. Parts are not counted in the metrics of the parser.
+ */
+public class ParallelParser implements Parser {
+    public static final int DEFAULT_PART_LENGTH = 256 * 1024;
+
+    private final TableDrivenParser parser;
+    private final ForkJoinPool pool;
+    private final int partLength;
+    private final boolean[] separators = new boolean[128];
+    private final char[] opening;
+    private final char[] closing;
+
+    /**
+     * @param separators terminals of one character, e.g. "|", that no other terminal contains
+     */
+    public ParallelParser(TableDrivenParser parser, String... separators) {
+        this(parser, ForkJoinPool.commonPool(), DEFAULT_PART_LENGTH, separators);
+    }
+
+    /**
+     * @param partLength the length of the parts, at least, the last one aside
+     */
+    public ParallelParser(TableDrivenParser parser, ForkJoinPool pool, int partLength, String... separators) {
+        if(partLength < 1) {
+            throw new IllegalArgumentException("The part length must be positive");
+        }
+        this.parser = parser;
+        this.pool = pool;
+        this.partLength = partLength;
+        SymbolTable symbols = parser.parseTable().symbols();
+        for(String separator : separators) {
+            if(symbols.terminalId(separator) == SymbolTable.NOT_FOUND || separator.length() != 1
+                    || separator.charAt(0) >= this.separators.length || !isSeparable(symbols, separator.charAt(0))) {
+                throw new IllegalArgumentException("A separator must be a terminal of one ASCII character that no "
+                                                    + "other terminal contains: " + separator);
+            }
+            this.separators[separator.charAt(0)] = true;
+        }
+        Prescanner prescanner = new Prescanner(parser.parseTable());
+        this.opening = new char[prescanner.checkedPairs().size()];
+        this.closing = new char[opening.length];
+        for(int pair = 0; pair < opening.length; pair++) {
+            opening[pair] = prescanner.checkedPairs().get(pair).charAt(0);
+            closing[pair] = prescanner.checkedPairs().get(pair).charAt(1);
+        }
+    }
+
+    private static boolean isSeparable(SymbolTable symbols, char c) {
+        for(int terminal = 0; terminal < symbols.terminalCount(); terminal++) {
+            String name = symbols.nameOf(terminal);
+            if(name.equals(Lexer.IDENTIFIER) ? Character.isLetterOrDigit(c) || c == '_'
+                    : name.equals(Lexer.NUMBER) ? Character.isDigit(c) || c == '.'
+                    : name.length() > 1 && !name.equals(Grammar.EOF) && name.indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean parse(String input) throws SyntaxException {
+        return parse((CharSequence) input);
+    }
+
+    public boolean parse(CharSequence input) throws SyntaxException {
+        int length = input.length();
+        if(length < 2 * partLength || length > parser.limits().maxInputLength()
+                || parser.limits().maxSteps() != ParserLimits.NONE.maxSteps()) {
+            return parser.parse(input);
+        }
+        int[] starts = partStarts(input);
+        if(starts.length > 1) {
+            try {
+                int[] guess = parser.parsePart(input, 0, starts[1], null, false);
+                Parts parts = new Parts(input, starts, guess, 1, starts.length);
+                pool.invoke(parts);
+                if(!parts.failed) {
+                    return true;
+                }
+            } catch (SyntaxException e) {
+                // parsed again below, to throw exactly what a sequential parse throws
+            }
+        }
+        return parser.parse(input);
+    }
+
+    /**
+     * @return 0 and the offsets of the separators where the parts start, in order
+     */
+    int[] partStarts(CharSequence input) {
+        int blocks = (input.length() + partLength - 1) / partLength;
+        // the change of depth of every pair in every block, then the depths at the block starts
+        int[][] depths = new int[blocks + 1][opening.length];
+        pool.invoke(new BlockDepths(input, depths, 0, blocks));
+        for(int block = 1; block <= blocks; block++) {
+            for(int pair = 0; pair < opening.length; pair++) {
+                depths[block][pair] += depths[block - 1][pair];
+            }
+        }
+        int[] starts = new int[blocks];
+        pool.invoke(new FirstSeparators(input, depths, starts, 1, blocks));
+        int count = 1;
+        for(int block = 1; block < blocks; block++) {
+            if(starts[block] > starts[count - 1]) {
+                starts[count++] = starts[block];
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    private int depthChange(char c, int pair) {
+        return c == opening[pair] ? 1 : c == closing[pair] ? -1 : 0;
+    }
+
+    /**
+     * Counts the change of depth of every block, into depths[block + 1].
+     */
+    private class BlockDepths extends RecursiveAction {
+        private final CharSequence input;
+        private final int[][] depths;
+        private final int from;
+        private final int to;
+
+        BlockDepths(CharSequence input, int[][] depths, int from, int to) {
+            this.input = input;
+            this.depths = depths;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BlockDepths(input, depths, from, middle), new BlockDepths(input, depths, middle, to));
+                return;
+            }
+            int end = Math.min(input.length(), (from + 1) * partLength);
+            for(int i = from * partLength; i < end; i++) {
+                char c = input.charAt(i);
+                for(int pair = 0; pair < opening.length; pair++) {
+                    depths[from + 1][pair] += depthChange(c, pair);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the first separator at depth zero of every block into starts[block], or 0 if
+     * there is none.
+     */
+    private class FirstSeparators extends RecursiveAction {
+        private final CharSequence input;
+        private final int[][] depths;
+        private final int[] starts;
+        private final int from;
+        private final int to;
+
+        FirstSeparators(CharSequence input, int[][] depths, int[] starts, int from, int to) {
+            this.input = input;
+            this.depths = depths;
+            this.starts = starts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FirstSeparators(input, depths, starts, from, middle),
+                          new FirstSeparators(input, depths, starts, middle, to));
+                return;
+            }
+            if(to == from) {
+                return;
+            }
+            int[] depth = depths[from].clone();
+            int end = Math.min(input.length(), (from + 1) * partLength);
+            for(int i = from * partLength; i < end; i++) {
+                char c = input.charAt(i);
+                boolean top = true;
+                for(int pair = 0; pair < opening.length; pair++) {
+                    top &= depth[pair] == 0;
+                    depth[pair] += depthChange(c, pair);
+                }
+                if(top && c < separators.length && separators[c]) {
+                    starts[from] = i;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses parts first to last - 1 from the guessed stack, and checks that all but the
+     * last one end with it.
+     */
+    private class Parts extends RecursiveAction {
+        private final CharSequence input;
+        private final int[] starts;
+        private final int[] guess;
+        private final int first;
+        private final int last;
+        // set by any part of the parse, read once all are done
+        private volatile boolean failed;
+        private final Parts root;
+
+        Parts(CharSequence input, int[] starts, int[] guess, int first, int last) {
+            this(input, starts, guess, first, last, null);
+        }
+
+        private Parts(CharSequence input, int[] starts, int[] guess, int first, int last, Parts root) {
+            this.input = input;
+            this.starts = starts;
+            this.guess = guess;
+            this.first = first;
+            this.last = last;
+            this.root = root == null ? this : root;
+        }
+
+        @Override
+        protected void compute() {
+            if(last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new Parts(input, starts, guess, first, middle, root),
+                          new Parts(input, starts, guess, middle, last, root));
+                return;
+            }
+            if(root.failed) { // another part failed, the input is parsed again anyway
+                return;
+            }
+            boolean end = first == starts.length - 1;
+            int to = end ? input.length() : starts[first + 1];
+            try {
+                int[] stack = parser.parsePart(input, starts[first], to, guess, end);
+                if(!end && !Arrays.equals(stack, guess)) {
+                    root.failed = true;
+                }
+            } catch (SyntaxException e) {
+                root.failed = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Thrown when a parse goes over one of its ParserLimits. The input may be valid, it is
+ * just too big, too deep or too long to parse with these limits.
+ *
+ * The offset is where the parse was when it went over the limit. An input in memory that is
+ * too long is rejected before it is parsed, at offset 0.
+ */
+public class ParseLimitException extends SyntaxException {
+
+    public enum Limit {
+        STACK_DEPTH("stack depth"),
+        INPUT_LENGTH("input length"),
+        STEPS("steps"),
+        TOKEN_LENGTH("token length");
+
+        private final String description;
+
+        Limit(String description) {
+            this.description = description;
+        }
+    }
+
+    private final Limit limit;
+    private final long maximum;
+
+    public ParseLimitException(Limit limit, long maximum, long offset) {
+        super(null, offset, messageOf(limit, maximum, offset));
+        this.limit = limit;
+        this.maximum = maximum;
+    }
+
+    static String messageOf(Limit limit, long maximum, long offset) {
+        return "Parse limit exceeded, " + limit.description + " over " + maximum
+                + ", at offset " + offset + " in input";
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the value of the limit that was exceeded
+     */
+    public long getMaximum() {
+        return maximum;
+    }
+}
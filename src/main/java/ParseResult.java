@@ -0,0 +1,26 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a parse with error recovery: every syntax error found, in input order.
+ */
+public class ParseResult {
+    private final List<SyntaxError> errors;
+
+    ParseResult(List<SyntaxError> errors) {
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    public List<SyntaxError> errors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return isValid() ? "valid" : errors.size() + " errors: " + errors;
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Result of an incremental parse, see TableDrivenParser.parseIncremental. Besides whether
+ * the input was valid, it keeps checkpoints: copies of the parse stack taken every few
+ * terminals, with the offset where parsing went on from there. A reparse after an edit
+ * starts again from the last checkpoint before the edit instead of from the beginning.
+ *
+ * The checkpoints are kept in a persistent tree. A reparse shares the checkpoints before and
+ * after the edit with the previous snapshot, and moves those after it by shifting whole
+ * subtrees, so it does not copy them.
+ *
+ * Snapshots are not modified once returned, so they can be kept and shared.
+ */
+public class ParseSnapshot {
+    private Node checkpoints;
+
+    private SyntaxException error;
+    private int length;
+    private int terminalsRead;
+
+    void add(int position, int[] stack) {
+        checkpoints = merge(checkpoints, new Node(position, stack, 0, ThreadLocalRandom.current().nextInt(),
+                                                  null, null));
+    }
+
+    /**
+     * Adds the checkpoints of another snapshot from checkpoint first on, moved by delta characters.
+     */
+    void addShifted(ParseSnapshot other, int first, int delta) {
+        checkpoints = merge(checkpoints, shifted(split(other.checkpoints, first)[1], delta));
+    }
+
+    /**
+     * @return a snapshot with the first count checkpoints of this one
+     */
+    ParseSnapshot prefix(int count) {
+        ParseSnapshot prefix = new ParseSnapshot();
+        prefix.checkpoints = split(checkpoints, count)[0];
+        return prefix;
+    }
+
+    void finish(int length, int terminalsRead, SyntaxException error) {
+        this.length = length;
+        this.terminalsRead = terminalsRead;
+        this.error = error;
+    }
+
+    int checkpoints() {
+        return sizeOf(checkpoints);
+    }
+
+    int position(int checkpoint) {
+        int shift = 0;
+        Node node = checkpoints;
+        while(true) {
+            shift += node.shift;
+            int left = sizeOf(node.left);
+            if(checkpoint == left) {
+                return shift + node.position;
+            }
+            if(checkpoint < left) {
+                node = node.left;
+            } else {
+                checkpoint -= left + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    int[] stack(int checkpoint) {
+        Node node = checkpoints;
+        while(true) {
+            int left = sizeOf(node.left);
+            if(checkpoint == left) {
+                return node.stack;
+            }
+            if(checkpoint < left) {
+                node = node.left;
+            } else {
+                checkpoint -= left + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * @return the number of checkpoints before position
+     */
+    int checkpointsBefore(int position) {
+        int count = 0;
+        int shift = 0;
+        Node node = checkpoints;
+        while(node != null) {
+            shift += node.shift;
+            if(shift + node.position < position) {
+                count += sizeOf(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    /**
+     * @return the syntax error of the input, or null if it is valid
+     */
+    public SyntaxException error() {
+        return error;
+    }
+
+    /**
+     * @return the length of the parsed input
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the number of terminals read by the parse that made this snapshot. For a
+     *         reparse this is the work done, not the number of terminals in the input
+     */
+    public int terminalsRead() {
+        return terminalsRead;
+    }
+
+    private static int sizeOf(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node shifted(Node node, int delta) {
+        return node == null || delta == 0 ? node : new Node(node.position, node.stack, node.shift + delta,
+                                                            node.priority, node.left, node.right);
+    }
+
+    /**
+     * @return the node with its shift moved down to its position and children
+     */
+    private static Node pushed(Node node) {
+        return node.shift == 0 ? node : new Node(node.position + node.shift, node.stack, 0, node.priority,
+                                                 shifted(node.left, node.shift), shifted(node.right, node.shift));
+    }
+
+    private static Node merge(Node first, Node second) {
+        if(first == null) {
+            return second;
+        }
+        if(second == null) {
+            return first;
+        }
+        if(first.priority > second.priority) {
+            first = pushed(first);
+            return first.with(first.left, merge(first.right, second));
+        }
+        second = pushed(second);
+        return second.with(merge(first, second.left), second.right);
+    }
+
+    /**
+     * @return the first count checkpoints of node and the others
+     */
+    private static Node[] split(Node node, int count) {
+        if(node == null) {
+            return new Node[2];
+        }
+        node = pushed(node);
+        int left = sizeOf(node.left);
+        if(count <= left) {
+            Node[] parts = split(node.left, count);
+            parts[1] = node.with(parts[1], node.right);
+            return parts;
+        }
+        Node[] parts = split(node.right, count - left - 1);
+        parts[0] = node.with(node.left, parts[0]);
+        return parts;
+    }
+
+    /**
+     * Checkpoint in a treap ordered by position. Nodes are shared between snapshots and never
+     * modified: shift is added to the positions of the node and of all nodes below it.
+     */
+    private static final class Node {
+        private final int position;
+        // bottom to top
+        private final int[] stack;
+        private final int shift;
+        private final int priority;
+        private final Node left;
+        private final Node right;
+        private final int size;
+
+        private Node(int position, int[] stack, int shift, int priority, Node left, Node right) {
+            this.position = position;
+            this.stack = stack;
+            this.shift = shift;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = sizeOf(left) + 1 + sizeOf(right);
+        }
+
+        private Node with(Node left, Node right) {
+            return left == this.left && right == this.right ? this
+                    : new Node(position, stack, shift, priority, left, right);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.Arrays;
+
+/**
+ * Stack of symbol ids, or other ints, backed by a growable int array. The array is kept
+ * between parses, so once it has grown to the deepest input seen, parsing
+ * does not allocate.
+ *
+ * A stack can have a maximum size, past which it never grows. Callers check hasRoomFor
+ * before pushing.
+ */
+public class ParseStack {
+    static final int INITIAL_CAPACITY = 64;
+
+    private int[] symbols;
+    private int size;
+    private final int maxSize;
+
+    public ParseStack() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ParseStack(int capacity) {
+        this(capacity, Integer.MAX_VALUE);
+    }
+
+    public ParseStack(int capacity, int maxSize) {
+        this.symbols = new int[Math.max(Math.min(capacity, maxSize), 1)];
+        this.maxSize = maxSize;
+    }
+
+    public void push(int symbol) {
+        if(size == symbols.length) {
+            grow(size + 1);
+        }
+        symbols[size++] = symbol;
+    }
+
+    /**
+     * Pushes a production body right to left, so its leftmost symbol ends up on top.
+     */
+    public void pushReversed(int[] body) {
+        if(size + body.length > symbols.length) {
+            grow(size + body.length);
+        }
+        for(int i = body.length - 1; i >= 0; i--) {
+            symbols[size++] = body[i];
+        }
+    }
+
+    /**
+     * Pushes the values in order, so the last one ends up on top.
+     */
+    public void pushAll(int[] values) {
+        if(size + values.length > symbols.length) {
+            grow(size + values.length);
+        }
+        System.arraycopy(values, 0, symbols, size, values.length);
+        size += values.length;
+    }
+
+    public int pop() {
+        return symbols[--size];
+    }
+
+    public int peek() {
+        return symbols[size - 1];
+    }
+
+    /**
+     * @return the value depth entries below the top, peek(0) being the top
+     */
+    public int peek(int depth) {
+        return symbols[size - 1 - depth];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return true if count more values can be pushed without going over the maximum size
+     */
+    public boolean hasRoomFor(int count) {
+        return count <= maxSize - size;
+    }
+
+    /**
+     * @return the contents of the stack, bottom to top
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(symbols, size);
+    }
+
+    /**
+     * @return true if the stack holds exactly the values, bottom to top
+     */
+    public boolean contentEquals(int[] values) {
+        if(values.length != size) {
+            return false;
+        }
+        for(int i = size - 1; i >= 0; i--) { // stacks usually differ near the top
+            if(symbols[i] != values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void grow(int minCapacity) {
+        if(minCapacity > maxSize) {
+            throw new IllegalStateException("Stack is full, its maximum size is " + maxSize);
+        }
+        // doubling is done in long so it cannot overflow
+        symbols = Arrays.copyOf(symbols, (int) Math.min(Math.max(minCapacity, symbols.length * 2L), maxSize));
+    }
+}
@@ -1,45 +1,320 @@
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.text.MessageFormat;
 import java.util.*;
 
+/**
+ * LL(1) parse table compiled to a flat int array. Row i holds the non terminal
+ * with index i, column t the terminal with id t, and each cell the number of the
+ * production to apply or NO_RULE.
+ *
+ * Where the grammar is not LL(1), a cell holds the last of its productions, and a
+ * LookaheadPredictor chooses between all of them with more lookahead.
+ *
+ * Tables of more than COMPRESSION_THRESHOLD cells are compressed once generated, see
+ * CompressedTable, so that large grammars still fit in the processor caches.
+ *
+ * A generated table holds everything needed to parse, so it can be saved with
+ * ParseTableFile and loaded again without the grammar. generate publishes the cells once they
+ * are filled, so a generated table can be shared between threads.
+ */
 public class ParseTable {
-    private Grammar grammar;
-    private Table<String, String, String> table = HashBasedTable.create();
+    public static final int NO_RULE = -1;
+    // 64 KiB of cells
+    static final int COMPRESSION_THRESHOLD = 16 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParseTable.class);
+
+    private final Grammar grammar; // null for a table loaded from a file
+    private final String grammarHash;
+    private final SymbolTable symbols;
+    private final int terminalCount;
+    private final int[] productionHeads;
+    private final int[][] productionSymbols;
+    private final String[] productionBodies;
+    private final int[][] productionSteps;
+    private final String[] actions;
+    // the dense table, null once compressed
+    private volatile int[] table;
+    private volatile CompressedTable compressed;
+    // null if the grammar is LL(1)
+    private volatile LookaheadPredictor predictor;
+    private volatile boolean generated;
+    // FOLLOW set of every non terminal, by non terminal index. Used to recover from errors
+    private final BitSet[] followSets;
+    private final int startSymbol;
+    private final int eof;
+
+    private final Lexer lexer;
 
     public ParseTable(Grammar grammar) {
         this.grammar = grammar;
+        this.grammarHash = grammar.contentHash();
+        this.symbols = grammar.symbols();
+        this.terminalCount = symbols.terminalCount();
+
+        int productions = grammar.numberOfProductions();
+        this.productionHeads = new int[productions];
+        this.productionSymbols = new int[productions][];
+        this.productionBodies = new String[productions];
+        this.productionSteps = new int[productions][];
+        for(int production = 0; production < productions; production++) {
+            productionHeads[production] = grammar.productionHead(production);
+            productionSymbols[production] = grammar.productionSymbols(production);
+            productionBodies[production] = grammar.productionBody(production);
+            productionSteps[production] = grammar.productionSteps(production);
+        }
+        this.actions = grammar.actions().toArray(new String[0]);
+
+        this.followSets = new BitSet[symbols.nonTerminalCount()];
+        for(int nonTerminal = terminalCount; nonTerminal < symbols.size(); nonTerminal++) {
+            followSets[symbols.nonTerminalIndex(nonTerminal)] = grammar.followSet(nonTerminal);
+        }
+
+        this.table = new int[symbols.nonTerminalCount() * terminalCount];
+        Arrays.fill(table, NO_RULE);
+        this.startSymbol = symbols.nonTerminalId(grammar.getStartSymbol());
+        this.eof = symbols.terminalId(Grammar.EOF);
+
+        this.lexer = new Lexer(symbols);
+    }
+
+    /**
+     * Creates a table that is already generated, e.g. one read by ParseTableFile.
+     * @param conflicts the productions of the cells with more than one, see conflicts()
+     */
+    ParseTable(String grammarHash, SymbolTable symbols, int startSymbol, String[] actions, int[] productionHeads,
+                    int[][] productionSymbols, int[][] productionSteps, String[] productionBodies, int[] table,
+                    Map<Integer, int[]> conflicts, BitSet[] followSets) {
+        this.grammar = null;
+        this.grammarHash = grammarHash;
+        this.symbols = symbols;
+        this.terminalCount = symbols.terminalCount();
+        this.productionHeads = productionHeads;
+        this.productionSymbols = productionSymbols;
+        this.productionBodies = productionBodies;
+        this.productionSteps = productionSteps;
+        this.actions = actions;
+        this.table = table;
+        this.followSets = followSets;
+        this.startSymbol = startSymbol;
+        this.eof = symbols.terminalId(Grammar.EOF);
+        this.lexer = new Lexer(symbols);
+        if(!conflicts.isEmpty()) {
+            this.predictor = new LookaheadPredictor(this, conflicts);
+        }
+        if(table.length > COMPRESSION_THRESHOLD) {
+            compress(table);
+        }
+        this.generated = true;
     }
 
     public void generate() throws BNFGrammarException {
-//        System.out.println("------ PARSE TABLE -------");
-        for(Map.Entry<String, String> rule : grammar.getRules().entries()) {
-            String productionHead = rule.getKey();
-            String productionBody = rule.getValue();
-
-//            System.out.println("Production Head: " + productionHead);
-//            System.out.println("Production Body: " + productionBody);
-
-            Set<String> firstSets = grammar.firstOf(productionHead, productionBody);
-//            System.out.println("First sets are: ");
-//            firstSets.forEach(System.out::print);
-
-//            System.out.println();
-            for(String terminal : firstSets) {
-                System.out.println(MessageFormat.format("T[{0}, {1}] = {2}",
-                                                            productionHead,
-                                                                terminal, productionBody));
-                table.put(productionHead, terminal, productionBody);
+        generate(COMPRESSION_THRESHOLD);
+    }
+
+    /**
+     * Fills the table, once: a table that is already generated is left as it is.
+     * @param compressAbove the number of cells past which the table is compressed
+     */
+    synchronized void generate(int compressAbove) throws BNFGrammarException {
+        if(generated) {
+            return;
+        }
+        // filled aside, then published
+        int[] table = this.table.clone();
+        Map<Integer, int[]> conflicts = new HashMap<>();
+        for(int production = 0; production < productionHeads.length; production++) {
+            int head = productionHeads[production];
+            BitSet predict = grammar.predictSet(production);
+            for(int terminal = predict.nextSetBit(0); terminal >= 0; terminal = predict.nextSetBit(terminal + 1)) {
+                if(LOG.isDebugEnabled()) {
+                    LOG.debug("T[{}, {}] = {}", symbols.nameOf(head), symbols.nameOf(terminal),
+                                productionBodies[production]);
+                }
+                int cell = symbols.nonTerminalIndex(head) * terminalCount + terminal;
+                if(table[cell] != NO_RULE) { // not LL(1), see GrammarAnalyzer.conflicts
+                    LOG.warn("LL(1) conflict at T[{}, {}] between {} and {}, deciding with more lookahead",
+                                symbols.nameOf(head), symbols.nameOf(terminal), productionBodies[table[cell]],
+                                productionBodies[production]);
+                    int[] candidates = conflicts.getOrDefault(cell, new int[] {table[cell]});
+                    candidates = Arrays.copyOf(candidates, candidates.length + 1);
+                    candidates[candidates.length - 1] = production;
+                    conflicts.put(cell, candidates);
+                }
+                table[cell] = production;
             }
         }
+        this.table = table;
+        if(!conflicts.isEmpty()) {
+            predictor = new LookaheadPredictor(this, conflicts);
+        }
+        if(table.length > compressAbove) {
+            compress(table);
+        }
+        generated = true;
+    }
+
+    private void compress(int[] table) {
+        compressed = new CompressedTable(table, symbols.nonTerminalCount(), terminalCount);
+        this.table = null;
+    }
+
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    /**
+     * @return the predictor of the cells with more than one production, or null if there are none
+     */
+    LookaheadPredictor predictor() {
+        return predictor;
+    }
+
+    /**
+     * @return the productions of every cell with more than one, by the index of the cell in the
+     *         dense table, non terminal index * terminal count + terminal. Empty for an LL(1) grammar
+     */
+    Map<Integer, int[]> conflicts() {
+        return predictor == null ? Collections.<Integer, int[]>emptyMap() : predictor.candidates();
+    }
+
+    public boolean isCompressed() {
+        return compressed != null;
+    }
+
+    /**
+     * @return the memory used by the cells of the table, without object headers
+     */
+    public long tableSizeInBytes() {
+        return compressed != null ? compressed.sizeInBytes() : (long) table.length * Integer.BYTES;
     }
 
     public Optional<String> ruleToApply(String nonTerminal, String terminal) {
-//        System.out.println(MessageFormat.format("Searching for T[{0}, {1}]", nonTerminal, terminal));
-        if(table.contains(nonTerminal, terminal)) {
-            return Optional.of(table.get(nonTerminal, terminal));
+        int row = symbols.nonTerminalId(nonTerminal);
+        int column = symbols.terminalId(terminal);
+        if(row == SymbolTable.NOT_FOUND || column == SymbolTable.NOT_FOUND) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        int production = ruleToApply(row, column);
+        if(production == NO_RULE) {
+            return Optional.empty();
+        }
+        return Optional.of(productionBodies[production]);
+    }
+
+    /**
+     * @param nonTerminal the symbol id of a non terminal
+     * @param terminal the symbol id of a terminal
+     * @return the production to apply, or NO_RULE
+     */
+    public int ruleToApply(int nonTerminal, int terminal) {
+        int[] cells = table;
+        if(cells != null) {
+            return cells[(nonTerminal - terminalCount) * terminalCount + terminal];
+        }
+        return compressed.get(nonTerminal - terminalCount, terminal);
+    }
+
+    /**
+     * @return the lexer for the terminals of the grammar
+     */
+    public Lexer lexer() {
+        return lexer;
+    }
+
+    /**
+     * @param symbol the symbol on top of the parse stack
+     * @return the names of the terminals that can be read next
+     */
+    public Set<String> expectedTerminals(int symbol) {
+        Set<String> expected = new TreeSet<>();
+        if(symbols.isTerminal(symbol)) {
+            expected.add(symbols.nameOf(symbol));
+            return expected;
+        }
+        for(int terminal = 0; terminal < terminalCount; terminal++) {
+            if(ruleToApply(symbol, terminal) != NO_RULE) {
+                expected.add(symbols.nameOf(terminal));
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * @return true if the terminal is in the FOLLOW set of the non terminal, so that a parse
+     *         that cannot expand the non terminal can skip it and go on from the terminal
+     */
+    public boolean isSynchronizing(int nonTerminal, int terminal) {
+        return followSets[symbols.nonTerminalIndex(nonTerminal)].get(terminal);
+    }
+
+    /**
+     * @param nonTerminal the symbol id of a non terminal
+     */
+    public BitSet followSet(int nonTerminal) {
+        return (BitSet) followSets[symbols.nonTerminalIndex(nonTerminal)].clone();
+    }
+
+    public int startSymbol() {
+        return startSymbol;
+    }
+
+    public int eof() {
+        return eof;
+    }
+
+    public int numberOfProductions() {
+        return productionHeads.length;
+    }
+
+    public int productionHead(int production) {
+        return productionHeads[production];
+    }
+
+    public int[] productionSymbols(int production) {
+        return productionSymbols[production];
+    }
+
+    public String productionBody(int production) {
+        return productionBodies[production];
+    }
+
+    /**
+     * @see Grammar#productionSteps(int)
+     */
+    public int[] productionSteps(int production) {
+        return productionSteps[production];
+    }
+
+    public int actionCount() {
+        return actions.length;
+    }
+
+    public String actionName(int action) {
+        return actions[action];
+    }
+
+    /**
+     * @return the number of the action, or SymbolTable.NOT_FOUND
+     */
+    public int actionId(String name) {
+        for(int action = 0; action < actions.length; action++) {
+            if(actions[action].equals(name)) {
+                return action;
+            }
+        }
+        return SymbolTable.NOT_FOUND;
+    }
+
+    /**
+     * @return the content hash of the grammar the table was generated from
+     */
+    public String grammarHash() {
+        return grammarHash;
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
     }
 }
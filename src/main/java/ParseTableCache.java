@@ -0,0 +1,99 @@
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Generated parse tables by the content hash of their grammar, so that grammars read
+ * from the same text share one table. A ParseTable is immutable once generated, so a
+ * cached table can be used by any number of parsers and threads.
+ *
+ * The cache holds at most maximumSize tables and evicts those used least recently.
+ * When several threads ask for a table that is not cached, one of them generates it
+ * and the others wait for it.
+ */
+public class ParseTableCache {
+    public static final long DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private static final ParseTableCache SHARED = new ParseTableCache(DEFAULT_MAXIMUM_SIZE);
+
+    private final Cache<String, ParseTable> tables;
+
+    public ParseTableCache(long maximumSize) {
+        this.tables = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return the cache of the process, used by TableDrivenParser(Grammar)
+     */
+    public static ParseTableCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return the table of the grammar, generated if it is not cached
+     */
+    public ParseTable get(Grammar grammar) throws BNFGrammarException {
+        try {
+            return tables.get(grammar.contentHash(), () -> {
+                ParseTable parseTable = new ParseTable(grammar);
+                try {
+                    parseTable.generate();
+                } catch (BNFGrammarException e) {
+                    // a Callable can only throw an Exception
+                    throw new GenerationFailure(e);
+                }
+                return parseTable;
+            });
+        } catch (UncheckedExecutionException e) {
+            if(e.getCause() instanceof GenerationFailure) {
+                throw ((GenerationFailure) e.getCause()).cause;
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the cached table of the grammar with the given content hash, or null
+     */
+    public ParseTable getIfPresent(String grammarHash) {
+        return tables.getIfPresent(grammarHash);
+    }
+
+    /**
+     * Adds a table generated elsewhere, e.g. loaded with ParseTableFile.
+     */
+    public void put(ParseTable parseTable) {
+        tables.put(parseTable.grammarHash(), parseTable);
+    }
+
+    public long size() {
+        return tables.size();
+    }
+
+    /**
+     * @return hits, misses, evictions and time spent generating tables
+     */
+    public CacheStats stats() {
+        return tables.stats();
+    }
+
+    public void invalidateAll() {
+        tables.invalidateAll();
+    }
+
+    private static class GenerationFailure extends RuntimeException {
+        private final BNFGrammarException cause;
+
+        GenerationFailure(BNFGrammarException cause) {
+            this.cause = cause;
+        }
+    }
+}
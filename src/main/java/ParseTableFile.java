@@ -0,0 +1,291 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compact binary form of a generated ParseTable, so a parser can start without
+ * reading the grammar and computing its FIRST and FOLLOW sets.
+ *
+ * The file holds, big endian: a magic number and format version, the content hash of
+ * the grammar, the terminal and non terminal names, the start symbol, the action names,
+ * every production as its head, body text and steps (symbol ids and actions, see
+ * Grammar.productionSteps), the table as one int per cell, the cells with more than one
+ * production, as a count followed by the cell index, the count and the numbers of the
+ * productions of every such cell (see ParseTable.conflicts), and the FOLLOW set of every
+ * non terminal as a count of longs followed by the longs of its bitset.
+ * Strings are an int length followed by UTF-8 bytes.
+ */
+public class ParseTableFile {
+    private static final int MAGIC = 0x4C4C3154; // "LL1T"
+    private static final int VERSION = 4;
+
+    private ParseTableFile() {
+    }
+
+    /**
+     * Generates the table of a grammar and saves it.
+     * Usage: ParseTableFile grammar.bnf table-file
+     */
+    public static void main(String[] args) throws IOException, BNFGrammarException {
+        if(args.length != 2) {
+            System.err.println("Usage: ParseTableFile <grammar.bnf> <table file>");
+            System.exit(1);
+        }
+        ParseTable parseTable = new ParseTable(new Grammar(args[0]));
+        parseTable.generate();
+        save(parseTable, Paths.get(args[1]));
+    }
+
+    public static void save(ParseTable parseTable, Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if(parent != null) {
+            Files.createDirectories(parent);
+        }
+        try(OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+            write(parseTable, output);
+        }
+    }
+
+    public static void write(ParseTable parseTable, OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(output);
+        SymbolTable symbols = parseTable.symbols();
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        writeString(data, parseTable.grammarHash());
+
+        data.writeInt(symbols.terminalCount());
+        data.writeInt(symbols.nonTerminalCount());
+        for(int symbol = 0; symbol < symbols.size(); symbol++) {
+            writeString(data, symbols.nameOf(symbol));
+        }
+        data.writeInt(parseTable.startSymbol());
+
+        data.writeInt(parseTable.actionCount());
+        for(int action = 0; action < parseTable.actionCount(); action++) {
+            writeString(data, parseTable.actionName(action));
+        }
+
+        data.writeInt(parseTable.numberOfProductions());
+        for(int production = 0; production < parseTable.numberOfProductions(); production++) {
+            data.writeInt(parseTable.productionHead(production));
+            writeString(data, parseTable.productionBody(production));
+            int[] steps = parseTable.productionSteps(production);
+            data.writeInt(steps.length);
+            for(int step : steps) {
+                data.writeInt(step);
+            }
+        }
+
+        for(int nonTerminal = symbols.terminalCount(); nonTerminal < symbols.size(); nonTerminal++) {
+            for(int terminal = 0; terminal < symbols.terminalCount(); terminal++) {
+                data.writeInt(parseTable.ruleToApply(nonTerminal, terminal));
+            }
+        }
+
+        Map<Integer, int[]> conflicts = new TreeMap<>(parseTable.conflicts());
+        data.writeInt(conflicts.size());
+        for(Map.Entry<Integer, int[]> conflict : conflicts.entrySet()) {
+            data.writeInt(conflict.getKey());
+            data.writeInt(conflict.getValue().length);
+            for(int production : conflict.getValue()) {
+                data.writeInt(production);
+            }
+        }
+
+        for(int nonTerminal = symbols.terminalCount(); nonTerminal < symbols.size(); nonTerminal++) {
+            long[] words = parseTable.followSet(nonTerminal).toLongArray();
+            data.writeInt(words.length);
+            for(long word : words) {
+                data.writeLong(word);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Maps the file into memory and reads the table from it.
+     */
+    public static ParseTable load(Path file) throws IOException, BNFGrammarException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Loads a table and checks that it was generated from the given grammar file.
+     * @throws BNFGrammarException if the table was generated from a different grammar
+     */
+    public static ParseTable load(Path file, Path grammarFile) throws IOException, BNFGrammarException {
+        ParseTable parseTable = load(file);
+        String grammarHash = Grammar.hashOf(Files.readAllBytes(grammarFile));
+        if(!grammarHash.equals(parseTable.grammarHash())) {
+            throw new BNFGrammarException("Parse table " + file + " was not generated from " + grammarFile);
+        }
+        return parseTable;
+    }
+
+    /**
+     * Loads the table for a grammar if the file is there and up to date, or else generates it.
+     */
+    public static ParseTable loadOrGenerate(Path file, Path grammarFile) throws IOException, BNFGrammarException {
+        if(Files.exists(file)) {
+            try {
+                return load(file, grammarFile);
+            } catch (BNFGrammarException e) {
+                // out of date or unreadable, fall through and generate it again
+            }
+        }
+        ParseTable parseTable = new ParseTable(new Grammar(grammarFile.toString()));
+        parseTable.generate();
+        return parseTable;
+    }
+
+    /**
+     * Reads a table written by write. Every count and index in it is checked, so a corrupt file
+     * is rejected here instead of failing later, while parsing.
+     * @throws BNFGrammarException if the buffer does not hold a valid table
+     */
+    public static ParseTable read(ByteBuffer buffer) throws BNFGrammarException {
+        try {
+            if(buffer.getInt() != MAGIC) {
+                throw new BNFGrammarException("Not a parse table file");
+            }
+            int version = buffer.getInt();
+            if(version != VERSION) {
+                throw new BNFGrammarException("Unsupported parse table file version " + version);
+            }
+            String grammarHash = readString(buffer);
+
+            // every name takes at least the four bytes of its length
+            int terminalCount = count(buffer, Integer.BYTES);
+            int nonTerminalCount = count(buffer, Integer.BYTES);
+            List<String> terminals = new ArrayList<>(terminalCount);
+            for(int i = 0; i < terminalCount; i++) {
+                terminals.add(readString(buffer));
+            }
+            List<String> nonTerminals = new ArrayList<>(nonTerminalCount);
+            for(int i = 0; i < nonTerminalCount; i++) {
+                nonTerminals.add(readString(buffer));
+            }
+            SymbolTable symbols = new SymbolTable(terminals, nonTerminals);
+            int startSymbol = inRange(buffer.getInt(), terminalCount, symbols.size());
+            inRange(symbols.terminalId(Grammar.EOF), 0, terminalCount);
+
+            String[] actions = new String[count(buffer, Integer.BYTES)];
+            for(int action = 0; action < actions.length; action++) {
+                actions[action] = readString(buffer);
+            }
+
+            int productions = count(buffer, 3 * Integer.BYTES);
+            int[] productionHeads = new int[productions];
+            int[][] productionSymbols = new int[productions][];
+            int[][] productionSteps = new int[productions][];
+            String[] productionBodies = new String[productions];
+            for(int production = 0; production < productions; production++) {
+                productionHeads[production] = inRange(buffer.getInt(), terminalCount, symbols.size());
+                productionBodies[production] = readString(buffer);
+                int[] steps = new int[count(buffer, Integer.BYTES)];
+                buffer.asIntBuffer().get(steps);
+                buffer.position(buffer.position() + steps.length * Integer.BYTES);
+                for(int step : steps) {
+                    inRange(step, 0, symbols.size() + actions.length);
+                }
+                productionSteps[production] = steps;
+                productionSymbols[production] = Arrays.stream(steps).filter(step -> step < symbols.size()).toArray();
+            }
+
+            if((long) terminalCount * nonTerminalCount * Integer.BYTES > buffer.remaining()) {
+                throw new BNFGrammarException("Corrupt parse table file");
+            }
+            int[] table = new int[terminalCount * nonTerminalCount];
+            buffer.asIntBuffer().get(table);
+            buffer.position(buffer.position() + table.length * Integer.BYTES);
+            for(int cell = 0; cell < table.length; cell++) {
+                if(table[cell] != ParseTable.NO_RULE) {
+                    productionOf(cell, inRange(table[cell], 0, productions), productionHeads, symbols);
+                }
+            }
+
+            int conflictCount = count(buffer, 2 * Integer.BYTES);
+            Map<Integer, int[]> conflicts = new HashMap<>();
+            for(int i = 0; i < conflictCount; i++) {
+                int cell = inRange(buffer.getInt(), 0, table.length);
+                int[] candidates = new int[count(buffer, Integer.BYTES)];
+                for(int candidate = 0; candidate < candidates.length; candidate++) {
+                    candidates[candidate] = productionOf(cell, inRange(buffer.getInt(), 0, productions),
+                                                         productionHeads, symbols);
+                }
+                conflicts.put(cell, candidates);
+            }
+
+            BitSet[] followSets = new BitSet[nonTerminalCount];
+            for(int nonTerminal = 0; nonTerminal < nonTerminalCount; nonTerminal++) {
+                long[] words = new long[count(buffer, Long.BYTES)];
+                buffer.asLongBuffer().get(words);
+                buffer.position(buffer.position() + words.length * Long.BYTES);
+                followSets[nonTerminal] = BitSet.valueOf(words);
+                inRange(followSets[nonTerminal].length(), 0, terminalCount + 1);
+            }
+
+            return new ParseTable(grammarHash, symbols, startSymbol, actions, productionHeads,
+                                    productionSymbols, productionSteps, productionBodies, table, conflicts,
+                                    followSets);
+        } catch (RuntimeException e) { // truncated or corrupt
+            throw new BNFGrammarException("Corrupt parse table file: " + e);
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /**
+     * Reads the count of what follows, which cannot be more than the rest of the buffer holds.
+     * @param bytes the least number of bytes each of them takes
+     */
+    private static int count(ByteBuffer buffer, int bytes) throws BNFGrammarException {
+        return inRange(buffer.getInt(), 0, buffer.remaining() / bytes + 1);
+    }
+
+    /**
+     * @return value, if it is at least from and less than to
+     */
+    private static int inRange(int value, int from, int to) throws BNFGrammarException {
+        if(value < from || value >= to) {
+            throw new BNFGrammarException("Corrupt parse table file");
+        }
+        return value;
+    }
+
+    /**
+     * @return production, if it can be applied in the table cell
+     */
+    private static int productionOf(int cell, int production, int[] productionHeads, SymbolTable symbols)
+            throws BNFGrammarException {
+        if(productionHeads[production] != symbols.terminalCount() + cell / symbols.terminalCount()) {
+            throw new BNFGrammarException("Corrupt parse table file");
+        }
+        return production;
+    }
+
+    private static String readString(ByteBuffer buffer) throws BNFGrammarException {
+        byte[] bytes = new byte[count(buffer, 1)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
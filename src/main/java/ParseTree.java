@@ -0,0 +1,195 @@
+import java.util.Arrays;
+
+/**
+ * Concrete syntax tree stored as parallel int arrays, one entry per node, instead of
+ * one object per node. Nodes are numbered in preorder: the root is node 0, the
+ * children of a node follow it left to right, and the subtree of node n is the range
+ * [n, subtreeEnd(n)). Non terminal nodes record the production used to expand them,
+ * terminal nodes have NO_PRODUCTION. Offsets are character offsets in the input, end
+ * exclusive. A node spans its terminals without surrounding whitespace; a node without
+ * terminals, such as an epsilon production, is empty and sits at the next terminal.
+ *
+ * A tree can be cleared and filled again by another parse, so once its arrays have
+ * grown to the largest input seen, building a tree does not allocate.
+ */
+public class ParseTree {
+    public static final int NO_PARENT = -1;
+    public static final int NO_PRODUCTION = ParseTable.NO_RULE;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private SymbolTable symbols;
+    private int size;
+    private int[] symbol = new int[INITIAL_CAPACITY];
+    private int[] production = new int[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] start = new int[INITIAL_CAPACITY];
+    private int[] end = new int[INITIAL_CAPACITY];
+    private int[] subtreeEnd = new int[INITIAL_CAPACITY];
+
+    /**
+     * Removes all nodes, keeping the arrays.
+     */
+    void clear(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.size = 0;
+    }
+
+    /**
+     * Adds a node that stays open until close is called.
+     * @return the new node
+     */
+    int open(int nodeSymbol, int nodeProduction, int nodeParent, int nodeStart) {
+        if(size == symbol.length) {
+            int capacity = size * 2;
+            symbol = Arrays.copyOf(symbol, capacity);
+            production = Arrays.copyOf(production, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            subtreeEnd = Arrays.copyOf(subtreeEnd, capacity);
+        }
+        symbol[size] = nodeSymbol;
+        production[size] = nodeProduction;
+        parent[size] = nodeParent;
+        start[size] = nodeStart;
+        end[size] = nodeStart;
+        subtreeEnd[size] = size + 1;
+        return size++;
+    }
+
+    /**
+     * Ends a node after its last descendant has been added.
+     */
+    void close(int node, int nodeEnd) {
+        end[node] = Math.max(start[node], nodeEnd);
+        subtreeEnd[node] = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    public int symbol(int node) {
+        return symbol[node];
+    }
+
+    public String name(int node) {
+        return symbols.nameOf(symbol[node]);
+    }
+
+    public boolean isTerminal(int node) {
+        return production[node] == NO_PRODUCTION;
+    }
+
+    /**
+     * @return the production used to expand the node, or NO_PRODUCTION for a terminal
+     */
+    public int production(int node) {
+        return production[node];
+    }
+
+    /**
+     * @return the parent of the node, or NO_PARENT for the root
+     */
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int start(int node) {
+        return start[node];
+    }
+
+    public int end(int node) {
+        return end[node];
+    }
+
+    /**
+     * @return the node after the last descendant of the node
+     */
+    public int subtreeEnd(int node) {
+        return subtreeEnd[node];
+    }
+
+    public CharSequence text(int node, CharSequence input) {
+        return input.subSequence(start[node], end[node]);
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Walks the tree depth first, left to right. Uses no recursion, so deep trees are fine.
+     */
+    public void accept(Visitor visitor) {
+        ParseStack open = new ParseStack();
+        for(int node = 0; node < size; node++) {
+            while(!open.isEmpty() && subtreeEnd[open.peek()] <= node) {
+                visitor.exit(this, open.pop());
+            }
+            visitor.enter(this, node);
+            open.push(node);
+        }
+        while(!open.isEmpty()) {
+            visitor.exit(this, open.pop());
+        }
+    }
+
+    public interface Visitor {
+
+        void enter(ParseTree tree, int node);
+
+        default void exit(ParseTree tree, int node) {
+        }
+    }
+
+    /**
+     * Moves over the nodes of the tree. It starts at the root.
+     */
+    public class Cursor {
+        private int node;
+
+        public int node() {
+            return node;
+        }
+
+        /**
+         * @return false if the node has no children, in which case the cursor does not move
+         */
+        public boolean gotoFirstChild() {
+            if(node + 1 < subtreeEnd[node]) {
+                ++node;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return false if the node is the last child of its parent, in which case the cursor does not move
+         */
+        public boolean gotoNextSibling() {
+            int sibling = subtreeEnd[node];
+            if(parent[node] != NO_PARENT && sibling < subtreeEnd[parent[node]]) {
+                node = sibling;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return false at the root, in which case the cursor does not move
+         */
+        public boolean gotoParent() {
+            if(parent[node] != NO_PARENT) {
+                node = parent[node];
+                return true;
+            }
+            return false;
+        }
+    }
+}
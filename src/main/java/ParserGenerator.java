@@ -0,0 +1,290 @@
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Writes the Java source of a recursive descent parser for a generated ParseTable, with one
+ * method per non terminal that switches on the id of the lookahead terminal. The parser
+ * implements Parser and accepts exactly the inputs TableDrivenParser accepts, without
+ * interpreting the table at run time.
+ *
+ * The generated parser only checks whether an input is valid. When it is not, or when it is
+ * nested too deeply for the thread stack, the input is parsed again by a TableDrivenParser,
+ * which throws the same SyntaxException as always. Tail calls of a non terminal to itself,
+ * such as &lt;Aprime&gt; ::= '|'&lt;B&gt;&lt;Aprime&gt;, become loops, so long lists do not nest.
+ *
+ * compile turns the source into a class at run time with the system Java compiler. main
+ * writes the source to a file, to be compiled with the rest of a program.
+ *
+ * Only LL(1) grammars are supported: the generated methods switch on one terminal, and cannot
+ * choose with the LookaheadPredictor of the table.
+ */
+public class ParserGenerator {
+    private final ParseTable parseTable;
+    private final SymbolTable symbols;
+
+    /**
+     * @throws IllegalArgumentException if the grammar of the table is not LL(1)
+     */
+    public ParserGenerator(ParseTable parseTable) {
+        if(parseTable.predictor() != null) {
+            throw new IllegalArgumentException("The grammar is not LL(1), parse it with a TableDrivenParser");
+        }
+        this.parseTable = parseTable;
+        this.symbols = parseTable.symbols();
+    }
+
+    /**
+     * Writes the source of the parser of a grammar.
+     * Usage: ParserGenerator grammar.bnf OutputDirectory ClassName
+     */
+    public static void main(String[] args) throws IOException, BNFGrammarException {
+        if(args.length != 3) {
+            System.err.println("Usage: ParserGenerator <grammar.bnf> <output directory> <class name>");
+            System.exit(2);
+        }
+        ParseTable parseTable = ParseTableCache.shared().get(new Grammar(args[0]));
+        Path file = Paths.get(args[1], args[2] + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, new ParserGenerator(parseTable).generate(args[2]).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param className a class name in the default package
+     * @return the source of a class with a public constructor taking the ParseTable
+     */
+    public String generate(String className) {
+        StringBuilder source = new StringBuilder();
+        source.append("/**\n")
+              .append(" * Recursive descent parser generated by ParserGenerator. Do not edit.\n")
+              .append(" */\n")
+              .append("public final class ").append(className).append(" implements Parser {\n")
+              .append("    private static final String GRAMMAR_HASH = \"").append(parseTable.grammarHash())
+                                    .append("\";\n")
+              .append("    private static final int EOF = ").append(parseTable.eof()).append(";\n")
+              .append("    private static final int NO_MATCH = -1;\n")
+              .append("\n")
+              .append("    private final Lexer lexer;\n")
+              .append("    // parses invalid inputs again to report the error\n")
+              .append("    private final TableDrivenParser fallback;\n")
+              .append("\n")
+              .append("    public ").append(className).append("(ParseTable parseTable) {\n")
+              .append("        if(!GRAMMAR_HASH.equals(parseTable.grammarHash())) {\n")
+              .append("            throw new IllegalArgumentException(\"").append(className)
+                                    .append(" was generated for another grammar\");\n")
+              .append("        }\n")
+              .append("        this.lexer = parseTable.lexer();\n")
+              .append("        this.fallback = new TableDrivenParser(parseTable);\n")
+              .append("    }\n")
+              .append("\n")
+              .append("    @Override\n")
+              .append("    public boolean parse(String input) throws SyntaxException {\n")
+              .append("        return parse((CharSequence) input);\n")
+              .append("    }\n")
+              .append("\n")
+              .append("    public boolean parse(CharSequence input) throws SyntaxException {\n")
+              .append("        boolean valid;\n")
+              .append("        try {\n")
+              .append("            Run run = new Run(lexer, input);\n")
+              .append("            valid = run.").append(methodName(parseTable.startSymbol()))
+                                    .append("() && run.token == EOF;\n")
+              .append("        } catch (StackOverflowError e) {\n")
+              .append("            valid = false;\n")
+              .append("        }\n")
+              .append("        return valid || fallback.parse(input);\n")
+              .append("    }\n")
+              .append("\n")
+              .append("    private static final class Run {\n")
+              .append("        private final Lexer lexer;\n")
+              .append("        private final CharSequence input;\n")
+              .append("        private final int length;\n")
+              .append("        private int index;\n")
+              .append("        // the lookahead terminal and its length\n")
+              .append("        private int token;\n")
+              .append("        private int tokenLength;\n")
+              .append("\n")
+              .append("        Run(Lexer lexer, CharSequence input) {\n")
+              .append("            this.lexer = lexer;\n")
+              .append("            this.input = input;\n")
+              .append("            this.length = input.length();\n")
+              .append("            next();\n")
+              .append("        }\n")
+              .append("\n")
+              .append("        private void next() {\n")
+              .append("            index += tokenLength;\n")
+              .append("            while(index < length && isWhitespace(input.charAt(index))) {\n")
+              .append("                ++index;\n")
+              .append("            }\n")
+              .append("            if(index == length) {\n")
+              .append("                token = EOF;\n")
+              .append("                tokenLength = 0;\n")
+              .append("                return;\n")
+              .append("            }\n")
+              .append("            long match = lexer.match(input, index, length);\n")
+              .append("            token = match == Lexer.NO_MATCH ? NO_MATCH : Lexer.terminalOf(match);\n")
+              .append("            tokenLength = Lexer.lengthOf(match);\n")
+              .append("        }\n")
+              .append("\n")
+              .append("        private boolean expect(int terminal) {\n")
+              .append("            if(token != terminal) {\n")
+              .append("                return false;\n")
+              .append("            }\n")
+              .append("            next();\n")
+              .append("            return true;\n")
+              .append("        }\n")
+              .append("\n")
+              .append("        private static boolean isWhitespace(char c) {\n")
+              .append("            return c == ' ' || c == '\\t' || c == '\\n' || c == '\\r' || c == '\\f' ")
+                                    .append("|| c == '\\u000B';\n")
+              .append("        }\n");
+        for(int nonTerminal = symbols.terminalCount(); nonTerminal < symbols.size(); nonTerminal++) {
+            source.append('\n');
+            nonTerminalMethod(nonTerminal, source);
+        }
+        source.append("    }\n")
+              .append("}\n");
+        return source.toString();
+    }
+
+    private void nonTerminalMethod(int nonTerminal, StringBuilder source) {
+        // terminals that predict each production, in production order
+        Map<Integer, List<Integer>> cases = new TreeMap<>();
+        for(int terminal = 0; terminal < symbols.terminalCount(); terminal++) {
+            int production = parseTable.ruleToApply(nonTerminal, terminal);
+            if(production != ParseTable.NO_RULE) {
+                cases.computeIfAbsent(production, p -> new ArrayList<>()).add(terminal);
+            }
+        }
+        boolean loops = false;
+        for(int production : cases.keySet()) {
+            loops |= isTailCall(production);
+        }
+
+        String indent = loops ? "                " : "            ";
+        source.append("        // <").append(comment(symbols.nameOf(nonTerminal))).append(">\n")
+              .append("        private boolean ").append(methodName(nonTerminal)).append("() {\n");
+        if(loops) {
+            source.append("            while(true) {\n");
+        }
+        source.append(indent).append("switch(token) {\n");
+        for(Map.Entry<Integer, List<Integer>> entry : cases.entrySet()) {
+            int production = entry.getKey();
+            for(int terminal : entry.getValue()) {
+                source.append(indent).append("    case ").append(terminal).append(": // ")
+                      .append(comment(symbols.nameOf(terminal))).append('\n');
+            }
+            source.append(indent).append("        // ::= ").append(comment(parseTable.productionBody(production)))
+                  .append('\n');
+            int[] body = parseTable.productionSymbols(production);
+            int end = isTailCall(production) ? body.length - 1 : body.length;
+            for(int i = 0; i < end; i++) {
+                int symbol = body[i];
+                source.append(indent).append("        ");
+                if(!symbols.isTerminal(symbol)) {
+                    source.append("if(!").append(methodName(symbol)).append("()) {\n")
+                          .append(indent).append("            return false;\n")
+                          .append(indent).append("        }\n");
+                } else if(i == 0) { // the lookahead predicted the production, so it is this terminal
+                    source.append("next();\n");
+                } else {
+                    source.append("if(!expect(").append(symbol).append(")) {\n")
+                          .append(indent).append("            return false;\n")
+                          .append(indent).append("        }\n");
+                }
+            }
+            source.append(indent).append("        ").append(end < body.length ? "continue;\n" : "return true;\n");
+        }
+        source.append(indent).append("    default:\n")
+              .append(indent).append("        return false;\n")
+              .append(indent).append("}\n");
+        if(loops) {
+            source.append("            }\n");
+        }
+        source.append("        }\n");
+    }
+
+    /**
+     * @return true if the production ends with its own head, e.g. &lt;A&gt; ::= 'x'&lt;A&gt;
+     */
+    private boolean isTailCall(int production) {
+        int[] body = parseTable.productionSymbols(production);
+        return body.length > 0 && body[body.length - 1] == parseTable.productionHead(production);
+    }
+
+    private String methodName(int nonTerminal) {
+        StringBuilder name = new StringBuilder("parse");
+        for(char c : symbols.nameOf(nonTerminal).toCharArray()) {
+            name.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        // names made the same by the replacement above stay apart
+        return name.append('_').append(symbols.nonTerminalIndex(nonTerminal)).toString();
+    }
+
+    // a backslash before u in a comment would start a unicode escape
+    private static String comment(String text) {
+        return text.replace("\\", "\\\\");
+    }
+
+    /**
+     * Compiles the generated source with the system Java compiler and loads the class.
+     * @throws IllegalStateException if there is no compiler, e.g. on a JRE, or compilation fails
+     */
+    public Parser compile(String className) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if(compiler == null) {
+            throw new IllegalStateException("No Java compiler available, run on a JDK");
+        }
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, null,
+                                                                                          StandardCharsets.UTF_8);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(standardFileManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind,
+                                                       FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + name + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return classes.computeIfAbsent(name, n -> new ByteArrayOutputStream());
+                    }
+                };
+            }
+        };
+        JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///" + className + ".java"),
+                                                         JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return generate(className);
+            }
+        };
+        List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"));
+        boolean compiled = compiler.getTask(null, fileManager, diagnostics, options, null,
+                                            Collections.singletonList(source)).call();
+        if(!compiled) {
+            throw new IllegalStateException("Could not compile " + className + ": " + diagnostics.getDiagnostics());
+        }
+
+        ClassLoader loader = new ClassLoader(ParserGenerator.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                ByteArrayOutputStream bytes = classes.get(name);
+                if(bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+            }
+        };
+        try {
+            return (Parser) loader.loadClass(className).getConstructor(ParseTable.class).newInstance(parseTable);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not load " + className, e);
+        }
+    }
+}
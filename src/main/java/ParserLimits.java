@@ -0,0 +1,46 @@
+/**
+ * Limits on the work of a single parse, so that hostile inputs, such as thousands of nested
+ * parentheses, cannot use up the memory or time of a shared parser. A parse that goes over
+ * a limit fails with a ParseLimitException.
+ */
+public class ParserLimits {
+    public static final ParserLimits NONE = new ParserLimits(Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final int maxStackDepth;
+    private final long maxInputLength;
+    private final long maxSteps;
+
+    /**
+     * @param maxStackDepth the most symbols on the parse stack at once. The stack never grows
+     *                      past it, so it also bounds the memory of a parse
+     * @param maxInputLength the most characters of input
+     * @param maxSteps the most non terminals expanded
+     */
+    public ParserLimits(int maxStackDepth, long maxInputLength, long maxSteps) {
+        // the stack starts with EOF and the start symbol
+        if(maxStackDepth < 2 || maxInputLength < 0 || maxSteps < 0) {
+            throw new IllegalArgumentException("Invalid parser limits " + maxStackDepth + ", " + maxInputLength
+                                                + ", " + maxSteps);
+        }
+        this.maxStackDepth = maxStackDepth;
+        this.maxInputLength = maxInputLength;
+        this.maxSteps = maxSteps;
+    }
+
+    public int maxStackDepth() {
+        return maxStackDepth;
+    }
+
+    public long maxInputLength() {
+        return maxInputLength;
+    }
+
+    public long maxSteps() {
+        return maxSteps;
+    }
+
+    @Override
+    public String toString() {
+        return "maxStackDepth=" + maxStackDepth + " maxInputLength=" + maxInputLength + " maxSteps=" + maxSteps;
+    }
+}
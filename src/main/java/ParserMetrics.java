@@ -0,0 +1,267 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Counters of what a TableDrivenParser does: parses, expansions, matches, the deepest
+ * stack, how often each production is applied and how long parses take.
+ *
+ * Each thread counts a parse on its own and adds the counts to LongAdders when the parse
+ * ends, so threads parsing at the same time do not contend. A parser only counts when it
+ * is created with metrics, see TableDrivenParser(ParseTable, ParserMetrics).
+ */
+public class ParserMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(ParserMetrics.class);
+    // parse latencies are counted in buckets of powers of two nanoseconds
+    static final int LATENCY_BUCKETS = 40;
+
+    private final ParseTable parseTable;
+    private final LongAdder parses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder expansions = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAccumulator maxStackDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] productionHits;
+    private final LongAdder[] latencies = new LongAdder[LATENCY_BUCKETS];
+    private final ThreadLocal<Trace> traces;
+
+    public ParserMetrics(ParseTable parseTable) {
+        this.parseTable = parseTable;
+        this.productionHits = new LongAdder[parseTable.numberOfProductions()];
+        for(int production = 0; production < productionHits.length; production++) {
+            productionHits[production] = new LongAdder();
+        }
+        for(int bucket = 0; bucket < LATENCY_BUCKETS; bucket++) {
+            latencies[bucket] = new LongAdder();
+        }
+        this.traces = ThreadLocal.withInitial(() -> new Trace(productionHits.length));
+    }
+
+    ParseTable parseTable() {
+        return parseTable;
+    }
+
+    /**
+     * Starts counting a parse on the calling thread.
+     */
+    Trace begin() {
+        Trace trace = traces.get();
+        trace.start = System.nanoTime();
+        return trace;
+    }
+
+    /**
+     * Adds the counts of a parse started with begin.
+     */
+    void end(Trace trace, boolean failed) {
+        long nanos = System.nanoTime() - trace.start;
+        parses.increment();
+        if(failed) {
+            failures.increment();
+        }
+        expansions.add(trace.expansions);
+        matches.add(trace.matches);
+        maxStackDepth.accumulate(trace.maxStackDepth);
+        for(int i = 0; i < trace.touchedCount; i++) {
+            int production = trace.touched[i];
+            productionHits[production].add(trace.hits[production]);
+            trace.hits[production] = 0;
+        }
+        latencies[bucketOf(nanos)].increment();
+        trace.clear();
+    }
+
+    static int bucketOf(long nanos) {
+        return Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+    }
+
+    /**
+     * @return the counts so far. Parses still running are not included.
+     */
+    public Snapshot snapshot() {
+        long[] hits = new long[productionHits.length];
+        for(int production = 0; production < hits.length; production++) {
+            hits[production] = productionHits[production].sum();
+        }
+        long[] latencyCounts = new long[LATENCY_BUCKETS];
+        for(int bucket = 0; bucket < LATENCY_BUCKETS; bucket++) {
+            latencyCounts[bucket] = latencies[bucket].sum();
+        }
+        return new Snapshot(parseTable, parses.sum(), failures.sum(), expansions.sum(), matches.sum(),
+                            maxStackDepth.get(), hits, latencyCounts);
+    }
+
+    /**
+     * Logs a snapshot at info level every period, until the returned future is cancelled.
+     */
+    public ScheduledFuture<?> logEvery(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        return reportEvery(executor, period, unit, snapshot -> LOG.info("{}", snapshot));
+    }
+
+    /**
+     * Passes a snapshot to sink every period, until the returned future is cancelled.
+     */
+    public ScheduledFuture<?> reportEvery(ScheduledExecutorService executor, long period, TimeUnit unit,
+                                          Consumer<? super Snapshot> sink) {
+        return executor.scheduleAtFixedRate(() -> sink.accept(snapshot()), period, period, unit);
+    }
+
+    /**
+     * Counts of the parse running on one thread.
+     */
+    static class Trace {
+        private long start;
+        long expansions;
+        long matches;
+        int maxStackDepth;
+        private final long[] hits;
+        // productions with hits, so end does not go through all of them
+        private int[] touched = new int[16];
+        private int touchedCount;
+
+        private Trace(int productions) {
+            this.hits = new long[productions];
+        }
+
+        void expanded(int production, int stackDepth) {
+            ++expansions;
+            if(hits[production]++ == 0) {
+                if(touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = production;
+            }
+            if(stackDepth > maxStackDepth) {
+                maxStackDepth = stackDepth;
+            }
+        }
+
+        void matched() {
+            ++matches;
+        }
+
+        private void clear() {
+            expansions = 0;
+            matches = 0;
+            maxStackDepth = 0;
+            touchedCount = 0;
+        }
+    }
+
+    /**
+     * Counts of a ParserMetrics at one point in time.
+     */
+    public static class Snapshot {
+        private final ParseTable parseTable;
+        private final long parses;
+        private final long failures;
+        private final long expansions;
+        private final long matches;
+        private final long maxStackDepth;
+        private final long[] productionHits;
+        private final long[] latencies;
+
+        private Snapshot(ParseTable parseTable, long parses, long failures, long expansions, long matches,
+                         long maxStackDepth, long[] productionHits, long[] latencies) {
+            this.parseTable = parseTable;
+            this.parses = parses;
+            this.failures = failures;
+            this.expansions = expansions;
+            this.matches = matches;
+            this.maxStackDepth = maxStackDepth;
+            this.productionHits = productionHits;
+            this.latencies = latencies;
+        }
+
+        public long parses() {
+            return parses;
+        }
+
+        /**
+         * @return the parses that ended with a SyntaxException
+         */
+        public long failures() {
+            return failures;
+        }
+
+        public long expansions() {
+            return expansions;
+        }
+
+        /**
+         * @return terminals matched, including the EOF of every complete parse
+         */
+        public long matches() {
+            return matches;
+        }
+
+        public long maxStackDepth() {
+            return maxStackDepth;
+        }
+
+        public long productionHits(int production) {
+            return productionHits[production];
+        }
+
+        /**
+         * @return the productions applied most often, most frequent first
+         */
+        public int[] hottestProductions(int count) {
+            return IntStream.range(0, productionHits.length)
+                    .boxed()
+                    .sorted((a, b) -> Long.compare(productionHits[b], productionHits[a]))
+                    .limit(count)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+
+        /**
+         * @return the number of parses that took less than 2^bucket nanoseconds and at least half as long
+         */
+        public long latencyCount(int bucket) {
+            return latencies[bucket];
+        }
+
+        /**
+         * @param quantile between 0 and 1, e.g. 0.99
+         * @return an upper bound of the latency of that quantile of parses, in nanoseconds,
+         *         or 0 if there were no parses
+         */
+        public long latencyQuantile(double quantile) {
+            long rank = (long) Math.ceil(quantile * parses);
+            long seen = 0;
+            for(int bucket = 0; bucket < latencies.length; bucket++) {
+                seen += latencies[bucket];
+                if(seen >= rank && seen > 0) {
+                    return 1L << bucket;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder hottest = new StringBuilder();
+            for(int production : hottestProductions(3)) {
+                if(productionHits[production] > 0) {
+                    hottest.append(hottest.length() == 0 ? "" : ", ")
+                           .append(parseTable.symbols().nameOf(parseTable.productionHead(production)))
+                           .append(" ::= ").append(parseTable.productionBody(production))
+                           .append(" x").append(productionHits[production]);
+                }
+            }
+            return "parses=" + parses + " failures=" + failures + " expansions=" + expansions
+                    + " matches=" + matches + " maxStackDepth=" + maxStackDepth
+                    + " p50<" + latencyQuantile(0.5) + "ns p99<" + latencyQuantile(0.99) + "ns"
+                    + " hottest=[" + hottest + "]";
+        }
+    }
+}
@@ -0,0 +1,251 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rejects inputs that cannot be valid before they are parsed, eight bytes at a time. The
+ * input is ISO-8859-1 bytes in a ByteBuffer. Two things are checked:
+ *
+ * every byte is whitespace or can be part of a terminal of the grammar, and
+ * every bracket pair of the grammar, such as ( and ), is balanced in the input. A pair is only
+ * checked when the grammar can only produce it balanced, see balancedPairs.
+ *
+ * Bytes are compared a word at a time with SWAR arithmetic on longs: a byte of a word is in
+ * a range [lo, hi] if adding to it does not carry into the high bit, and brackets are counted
+ * with Long.bitCount of the bytes equal to them. Words where a check fails are looked at
+ * byte by byte to find where.
+ */
+public class Prescanner {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    // with more ranges than this, checking a word byte by byte is as fast
+    private static final int MAX_RANGES = 8;
+    private static final String WHITESPACE = " \t\n\r\f\u000B";
+
+    private final boolean[] allowed = new boolean[256];
+    // the allowed ASCII bytes as inclusive ranges, lows[i] to highs[i]
+    private final int[] lows;
+    private final int[] highs;
+    private final boolean allowsNonAscii;
+    private final char[] opening;
+    private final char[] closing;
+
+    public Prescanner(ParseTable parseTable) {
+        SymbolTable symbols = parseTable.symbols();
+        for(char c : WHITESPACE.toCharArray()) {
+            allowed[c] = true;
+        }
+        List<String> literals = new ArrayList<>();
+        for(int terminal = 0; terminal < symbols.terminalCount(); terminal++) {
+            String name = symbols.nameOf(terminal);
+            if(name.equals(Lexer.IDENTIFIER)) {
+                allow('a', 'z');
+                allow('A', 'Z');
+                allow('0', '9');
+                allow('_', '_');
+            } else if(name.equals(Lexer.NUMBER)) {
+                allow('0', '9');
+                allow('.', '.');
+            } else if(terminal != parseTable.eof()) {
+                literals.add(name);
+                for(char c : name.toCharArray()) {
+                    if(c < allowed.length) { // other characters are never in ISO-8859-1 input
+                        allowed[c] = true;
+                    }
+                }
+            }
+        }
+
+        boolean nonAscii = false;
+        for(int b = 0x80; b < allowed.length; b++) {
+            nonAscii |= allowed[b];
+        }
+        this.allowsNonAscii = nonAscii;
+        List<int[]> ranges = new ArrayList<>();
+        for(int b = 0; b < 0x80; b++) {
+            if(allowed[b] && (b == 0 || !allowed[b - 1])) {
+                int end = b;
+                while(end + 1 < 0x80 && allowed[end + 1]) {
+                    ++end;
+                }
+                ranges.add(new int[] {b, end});
+            }
+        }
+        if(ranges.size() <= MAX_RANGES) {
+            this.lows = ranges.stream().mapToInt(range -> range[0]).toArray();
+            this.highs = ranges.stream().mapToInt(range -> range[1]).toArray();
+        } else {
+            this.lows = null;
+            this.highs = null;
+        }
+
+        List<char[]> pairs = balancedPairs(parseTable, literals);
+        this.opening = new char[pairs.size()];
+        this.closing = new char[pairs.size()];
+        for(int i = 0; i < pairs.size(); i++) {
+            opening[i] = pairs.get(i)[0];
+            closing[i] = pairs.get(i)[1];
+        }
+    }
+
+    private void allow(char from, char to) {
+        for(char c = from; c <= to; c++) {
+            allowed[c] = true;
+        }
+    }
+
+    /**
+     * A bracket pair is balanced in every sentence of the grammar if, in every production body,
+     * the brackets are balanced when non terminals are ignored, since non terminals derive
+     * balanced strings themselves. No other terminal may contain the brackets.
+     */
+    private static List<char[]> balancedPairs(ParseTable parseTable, List<String> literals) {
+        SymbolTable symbols = parseTable.symbols();
+        List<char[]> pairs = new ArrayList<>();
+        for(String pair : new String[] {"()", "[]", "{}"}) {
+            int open = symbols.terminalId(pair.substring(0, 1));
+            int close = symbols.terminalId(pair.substring(1));
+            if(open == SymbolTable.NOT_FOUND || close == SymbolTable.NOT_FOUND) {
+                continue;
+            }
+            boolean balanced = true;
+            for(String literal : literals) {
+                balanced &= literal.length() == 1
+                                || (literal.indexOf(pair.charAt(0)) < 0 && literal.indexOf(pair.charAt(1)) < 0);
+            }
+            for(int production = 0; balanced && production < parseTable.numberOfProductions(); production++) {
+                int depth = 0;
+                for(int symbol : parseTable.productionSymbols(production)) {
+                    depth += symbol == open ? 1 : symbol == close ? -1 : 0;
+                    balanced &= depth >= 0;
+                }
+                balanced &= depth == 0;
+            }
+            if(balanced) {
+                pairs.add(pair.toCharArray());
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * @return the brackets checked for balance, as pairs of characters, e.g. "()"
+     */
+    public List<String> checkedPairs() {
+        List<String> pairs = new ArrayList<>();
+        for(int i = 0; i < opening.length; i++) {
+            pairs.add(new String(new char[] {opening[i], closing[i]}));
+        }
+        return pairs;
+    }
+
+    /**
+     * Checks the bytes from the position to the limit of the input. The buffer is not changed.
+     * @return null if the input may be valid, or why it is not
+     */
+    public SyntaxError scan(ByteBuffer input) {
+        ByteBuffer bytes = input.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int start = bytes.position();
+        int length = bytes.remaining();
+        int[] depths = new int[opening.length];
+
+        int i = 0;
+        for(; i + Long.BYTES <= length; i += Long.BYTES) {
+            long word = bytes.getLong(start + i);
+            boolean checked = allAllowed(word);
+            for(int pair = 0; checked && pair < opening.length; pair++) {
+                // the depth may go below zero in this word if it closes more than is open
+                checked = Long.bitCount(bytesEqual(word, closing[pair])) <= depths[pair];
+            }
+            for(int pair = 0; checked && pair < opening.length; pair++) {
+                depths[pair] += Long.bitCount(bytesEqual(word, opening[pair]))
+                                    - Long.bitCount(bytesEqual(word, closing[pair]));
+            }
+            if(!checked) { // find where the word fails byte by byte
+                SyntaxError error = scan(bytes, start, i, i + Long.BYTES, depths);
+                if(error != null) {
+                    return error;
+                }
+            }
+        }
+        SyntaxError error = scan(bytes, start, i, length, depths);
+        if(error != null) {
+            return error;
+        }
+        for(int pair = 0; pair < opening.length; pair++) {
+            if(depths[pair] > 0) {
+                return new SyntaxError(Grammar.EOF, length,
+                                       Collections.singleton(String.valueOf(closing[pair])),
+                                       "Syntax Error. " + depths[pair] + " unclosed " + opening[pair]
+                                           + " at the end of input, at offset " + length);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks the bytes from offset from to offset to one at a time, adding to depths.
+     */
+    private SyntaxError scan(ByteBuffer bytes, int start, int from, int to, int[] depths) {
+        for(int i = from; i < to; i++) {
+            int b = bytes.get(start + i) & 0xFF;
+            if(!allowed[b]) {
+                return unrecognized(b, i);
+            }
+            for(int pair = 0; pair < opening.length; pair++) {
+                depths[pair] += b == opening[pair] ? 1 : b == closing[pair] ? -1 : 0;
+                if(depths[pair] < 0) {
+                    return unbalanced(closing[pair], i);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean allAllowed(long word) {
+        if(lows == null || (allowsNonAscii && (word & HIGH_BITS) != 0)) {
+            return false;
+        }
+        long inRanges = 0;
+        for(int r = 0; r < lows.length; r++) {
+            inRanges |= bytesBetween(word, lows[r], highs[r]);
+        }
+        return inRanges == HIGH_BITS;
+    }
+
+    /**
+     * @return the high bit of every byte of word that is ASCII and between low and high, inclusive
+     */
+    static long bytesBetween(long word, int low, int high) {
+        long ascii = ~word & HIGH_BITS;
+        long low7 = word & LOW_BITS;
+        // a byte is at least low if adding 0x80 - low carries into its high bit, and at most high
+        // if adding 0x7F - high does not
+        long atLeastLow = low7 + ONES * (0x80 - low);
+        long atMostHigh = ~(low7 + ONES * (0x7F - high));
+        return atLeastLow & atMostHigh & ascii & HIGH_BITS;
+    }
+
+    /**
+     * @return the high bit of every byte of word equal to c
+     */
+    static long bytesEqual(long word, char c) {
+        long difference = word ^ (ONES * c);
+        // a byte is zero if neither its low seven bits nor its high bit are set
+        return ~(((difference & LOW_BITS) + LOW_BITS) | difference) & HIGH_BITS;
+    }
+
+    private static SyntaxError unrecognized(int b, long offset) {
+        String symbol = String.valueOf((char) b);
+        return new SyntaxError(symbol, offset, Collections.<String>emptySet(),
+                                "Syntax Error. Unrecognized symbol, " + symbol + ", at offset " + offset);
+    }
+
+    private static SyntaxError unbalanced(char close, long offset) {
+        return new SyntaxError(String.valueOf(close), offset, Collections.<String>emptySet(),
+                                "Syntax Error. Unbalanced " + close + " at offset " + offset);
+    }
+}
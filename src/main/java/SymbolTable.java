@@ -0,0 +1,68 @@
+import java.util.*;
+
+/**
+ * Interns the symbols of a grammar to dense int ids.
+ * Terminals get the ids [0, terminalCount) and non terminals the ids
+ * [terminalCount, size), so a single int can stand for any grammar symbol.
+ */
+public class SymbolTable {
+    public static final int NOT_FOUND = -1;
+
+    private final String[] names;
+    private final Map<String, Integer> terminalIds = new HashMap<>();
+    private final Map<String, Integer> nonTerminalIds = new HashMap<>();
+    private final int terminalCount;
+
+    public SymbolTable(Collection<String> terminals, Collection<String> nonTerminals) {
+        this.terminalCount = terminals.size();
+        this.names = new String[terminals.size() + nonTerminals.size()];
+
+        int id = 0;
+        for(String terminal : terminals) {
+            terminalIds.put(terminal, id);
+            names[id++] = terminal;
+        }
+        for(String nonTerminal : nonTerminals) {
+            nonTerminalIds.put(nonTerminal, id);
+            names[id++] = nonTerminal;
+        }
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int terminalCount() {
+        return terminalCount;
+    }
+
+    public int nonTerminalCount() {
+        return names.length - terminalCount;
+    }
+
+    public boolean isTerminal(int symbol) {
+        return symbol < terminalCount;
+    }
+
+    /**
+     * @param symbol a non terminal symbol id
+     * @return the position of the non terminal among the non terminals, starting at 0
+     */
+    public int nonTerminalIndex(int symbol) {
+        return symbol - terminalCount;
+    }
+
+    public int terminalId(String terminal) {
+        Integer id = terminalIds.get(terminal);
+        return id == null ? NOT_FOUND : id;
+    }
+
+    public int nonTerminalId(String nonTerminal) {
+        Integer id = nonTerminalIds.get(nonTerminal);
+        return id == null ? NOT_FOUND : id;
+    }
+
+    public String nameOf(int symbol) {
+        return names[symbol];
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A syntax error found by a parse with error recovery. Unlike SyntaxException it
+ * does not capture a stack trace, so rejecting bad input stays cheap.
+ */
+public class SyntaxError {
+    private final String invalidSymbol;
+    private final long offset;
+    private final Set<String> expected;
+    private final String message;
+
+    public SyntaxError(String invalidSymbol, long offset, Set<String> expected, String message) {
+        this.invalidSymbol = invalidSymbol;
+        this.offset = offset;
+        this.expected = Collections.unmodifiableSet(expected);
+        this.message = message;
+    }
+
+    /**
+     * @return the terminal, or the character, that could not be parsed
+     */
+    public String invalidSymbol() {
+        return invalidSymbol;
+    }
+
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * @return the terminals that would have been accepted at the offset
+     */
+    public Set<String> expected() {
+        return expected;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    public SyntaxException toException() {
+        return new SyntaxException(invalidSymbol, offset, expected, message);
+    }
+
+    @Override
+    public String toString() {
+        return message + ", expected " + expected;
+    }
+}
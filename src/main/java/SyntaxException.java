@@ -1,16 +1,56 @@
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * An input the parser does not accept. It has no stack trace, which would tell nothing about
+ * the input and would be most of the cost of rejecting it.
+ */
 public class SyntaxException extends Throwable {
     private String invalidSymbol;
+    private long offset = -1;
+    private Set<String> expected = Collections.emptySet();
 
     public SyntaxException(String errorMessage) {
-        super(errorMessage);
+        super(errorMessage, null, false, false);
     }
 
     public SyntaxException(String invalidSymbol, String errorMessage) {
-        super(errorMessage);
+        super(errorMessage, null, false, false);
         this.invalidSymbol = invalidSymbol;
     }
 
+    public SyntaxException(String invalidSymbol, long offset, String errorMessage) {
+        super(errorMessage, null, false, false);
+        this.invalidSymbol = invalidSymbol;
+        this.offset = offset;
+    }
+
+    public SyntaxException(String invalidSymbol, long offset, Set<String> expected, String errorMessage) {
+        super(errorMessage, null, false, false);
+        this.invalidSymbol = invalidSymbol;
+        this.offset = offset;
+        this.expected = Collections.unmodifiableSet(expected);
+    }
 
+    /**
+     * @return the terminal, or the character, that could not be parsed, or null if unknown
+     */
+    public String getInvalidSymbol() {
+        return invalidSymbol;
+    }
+
+    /**
+     * @return the character offset in the input where parsing failed, or -1 if unknown
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the terminals that would have been accepted where parsing failed
+     */
+    public Set<String> getExpected() {
+        return expected;
+    }
 }
@@ -1,67 +1,988 @@
-import java.util.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+/**
+ * Predictive parser driven by a ParseTable. The table is immutable once generated,
+ * so a single instance can be shared by any number of threads. Each thread parses
+ * with its own stack.
+ *
+ * Input is split into terminals by the Lexer of the table. Whitespace separates
+ * terminals and is otherwise ignored.
+ *
+ * parse only checks the input and stops at the first error. parseWithRecovery goes on
+ * after errors and reports all of them. parseTree also records the ParseTree of the input,
+ * and parseIncremental keeps what is needed to reparse the input quickly after an edit.
+ *
+ * A parser created with ParserMetrics counts what parse does. Without metrics parse
+ * does not count anything.
+ *
+ * Where the grammar is not LL(1), every parse chooses between the productions of a cell with
+ * the LookaheadPredictor of the table. parse(Reader) then reads up to MAX_LOOKAHEAD terminals
+ * ahead of the parse when a decision needs them.
+ *
+ * Every parse is bounded by the ParserLimits of the parser, none by default. The parse
+ * stack never grows past the maximum stack depth.
+ */
 public class TableDrivenParser implements Parser {
-    private ParseTable parseTable;
-    private Grammar grammar;
-    private Stack<String> stack = new Stack<>();
+    private static final int BUFFER_SIZE = 8192;
+    // characters parse(Reader) buffers at most: a terminal, or those the LookaheadPredictor reads ahead
+    static final int MAX_BUFFERED = 1024 * 1024;
+    // terminals between the checkpoints of an incremental parse
+    private static final int CHECKPOINT_INTERVAL = 32;
 
+    private final ParseTable parseTable;
+    private final SymbolTable symbols;
+    private final Lexer lexer;
+    // null if parses are not counted
+    private final ParserMetrics metrics;
+    private final ParserLimits limits;
+    private final Prescanner prescanner;
+    private final ThreadLocal<ParseStack> stacks;
+    // parent node of every entry of the stack, when building a tree
+    private final ThreadLocal<ParseStack> parentStacks = ThreadLocal.withInitial(ParseStack::new);
+
+    /**
+     * Uses the table of the grammar from the shared ParseTableCache, generated once for every
+     * grammar text.
+     */
     public TableDrivenParser(Grammar grammar) throws BNFGrammarException {
-        this.grammar = grammar;
-        this.parseTable = new ParseTable(grammar);
-        parseTable.generate();
+        this(ParseTableCache.shared().get(grammar));
+    }
+
+    /**
+     * @param parseTable a generated table, e.g. one loaded with ParseTableFile
+     */
+    public TableDrivenParser(ParseTable parseTable) {
+        this(parseTable, null, ParserLimits.NONE);
+    }
+
+    public TableDrivenParser(ParseTable parseTable, ParserMetrics metrics) {
+        this(parseTable, metrics, ParserLimits.NONE);
+    }
+
+    public TableDrivenParser(ParseTable parseTable, ParserLimits limits) {
+        this(parseTable, null, limits);
+    }
+
+    /**
+     * @param metrics counts every parse of this parser, or null to count nothing. The metrics
+     *                must be created for the same table.
+     * @param limits bound every parse of this parser
+     */
+    public TableDrivenParser(ParseTable parseTable, ParserMetrics metrics, ParserLimits limits) {
+        if(!parseTable.isGenerated()) {
+            throw new IllegalArgumentException("The parse table is not generated");
+        }
+        if(metrics != null && metrics.parseTable() != parseTable) {
+            throw new IllegalArgumentException("The metrics were created for another parse table");
+        }
+        this.parseTable = parseTable;
+        this.symbols = parseTable.symbols();
+        this.lexer = parseTable.lexer();
+        this.metrics = metrics;
+        this.limits = limits;
+        this.prescanner = new Prescanner(parseTable);
+        this.stacks = ThreadLocal.withInitial(() -> new ParseStack(ParseStack.INITIAL_CAPACITY,
+                                                                   limits.maxStackDepth()));
+    }
+
+    /**
+     * @return the metrics of this parser, or null if it does not count parses
+     */
+    public ParserMetrics metrics() {
+        return metrics;
+    }
+
+    public ParserLimits limits() {
+        return limits;
+    }
+
+    public ParseTable parseTable() {
+        return parseTable;
     }
 
     @Override
-    public boolean parse(final String inputString) throws SyntaxException {
-        String input = inputString.trim().replaceAll("\\s+", "");
-        input = input + Grammar.EOF;
+    public boolean parse(final String input) throws SyntaxException {
+        return parse((CharSequence) input);
+    }
+
+    /**
+     * Parses a sequence of characters, such as a CharBuffer, without copying it.
+     */
+    public boolean parse(final CharSequence input) throws SyntaxException {
+        LookaheadPredictor predictor = parseTable.predictor();
+        LookaheadPredictor.SequenceTokens tokens = tokensOf(predictor, input);
+        ParseStack stack = newStack();
+        ParserMetrics.Trace trace = metrics == null ? null : metrics.begin();
+        boolean failed = true;
+        try {
+            int length = input.length();
+            checkLength(length, 0);
+            int index = 0;
+            long steps = 0;
+            while(true) {
+                while(index < length && isWhitespace(input.charAt(index))) {
+                    ++index;
+                }
+                if(index == length) {
+                    break;
+                }
+                long match = lexer.match(input, index, length);
+                if(tokens != null) {
+                    tokens.at(index + Lexer.lengthOf(match));
+                }
+                steps += token(stack, match, input, index, index, predictor, tokens, trace);
+                checkSteps(steps, index);
+                index += Lexer.lengthOf(match);
+            }
+            if(tokens != null) {
+                tokens.at(length);
+            }
+            steps += finish(stack, length, predictor, tokens, trace);
+            checkSteps(steps, length);
+            failed = false;
+            return true;
+        } finally {
+            if(trace != null) {
+                metrics.end(trace, failed);
+            }
+        }
+    }
+
+    /**
+     * Parses characters as they are read. Memory use does not depend on the length of the input:
+     * a terminal longer than MAX_BUFFERED characters fails with a ParseLimitException, and so
+     * do the terminals read ahead for one decision.
+     */
+    public boolean parse(final Reader input) throws SyntaxException, IOException {
+        LookaheadPredictor predictor = parseTable.predictor();
+        ParseStack stack = newStack();
+        ParserMetrics.Trace trace = metrics == null ? null : metrics.begin();
+        boolean failed = true;
+        try {
+            BufferedInput buffer = new BufferedInput(input);
+            BufferedTokens tokens = predictor == null ? null : new BufferedTokens(parseTable, buffer);
+            long steps = 0;
+            while(true) {
+                if(!buffer.skipWhitespace()) {
+                    break;
+                }
+                long offset = buffer.offset + buffer.position;
+                checkLength(offset + 1, offset);
+                long match = buffer.match(lexer, 0);
+                if(tokens != null) {
+                    tokens.at(Lexer.lengthOf(match));
+                }
+                steps += token(stack, match, buffer.chars, buffer.position, offset, predictor, tokens, trace);
+                checkSteps(steps, offset);
+                // reading ahead may have moved the buffered characters, the position moved with them
+                buffer.position += Lexer.lengthOf(match);
+            }
+            checkLength(buffer.offset + buffer.limit, buffer.offset + buffer.limit);
+            if(tokens != null) {
+                tokens.at(0);
+            }
+            steps += finish(stack, buffer.offset + buffer.limit, predictor, tokens, trace);
+            checkSteps(steps, buffer.offset + buffer.limit);
+            failed = false;
+            return true;
+        } catch (ReadAheadException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw (ParseLimitException) e.getCause();
+        } finally {
+            if(trace != null) {
+                metrics.end(trace, failed);
+            }
+        }
+    }
+
+    /**
+     * Parses bytes as they are read, one character per byte (ISO-8859-1), like parse(Reader).
+     */
+    public boolean parse(final ReadableByteChannel input) throws SyntaxException, IOException {
+        return parse(Channels.newReader(input, StandardCharsets.ISO_8859_1.newDecoder(), BUFFER_SIZE));
+    }
+
+    /**
+     * Parses the bytes from the position to the limit of the buffer, one character per byte
+     * (ISO-8859-1), without copying them. The buffer is not changed.
+     *
+     * The bytes are first checked eight at a time by a Prescanner, which rejects inputs with
+     * characters no terminal has or with unbalanced brackets without parsing them. The error
+     * of such an input may be reported at another offset than parse(CharSequence) reports it.
+     */
+    public boolean parse(final ByteBuffer input) throws SyntaxException {
+        SyntaxError error = prescanner.scan(input);
+        if(error != null) {
+            throw error.toException();
+        }
+        return parse(new ByteSequence(input));
+    }
+
+    /**
+     * Parses the whole input even if it has errors, and returns all of them instead of throwing.
+     *
+     * Recovery is panic mode: when a non terminal cannot be expanded by the next terminal,
+     * the non terminal is given up if the terminal is in its FOLLOW set, and otherwise the
+     * terminal is skipped. A terminal on the stack that does not match is taken as missing.
+     * After an error, further errors are only reported once a terminal has been matched
+     * again, so one mistake is not reported many times.
+     */
+    public ParseResult parseWithRecovery(final CharSequence input) {
+        LookaheadPredictor predictor = parseTable.predictor();
+        LookaheadPredictor.SequenceTokens tokens = tokensOf(predictor, input);
+        ParseStack stack = newStack();
+        Recovery recovery = new Recovery();
+        int length = input.length();
+        if(length > limits.maxInputLength()) {
+            recovery.stop(limitExceeded(ParseLimitException.Limit.INPUT_LENGTH, limits.maxInputLength(), 0));
+            return new ParseResult(recovery.errors);
+        }
         int index = 0;
+        while(!recovery.stopped) {
+            while(index < length && isWhitespace(input.charAt(index))) {
+                ++index;
+            }
+            if(index == length) {
+                break;
+            }
+            long match = lexer.match(input, index, length);
+            if(match == Lexer.NO_MATCH) {
+                String symbol = String.valueOf(input.charAt(index));
+                recovery.report(unrecognizedSymbol(parseTable, symbol, stack.peek(), index));
+                ++index;
+                continue;
+            }
+            if(tokens != null) {
+                tokens.at(index + Lexer.lengthOf(match));
+            }
+            consume(stack, Lexer.terminalOf(match), index, predictor, tokens, recovery);
+            index += Lexer.lengthOf(match);
+        }
+        if(!recovery.stopped) {
+            if(tokens != null) {
+                tokens.at(length);
+            }
+            consume(stack, parseTable.eof(), length, predictor, tokens, recovery);
+        }
+        return new ParseResult(recovery.errors);
+    }
 
-        stack.push(Grammar.EOF);
-        stack.push(grammar.getStartSymbol());
+    public ParseTree parseTree(final CharSequence input) throws SyntaxException {
+        return parseTree(input, new ParseTree());
+    }
+
+    /**
+     * Parses the input and records its concrete syntax tree in tree, replacing what the tree held.
+     * @return tree
+     */
+    public ParseTree parseTree(final CharSequence input, ParseTree tree) throws SyntaxException {
+        LookaheadPredictor predictor = parseTable.predictor();
+        LookaheadPredictor.SequenceTokens tokens = tokensOf(predictor, input);
+        ParseStack stack = newStack();
+        ParseStack parents = parentStacks.get();
+        parents.clear();
+        parents.push(ParseTree.NO_PARENT);
+        parents.push(ParseTree.NO_PARENT);
+        tree.clear(symbols);
 
-        String topOfStack = stack.peek();
+        int length = input.length();
+        checkLength(length, 0);
+        int index = 0;
+        int previousEnd = 0;
+        long steps = 0;
         while(true) {
-//            System.out.println("Stack contents");
-//            stack.forEach(System.out::print);
-//            System.out.println();
+            while(index < length && isWhitespace(input.charAt(index))) {
+                ++index;
+            }
+            if(index == length) {
+                break;
+            }
+            long match = lexer.match(input, index, length);
+            if(match == Lexer.NO_MATCH) {
+                throw unrecognizedSymbol(parseTable, String.valueOf(input.charAt(index)), stack.peek(), index)
+                        .toException();
+            }
+            if(tokens != null) {
+                tokens.at(index + Lexer.lengthOf(match));
+            }
+            steps += consume(stack, parents, tree, Lexer.terminalOf(match), index, previousEnd, predictor, tokens);
+            checkSteps(steps, index);
+            int node = tree.open(Lexer.terminalOf(match), ParseTree.NO_PRODUCTION, parents.pop(), index);
+            index += Lexer.lengthOf(match);
+            tree.close(node, index);
+            previousEnd = index;
+        }
+        if(tokens != null) {
+            tokens.at(length);
+        }
+        steps += consume(stack, parents, tree, parseTable.eof(), length, previousEnd, predictor, tokens);
+        checkSteps(steps, length);
+        return tree;
+    }
+
+    /**
+     * Parses the input like parse, but does not throw: the snapshot tells whether the input
+     * is valid, and can be passed to reparse after the input is edited.
+     */
+    public ParseSnapshot parseIncremental(final CharSequence input) {
+        ParseSnapshot snapshot = new ParseSnapshot();
+        ParseStack stack = newStack();
+        snapshot.add(0, stack.toArray());
+        return resume(input, stack, 0, snapshot, null, 0, 0);
+    }
+
+    /**
+     * Parses an edited input again, starting from the last checkpoint before the edit. Once the
+     * parse is past the edit and its stack is the same as that of the previous parse at the same
+     * place, the rest of the previous parse is reused, so the work done depends on the size of
+     * the edit rather than the length of the input.
+     *
+     * @param previous the snapshot of the input before the edit
+     * @param input the edited input
+     * @param start the offset where the edit starts
+     * @param oldEnd the end of the replaced characters, in the input before the edit
+     * @param newEnd the end of the inserted characters, in the edited input
+     */
+    public ParseSnapshot reparse(ParseSnapshot previous, final CharSequence input, int start, int oldEnd, int newEnd) {
+        // the lexer looks a few characters past the end of a terminal, so stay clear of the edit
+        int margin = lexer.longestLiteral() + 1;
+        int checkpoint = Math.max(previous.checkpointsBefore(start - margin) - 1, 0);
+        // the decisions before a checkpoint may have looked at up to MAX_LOOKAHEAD terminals after it,
+        // all of them before the next checkpoint
+        if(parseTable.predictor() != null && checkpoint > 0) {
+            --checkpoint;
+        }
+        ParseStack stack = stacks.get();
+        stack.clear();
+        stack.pushAll(previous.stack(checkpoint));
+        return resume(input, stack, previous.position(checkpoint), previous.prefix(checkpoint + 1),
+                        previous, newEnd, newEnd - oldEnd);
+    }
 
-            if(topOfStack.equals(Grammar.EOF) &&
-                                Grammar.EOF.equals(""+input.charAt(index))) {
-                // input string is correct
+    /**
+     * Parses from index on, adding checkpoints to snapshot. Past unchangedFrom, the input is the
+     * input of previous moved by delta characters.
+     */
+    private ParseSnapshot resume(CharSequence input, ParseStack stack, int index, ParseSnapshot snapshot,
+                                 ParseSnapshot previous, int unchangedFrom, int delta) {
+        int length = input.length();
+        int terminalsRead = 0;
+        int sinceCheckpoint = 0;
+        // steps are counted from where the parse resumes
+        long steps = 0;
+        // a failed parse cannot be reused, its error would be at the wrong offset
+        boolean reuse = previous != null && previous.isValid();
+        LookaheadPredictor predictor = parseTable.predictor();
+        LookaheadPredictor.SequenceTokens tokens = tokensOf(predictor, input);
+        try {
+            checkLength(length, 0);
+            while(true) {
+                while(index < length && isWhitespace(input.charAt(index))) {
+                    ++index;
+                }
+                if(index == length) {
+                    break;
+                }
+                long match = lexer.match(input, index, length);
+                if(tokens != null) {
+                    tokens.at(index + Lexer.lengthOf(match));
+                }
+                steps += token(stack, match, input, index, index, predictor, tokens, null);
+                checkSteps(steps, index);
+                index += Lexer.lengthOf(match);
+                ++terminalsRead;
+
+                if(reuse && index >= unchangedFrom) {
+                    // next checkpoint of the previous parse to compare with
+                    int old = previous.checkpointsBefore(index - delta);
+                    if(old < previous.checkpoints() && previous.position(old) == index - delta
+                            && stack.contentEquals(previous.stack(old))) {
+                        snapshot.addShifted(previous, old, delta);
+                        snapshot.finish(length, terminalsRead, null);
+                        return snapshot;
+                    }
+                }
+                if(++sinceCheckpoint == CHECKPOINT_INTERVAL) {
+                    snapshot.add(index, stack.toArray());
+                    sinceCheckpoint = 0;
+                }
+            }
+            if(tokens != null) {
+                tokens.at(length);
+            }
+            steps += finish(stack, length, predictor, tokens, null);
+            checkSteps(steps, length);
+            snapshot.finish(length, terminalsRead, null);
+        } catch (SyntaxException e) {
+            snapshot.finish(length, terminalsRead, e);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Parses input[from, to) on its own, for ParallelParser. The terminal at to, if any, is
+     * not read, so the part must not end in the middle of a terminal. Metrics are not counted,
+     * and steps are only counted within the part.
+     * @param start the stack to start from, bottom first, or null to start from the beginning
+     * @param end true if the input ends at to, so the end of input is matched after the part
+     * @return the stack after the part, bottom first
+     */
+    int[] parsePart(CharSequence input, int from, int to, int[] start, boolean end) throws SyntaxException {
+        LookaheadPredictor predictor = parseTable.predictor();
+        LookaheadPredictor.SequenceTokens tokens = tokensOf(predictor, input);
+        ParseStack stack = newStack();
+        if(start != null) {
+            stack.clear();
+            stack.pushAll(start);
+        }
+        int index = from;
+        long steps = 0;
+        while(true) {
+            while(index < to && isWhitespace(input.charAt(index))) {
+                ++index;
+            }
+            if(index == to) {
                 break;
-            } else if(grammar.containsTerminalSymbol(topOfStack)) {
-                if(topOfStack.equals(""+input.charAt(index))) {
+            }
+            long match = lexer.match(input, index, to);
+            if(tokens != null) {
+                tokens.at(index + Lexer.lengthOf(match));
+            }
+            steps += token(stack, match, input, index, index, predictor, tokens, null);
+            checkSteps(steps, index);
+            index += Lexer.lengthOf(match);
+        }
+        if(end) {
+            if(tokens != null) {
+                tokens.at(to);
+            }
+            steps += finish(stack, to, predictor, tokens, null);
+            checkSteps(steps, to);
+        }
+        return stack.toArray();
+    }
+
+    /**
+     * @return the terminals of the input for the predictor, or null if there is no predictor
+     */
+    private LookaheadPredictor.SequenceTokens tokensOf(LookaheadPredictor predictor, CharSequence input) {
+        return predictor == null ? null : new LookaheadPredictor.SequenceTokens(parseTable, input);
+    }
+
+    private ParseStack newStack() {
+        // the stack of a failed parse is left as is, so always start from an empty one
+        ParseStack stack = stacks.get();
+        stack.clear();
+        stack.push(parseTable.eof());
+        stack.push(parseTable.startSymbol());
+        return stack;
+    }
+
+    /**
+     * Consumes the terminal matched at input[index].
+     * @param predictor the predictor of the table, or null if the grammar is LL(1)
+     * @param tokens the terminals after the match, when there is a predictor
+     * @param trace counts the parse, or null
+     * @return the number of non terminals expanded
+     */
+    private int token(ParseStack stack, long match, CharSequence input, int index, long offset,
+                      LookaheadPredictor predictor, LookaheadPredictor.Tokens tokens, ParserMetrics.Trace trace)
+            throws SyntaxException {
+        if(match == Lexer.NO_MATCH) {
+            throw unrecognizedSymbol(parseTable, String.valueOf(input.charAt(index)), stack.peek(), offset)
+                    .toException();
+        }
+        if(predictor != null) {
+            return consume(stack, Lexer.terminalOf(match), offset, predictor, tokens, trace);
+        }
+        if(trace == null) {
+            return consume(stack, Lexer.terminalOf(match), offset);
+        }
+        return consume(stack, Lexer.terminalOf(match), offset, trace);
+    }
+
+    /**
+     * Consumes the end of input, like token.
+     * @return the number of non terminals expanded
+     */
+    private int finish(ParseStack stack, long offset, LookaheadPredictor predictor, LookaheadPredictor.Tokens tokens,
+                       ParserMetrics.Trace trace) throws SyntaxException {
+        if(predictor != null) {
+            return consume(stack, parseTable.eof(), offset, predictor, tokens, trace);
+        }
+        if(trace == null) {
+            return consume(stack, parseTable.eof(), offset);
+        }
+        return consume(stack, parseTable.eof(), offset, trace);
+    }
+
+    /**
+     * @param offset where the parse is, 0 when the whole input is checked before parsing it
+     */
+    private void checkLength(long length, long offset) throws ParseLimitException {
+        if(length > limits.maxInputLength()) {
+            throw new ParseLimitException(ParseLimitException.Limit.INPUT_LENGTH, limits.maxInputLength(), offset);
+        }
+    }
+
+    private void checkSteps(long steps, long offset) throws ParseLimitException {
+        if(steps > limits.maxSteps()) {
+            throw new ParseLimitException(ParseLimitException.Limit.STEPS, limits.maxSteps(), offset);
+        }
+    }
+
+    private ParseLimitException stackTooDeep(ParseStack stack, long offset) {
+        return new ParseLimitException(ParseLimitException.Limit.STACK_DEPTH, stack.maxSize(), offset);
+    }
+
+    /**
+     * Expands non terminals on top of the stack until the terminal is on top, then pops it.
+     * @return the number of non terminals expanded
+     */
+    private int consume(ParseStack stack, int terminal, long offset) throws SyntaxException {
+        int expansions = 0;
+        int topOfStack = stack.peek();
+        while(topOfStack != terminal) {
+            if(symbols.isTerminal(topOfStack)) {
+                throw unrecognizedSymbol(parseTable, symbols.nameOf(terminal), topOfStack, offset).toException();
+            }
+            int production = parseTable.ruleToApply(topOfStack, terminal);
+            if(production == ParseTable.NO_RULE) {
+                throw unableToExpand(parseTable, topOfStack, terminal, offset).toException();
+            }
+            stack.pop();
+            int[] body = parseTable.productionSymbols(production);
+            if(!stack.hasRoomFor(body.length)) {
+                throw stackTooDeep(stack, offset);
+            }
+            stack.pushReversed(body);
+            ++expansions;
+            topOfStack = stack.peek();
+        }
+        stack.pop();
+        return expansions;
+    }
+
+    /**
+     * Like consume, but counts expansions and matches in trace.
+     */
+    private int consume(ParseStack stack, int terminal, long offset, ParserMetrics.Trace trace)
+            throws SyntaxException {
+        int expansions = 0;
+        int topOfStack = stack.peek();
+        while(topOfStack != terminal) {
+            if(symbols.isTerminal(topOfStack)) {
+                throw unrecognizedSymbol(parseTable, symbols.nameOf(terminal), topOfStack, offset).toException();
+            }
+            int production = parseTable.ruleToApply(topOfStack, terminal);
+            if(production == ParseTable.NO_RULE) {
+                throw unableToExpand(parseTable, topOfStack, terminal, offset).toException();
+            }
+            stack.pop();
+            int[] body = parseTable.productionSymbols(production);
+            if(!stack.hasRoomFor(body.length)) {
+                throw stackTooDeep(stack, offset);
+            }
+            stack.pushReversed(body);
+            ++expansions;
+            trace.expanded(production, stack.size());
+            topOfStack = stack.peek();
+        }
+        stack.pop();
+        trace.matched();
+        return expansions;
+    }
+
+    /**
+     * Like consume, but the predictor chooses the production of the cells with more than one.
+     * @param tokens the terminals after this one
+     * @param trace counts the parse, or null
+     */
+    private int consume(ParseStack stack, int terminal, long offset, LookaheadPredictor predictor,
+                        LookaheadPredictor.Tokens tokens, ParserMetrics.Trace trace) throws SyntaxException {
+        int expansions = 0;
+        int topOfStack = stack.peek();
+        while(topOfStack != terminal) {
+            if(symbols.isTerminal(topOfStack)) {
+                throw unrecognizedSymbol(parseTable, symbols.nameOf(terminal), topOfStack, offset).toException();
+            }
+            int production = parseTable.ruleToApply(topOfStack, terminal);
+            if(production == ParseTable.NO_RULE) {
+                throw unableToExpand(parseTable, topOfStack, terminal, offset).toException();
+            }
+            if(predictor.isConflict(topOfStack, terminal)) {
+                production = predictor.predict(topOfStack, terminal, tokens, stack);
+            }
+            stack.pop();
+            int[] body = parseTable.productionSymbols(production);
+            if(!stack.hasRoomFor(body.length)) {
+                throw stackTooDeep(stack, offset);
+            }
+            stack.pushReversed(body);
+            ++expansions;
+            if(trace != null) {
+                trace.expanded(production, stack.size());
+            }
+            topOfStack = stack.peek();
+        }
+        stack.pop();
+        if(trace != null) {
+            trace.matched();
+        }
+        return expansions;
+    }
+
+    static SyntaxError unrecognizedSymbol(ParseTable parseTable, String symbol, int topOfStack, long offset) {
+        return new SyntaxError(symbol, offset, parseTable.expectedTerminals(topOfStack),
+                                    "Syntax Error. Unrecognized symbol, " + symbol + ", at offset " + offset);
+    }
+
+    static SyntaxError limitExceeded(ParseLimitException.Limit limit, long maximum, long offset) {
+        return new SyntaxError(null, offset, Collections.<String>emptySet(),
+                               ParseLimitException.messageOf(limit, maximum, offset));
+    }
+
+    static SyntaxError unableToExpand(ParseTable parseTable, int nonTerminal, int terminal, long offset) {
+        SymbolTable symbols = parseTable.symbols();
+        return new SyntaxError(symbols.nameOf(terminal), offset, parseTable.expectedTerminals(nonTerminal),
+                                    "Unable to expand non-terminal, " + symbols.nameOf(nonTerminal)
+                                        + ", while processing, " + symbols.nameOf(terminal)
+                                        + ", at offset " + offset + " in input");
+    }
+
+    /**
+     * Like consume, but reports errors to recovery and recovers from them, see parseWithRecovery.
+     * The terminal is either matched or skipped.
+     * @param predictor the predictor of the table and the terminals after this one, or null
+     */
+    private void consume(ParseStack stack, int terminal, long offset, LookaheadPredictor predictor,
+                         LookaheadPredictor.Tokens tokens, Recovery recovery) {
+        int topOfStack = stack.peek();
+        while(topOfStack != terminal) {
+            if(symbols.isTerminal(topOfStack)) {
+                recovery.report(unrecognizedSymbol(parseTable, symbols.nameOf(terminal), topOfStack, offset));
+                if(topOfStack == parseTable.eof()) { // input after the end, skip it
+                    return;
+                }
+                stack.pop();
+            } else {
+                int production = parseTable.ruleToApply(topOfStack, terminal);
+                if(production != ParseTable.NO_RULE) {
+                    if(predictor != null && predictor.isConflict(topOfStack, terminal)) {
+                        production = predictor.predict(topOfStack, terminal, tokens, stack);
+                    }
                     stack.pop();
-                    ++index;
+                    int[] body = parseTable.productionSymbols(production);
+                    if(!stack.hasRoomFor(body.length)) {
+                        recovery.stop(limitExceeded(ParseLimitException.Limit.STACK_DEPTH, stack.maxSize(), offset));
+                        return;
+                    }
+                    if(++recovery.steps > limits.maxSteps()) {
+                        recovery.stop(limitExceeded(ParseLimitException.Limit.STEPS, limits.maxSteps(), offset));
+                        return;
+                    }
+                    stack.pushReversed(body);
                 } else {
-                    throw new SyntaxException("Syntax Error. Unrecognized symbol, " + input.charAt(index));
-                }
-            } else if(grammar.containsNonTerminal(topOfStack)) {
-                Optional<String> result = parseTable.ruleToApply(topOfStack, ""+input.charAt(index));
-                if(result.isPresent()) {
+                    recovery.report(unableToExpand(parseTable, topOfStack, terminal, offset));
+                    // the end of input cannot be skipped, so the non terminal has to go
+                    if(!parseTable.isSynchronizing(topOfStack, terminal) && terminal != parseTable.eof()) {
+                        return;
+                    }
                     stack.pop();
+                }
+            }
+            topOfStack = stack.peek();
+        }
+        stack.pop();
+        recovery.reporting = true;
+    }
+
+    /**
+     * Like consume, but adds a node to the tree for every non terminal expanded, and leaves
+     * the parent of the terminal on top of parents. An entry e below zero on the stack marks
+     * the end of node -1 - e.
+     * @param predictor the predictor of the table and the terminals after this one, or null
+     * @return the number of non terminals expanded
+     */
+    private int consume(ParseStack stack, ParseStack parents, ParseTree tree, int terminal, int offset,
+                        int previousEnd, LookaheadPredictor predictor, LookaheadPredictor.Tokens tokens)
+            throws SyntaxException {
+        int expansions = 0;
+        int topOfStack = stack.peek();
+        while(topOfStack != terminal) {
+            if(topOfStack < 0) {
+                stack.pop();
+                parents.pop();
+                tree.close(-1 - topOfStack, previousEnd);
+            } else {
+                if(symbols.isTerminal(topOfStack)) {
+                    throw unrecognizedSymbol(parseTable, symbols.nameOf(terminal), topOfStack, offset).toException();
+                }
+                int production = parseTable.ruleToApply(topOfStack, terminal);
+                if(production == ParseTable.NO_RULE) {
+                    throw unableToExpand(parseTable, topOfStack, terminal, offset).toException();
+                }
+                if(predictor != null && predictor.isConflict(topOfStack, terminal)) {
+                    production = predictor.predict(topOfStack, terminal, tokens, stack);
+                }
+                stack.pop();
+                int[] body = parseTable.productionSymbols(production);
+                // the body and the end of the node
+                if(!stack.hasRoomFor(body.length + 1)) {
+                    throw stackTooDeep(stack, offset);
+                }
+                int node = tree.open(topOfStack, production, parents.pop(), offset);
+                stack.push(-1 - node);
+                parents.push(node);
+
+                stack.pushReversed(body);
+                for(int i = 0; i < body.length; i++) {
+                    parents.push(node);
+                }
+                ++expansions;
+            }
+            topOfStack = stack.peek();
+        }
+        stack.pop();
+        return expansions;
+    }
 
-                    String rule = result.get();
-                    if(!grammar.isEpsilonProduction(rule)) {
-                        List<String> symbols = Grammar.fromBNF(rule);
-                        ListIterator<String> iterator = symbols.listIterator(symbols.size());
+    // the characters matched by \s
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    private static class Recovery {
+        private final List<SyntaxError> errors = new ArrayList<>();
+        // false from an error until the next terminal is matched
+        private boolean reporting = true;
+        private long steps;
+        // true once a limit is exceeded, the parse cannot go on
+        private boolean stopped;
+
+        void report(SyntaxError error) {
+            if(reporting) {
+                errors.add(error);
+                reporting = false;
+            }
+        }
+
+        void stop(SyntaxError error) {
+            errors.add(error);
+            stopped = true;
+        }
+    }
+
+    /**
+     * ISO-8859-1 characters of the bytes of a buffer, from its position to its limit.
+     */
+    private static class ByteSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int start;
+        private final int length;
+
+        ByteSequence(ByteBuffer bytes) {
+            this(bytes, bytes.position(), bytes.remaining());
+        }
+
+        private ByteSequence(ByteBuffer bytes, int start, int length) {
+            this.bytes = bytes;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new ByteSequence(bytes, start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length];
+            for(int i = 0; i < length; i++) {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+    }
+
+    /**
+     * A window over a Reader. Characters before position have been parsed.
+     */
+    private static class BufferedInput {
+        private final Reader reader;
+        private char[] buffer = new char[BUFFER_SIZE];
+        private CharBuffer chars = CharBuffer.wrap(buffer);
+        private int position;
+        private int limit;
+        // offset in the input of buffer[0]
+        private long offset;
+        private boolean endOfInput;
+
+        BufferedInput(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return false if only whitespace was left in the input
+         */
+        boolean skipWhitespace() throws IOException, ParseLimitException {
+            while(true) {
+                while(position < limit && isWhitespace(buffer[position])) {
+                    ++position;
+                }
+                if(position < limit) {
+                    return true;
+                }
+                if(endOfInput) {
+                    return false;
+                }
+                fill(1);
+            }
+        }
+
+        /**
+         * @param from an index from position
+         * @return the index from position of the first character from there on that is not
+         *         whitespace, or -1 if only whitespace is left in the input. The whitespace stays
+         *         buffered
+         */
+        int skipWhitespace(int from) throws IOException, ParseLimitException {
+            while(true) {
+                while(position + from < limit && isWhitespace(buffer[position + from])) {
+                    ++from;
+                }
+                if(position + from < limit) {
+                    return from;
+                }
+                if(endOfInput) {
+                    return -1;
+                }
+                fill(from + 1);
+            }
+        }
 
-                        while(iterator.hasPrevious()) {
-                            stack.push(iterator.previous());
-                        }
+        /**
+         * Matches the terminal at the index from position, reading as much of the input as the
+         * lexer needs to see.
+         * @param from the index from position of a buffered character
+         */
+        long match(Lexer lexer, int from) throws IOException, ParseLimitException {
+            fill(from + lexer.longestLiteral());
+            long match = lexer.match(chars, position + from, limit);
+            // a match that ends too close to the end of the buffer, such as an identifier or the
+            // whole part of a number, may go on past it
+            while(match != Lexer.NO_MATCH && !endOfInput
+                    && position + from + Lexer.lengthOf(match) + lexer.lookahead() > limit) {
+                int needed = from + Lexer.lengthOf(match) + lexer.lookahead();
+                // twice that, so a long terminal is not matched again for every read
+                fill(Math.max(needed, Math.min(2 * needed, MAX_BUFFERED)));
+                match = lexer.match(chars, position + from, limit);
+            }
+            return match;
+        }
+
+        /**
+         * Reads until at least count unparsed characters are buffered, or the input ends.
+         * @throws ParseLimitException if that takes more than MAX_BUFFERED characters
+         */
+        void fill(int count) throws IOException, ParseLimitException {
+            while(!endOfInput && limit - position < count) {
+                if(position > 0) { // move the unparsed characters to the front
+                    System.arraycopy(buffer, position, buffer, 0, limit - position);
+                    offset += position;
+                    limit -= position;
+                    position = 0;
+                }
+                if(limit == buffer.length) {
+                    if(buffer.length == MAX_BUFFERED) {
+                        throw new ParseLimitException(ParseLimitException.Limit.TOKEN_LENGTH, MAX_BUFFERED, offset);
                     }
+                    buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, MAX_BUFFERED));
+                    chars = CharBuffer.wrap(buffer);
+                }
+                int read = reader.read(buffer, limit, buffer.length - limit);
+                if(read == -1) {
+                    endOfInput = true;
                 } else {
-                    throw new SyntaxException("Unable to expand non-terminal, " + topOfStack
-                                                + ", while processing, " + input.charAt(index) + ", in input");
+                    limit += read;
                 }
             }
+        }
+    }
 
-            topOfStack = stack.peek();
+    /**
+     * The terminals after the one being consumed from a BufferedInput, read ahead when the
+     * LookaheadPredictor needs them. They stay buffered until they are parsed.
+     */
+    private static class BufferedTokens extends LookaheadPredictor.Tokens {
+        private final ParseTable parseTable;
+        private final BufferedInput buffer;
+        // from the position of the buffer, which moves as the buffer is filled
+        private int index;
 
+        BufferedTokens(ParseTable parseTable, BufferedInput buffer) {
+            this.parseTable = parseTable;
+            this.buffer = buffer;
         }
 
-        stack.clear();
-        return true;
+        /**
+         * @param next the index from the position of the buffer after the terminal being consumed
+         */
+        BufferedTokens at(int next) {
+            index = next;
+            clear();
+            return this;
+        }
+
+        @Override
+        int lex() {
+            try {
+                int start = buffer.skipWhitespace(index);
+                if(start < 0) {
+                    return parseTable.eof();
+                }
+                long match = buffer.match(parseTable.lexer(), start);
+                if(match == Lexer.NO_MATCH) {
+                    index = start;
+                    return LookaheadPredictor.UNKNOWN;
+                }
+                index = start + Lexer.lengthOf(match);
+                return Lexer.terminalOf(match);
+            } catch (IOException | ParseLimitException e) {
+                throw new ReadAheadException(e);
+            }
+        }
+    }
+
+    /**
+     * What reading ahead for the LookaheadPredictor failed with, out of Tokens.lex.
+     */
+    private static class ReadAheadException extends RuntimeException {
+        ReadAheadException(Throwable cause) {
+            super(cause);
+        }
     }
 }
@@ -0,0 +1,61 @@
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Outcome of validating one input of a batch. Invalid inputs carry where parsing
+ * failed and what was expected there instead of throwing.
+ */
+public class ValidationResult {
+    private final long index;
+    private final boolean valid;
+    private final long errorOffset;
+    private final Set<String> expected;
+    private final String message;
+
+    private ValidationResult(long index, boolean valid, long errorOffset, Set<String> expected, String message) {
+        this.index = index;
+        this.valid = valid;
+        this.errorOffset = errorOffset;
+        this.expected = expected;
+        this.message = message;
+    }
+
+    public static ValidationResult valid(long index) {
+        return new ValidationResult(index, true, -1, Collections.<String>emptySet(), null);
+    }
+
+    public static ValidationResult invalid(long index, SyntaxException error) {
+        return new ValidationResult(index, false, error.getOffset(), error.getExpected(), error.getMessage());
+    }
+
+    /**
+     * @return the position of the input in the batch, starting at 0
+     */
+    public long index() {
+        return index;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return the character offset where parsing failed, or -1 for a valid input
+     */
+    public long errorOffset() {
+        return errorOffset;
+    }
+
+    public Set<String> expected() {
+        return expected;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return valid ? index + ": valid" : index + ": " + message + ", expected " + expected;
+    }
+}
@@ -0,0 +1,291 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Validates newline separated inputs sent by any number of TCP clients. Every line gets
+ * one line back, ValidationResult.toString(), in the order the lines were sent, so a client
+ * can send many lines before reading the answers.
+ *
+ * One thread runs the selector and does all the network I/O. Lines are validated on the
+ * workers with one shared parser. A connection is not read while it has MAX_PENDING lines
+ * waiting for an answer, or unsent answers, so a client that does not read its answers
+ * slows down instead of filling the memory of the server.
+ *
+ * A line the parser fails on with an unexpected exception, or that the workers refuse, is
+ * answered with an error like any other line, and the server goes on.
+ */
+public class ValidationServer implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(ValidationServer.class);
+    // lines of a connection being validated or waiting to be sent before reading stops
+    static final int MAX_PENDING = 1024;
+    // longer lines are answered with an error and not validated
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final BatchValidator validator;
+    private final ExecutorService workers;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    // connections with answers completed by the workers, to be sent by the selector thread
+    private final Queue<Connection> completed = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * Opens the server socket. Call run to serve clients.
+     * @param address the address to listen on, e.g. new InetSocketAddress("localhost", 0) for any free port
+     */
+    public ValidationServer(Parser parser, ExecutorService workers, SocketAddress address) throws IOException {
+        this.validator = new BatchValidator(parser);
+        this.workers = workers;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public InetSocketAddress address() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * Serves clients until close is called.
+     */
+    public void run() throws IOException {
+        try {
+            while(running) {
+                selector.select();
+                Connection connection;
+                while((connection = completed.poll()) != null) {
+                    try {
+                        connection.flushCompleted();
+                    } catch (IOException e) {
+                        drop(connection.key, e);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if(!key.isValid()) {
+                            continue;
+                        }
+                        if(key.isAcceptable()) {
+                            accept();
+                        } else {
+                            connection = (Connection) key.attachment();
+                            if(key.isReadable()) {
+                                connection.read();
+                            }
+                            if(key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        }
+                    } catch (IOException e) {
+                        if(key.channel() == server) { // keep listening
+                            LOG.warn("Could not accept a connection", e);
+                        } else {
+                            drop(key, e);
+                        }
+                    }
+                }
+            }
+        } finally {
+            for(SelectionKey key : selector.keys()) {
+                close(key.channel());
+            }
+            selector.close();
+        }
+    }
+
+    /**
+     * Stops run. Lines still being validated are not answered.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private static void drop(SelectionKey key, IOException e) {
+        LOG.debug("Closing connection after an error", e);
+        key.cancel();
+        close(key.channel());
+    }
+
+    private static void close(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close a connection", e);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if(channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    /**
+     * State of one client. Only the selector thread touches it, except for the answers
+     * the workers complete.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        // the current line is too long and is skipped up to its end
+        private boolean skipping;
+        // answers in the order of the lines, some still being validated
+        private final Queue<CompletableFuture<String>> pending = new ArrayDeque<>();
+        private ByteBuffer output = ByteBuffer.allocate(0);
+        private long lines;
+        private boolean endOfInput;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            if(channel.read(input) < 0) {
+                endOfInput = true;
+            }
+            split();
+            if(endOfInput) {
+                write();
+            } else {
+                updateInterest();
+            }
+        }
+
+        /**
+         * Splits the buffered input into lines until MAX_PENDING lines wait for an answer. The
+         * rest stays buffered until answers are sent. At the end of the input, the last line is
+         * validated even without a newline.
+         */
+        private void split() {
+            input.flip();
+            while(input.hasRemaining() && pending.size() < MAX_PENDING) {
+                byte b = input.get();
+                if(b == '\n') {
+                    endOfLine();
+                } else if(skipping) {
+                    continue;
+                } else if(line.size() == MAX_LINE_LENGTH) {
+                    skipping = true;
+                } else {
+                    line.write(b);
+                }
+            }
+            if(endOfInput && !input.hasRemaining() && pending.size() < MAX_PENDING && (line.size() > 0 || skipping)) {
+                endOfLine();
+            }
+            input.compact();
+        }
+
+        private void endOfLine() {
+            long index = lines++;
+            CompletableFuture<String> answer;
+            if(skipping) {
+                answer = CompletableFuture.completedFuture(index + ": Line longer than " + MAX_LINE_LENGTH
+                                                            + " bytes");
+                skipping = false;
+            } else {
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                if(text.endsWith("\r")) {
+                    text = text.substring(0, text.length() - 1);
+                }
+                String expression = text;
+                try {
+                    answer = CompletableFuture.supplyAsync(() -> validator.validate(index, expression).toString(),
+                                                           workers)
+                                              .exceptionally(e -> {
+                                                  LOG.warn("Failed to validate line " + index, e);
+                                                  return index + ": Internal error";
+                                              });
+                } catch (RejectedExecutionException e) {
+                    answer = CompletableFuture.completedFuture(index + ": Not validated, the workers refused it");
+                }
+            }
+            line.reset();
+            pending.add(answer);
+            answer.whenComplete((result, error) -> {
+                completed.add(this);
+                selector.wakeup();
+            });
+        }
+
+        /**
+         * Moves the answers at the head of pending that are complete to the output.
+         */
+        void flushCompleted() throws IOException {
+            if(!key.isValid()) {
+                return;
+            }
+            StringBuilder answers = new StringBuilder();
+            while(!pending.isEmpty() && pending.peek().isDone()) {
+                answers.append(pending.remove().getNow("Internal error")).append('\n');
+            }
+            // lines left in the input once MAX_PENDING were waiting
+            split();
+            if(answers.length() > 0) {
+                byte[] bytes = answers.toString().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buffer = ByteBuffer.allocate(output.remaining() + bytes.length);
+                buffer.put(output).put(bytes).flip();
+                output = buffer;
+            }
+            write();
+        }
+
+        void write() throws IOException {
+            if(output.hasRemaining()) {
+                channel.write(output);
+            }
+            if(endOfInput && pending.isEmpty() && !output.hasRemaining()) {
+                key.cancel();
+                channel.close();
+                return;
+            }
+            updateInterest();
+        }
+
+        private void updateInterest() {
+            if(!key.isValid()) {
+                return;
+            }
+            int interest = 0;
+            // back pressure: stop reading while too many answers are waiting
+            if(!endOfInput && pending.size() < MAX_PENDING && output.remaining() < MAX_LINE_LENGTH) {
+                interest |= SelectionKey.OP_READ;
+            }
+            if(output.hasRemaining()) {
+                interest |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(interest);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BatchValidatorTest {
+    private BatchValidator validator;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public BatchValidatorTest() throws IOException, BNFGrammarException {
+        this.validator = new BatchValidator(new TableDrivenParser(new Grammar("language.bnf")));
+    }
+
+    @Test
+    public void returnsOneResultPerInputInOrder() {
+        List<ValidationResult> results = validator.validate(Arrays.asList("1", "(1", "~0 ^ 1"));
+
+        assertThat(results.size(), is(equalTo(3)));
+        assertThat(results.get(0).isValid(), is(equalTo(true)));
+        assertThat(results.get(1).isValid(), is(equalTo(false)));
+        assertThat(results.get(2).isValid(), is(equalTo(true)));
+        assertThat(results.get(2).index(), is(equalTo(2L)));
+    }
+
+    @Test
+    public void reportsErrorPositionAndExpectedTerminals() {
+        ValidationResult result = validator.validate(Arrays.asList("(1 1")).get(0);
+
+        assertThat(result.errorOffset(), is(equalTo(3L)));
+        assertThat(result.expected(), hasItems("^", "|", ")"));
+    }
+
+    @Test
+    public void validatesLargeBatchesInParallel() {
+        List<String> inputs = IntStream.range(0, 100000)
+                                    .mapToObj(i -> i % 3 == 0 ? "(1 | " + i % 2 : "~(1 ^ 0) | " + i % 2)
+                                    .collect(Collectors.toList());
+        List<ValidationResult> results = validator.validate(inputs);
+
+        for(int i = 0; i < inputs.size(); i++) {
+            assertThat(results.get(i).isValid(), is(equalTo(i % 3 != 0)));
+        }
+    }
+
+    @Test
+    public void validatesEveryLineOfAFile() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList("1 | 0", "1 +", "", "((0))"));
+
+        List<ValidationResult> results = new ArrayList<>();
+        long invalid = validator.validateLines(file.toPath(), results::add);
+
+        assertThat(invalid, is(equalTo(2L)));
+        assertThat(results.stream().map(ValidationResult::isValid).collect(Collectors.toList()),
+                    contains(true, false, false, true));
+    }
+
+    @Test
+    public void mainValidatesEveryLineOfStandardInput() throws IOException, BNFGrammarException {
+        ByteArrayInputStream input = new ByteArrayInputStream("1 | 0\n1 +\n((0))\n".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long invalid = Main.batch(new TableDrivenParser(new Grammar("language.bnf")), input, new PrintStream(output));
+
+        assertThat(invalid, is(equalTo(1L)));
+        String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(lines.length, is(equalTo(3)));
+        assertThat(lines[0], is(equalTo("0: valid")));
+        assertThat(lines[1], startsWith("1: "));
+        assertThat(lines[2], is(equalTo("2: valid")));
+    }
+}
@@ -0,0 +1,110 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class BooleanEvaluatorTest {
+    private ParseTable parseTable;
+    private BooleanEvaluator evaluator;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public BooleanEvaluatorTest() throws IOException, BNFGrammarException {
+        this.parseTable = new ParseTable(new Grammar("language.bnf"));
+        parseTable.generate();
+        this.evaluator = new BooleanEvaluator(parseTable);
+    }
+
+    @Test
+    public void evaluatesConstants() throws SyntaxException {
+        assertThat(evaluator.evaluate("1"), is(equalTo(true)));
+        assertThat(evaluator.evaluate("0"), is(equalTo(false)));
+    }
+
+    @Test
+    public void evaluatesTheExamplesOfTheReadme() throws SyntaxException {
+        assertThat(evaluator.evaluate("~1"), is(equalTo(false)));
+        assertThat(evaluator.evaluate("(1)"), is(equalTo(true)));
+        assertThat(evaluator.evaluate("0 ^ 1 ^ 1"), is(equalTo(false)));
+        assertThat(evaluator.evaluate("1 | 0 ^ 1"), is(equalTo(true)));
+    }
+
+    @Test
+    public void andTakesPrecedenceOverOr() throws SyntaxException {
+        assertThat(evaluator.evaluate("1 | 1 ^ 0"), is(equalTo(true)));
+        assertThat(evaluator.evaluate("(1 | 1) ^ 0"), is(equalTo(false)));
+        assertThat(evaluator.evaluate("0 ^ 1 | 1"), is(equalTo(true)));
+    }
+
+    @Test
+    public void evaluatesNestedNegations() throws SyntaxException {
+        assertThat(evaluator.evaluate("~(~(~0))"), is(equalTo(true)));
+        assertThat(evaluator.evaluate("~(1 ^ ~0) | 0"), is(equalTo(false)));
+    }
+
+    @Test(expected = SyntaxException.class)
+    public void throwsSyntaxExceptionOnInvalidInput() throws SyntaxException {
+        evaluator.evaluate("1 | ^ 0");
+    }
+
+    @Test
+    public void evaluatesAfterAFailedParse() throws SyntaxException {
+        try {
+            evaluator.evaluate("(1 | 0");
+        } catch (SyntaxException expected) {
+        }
+        assertThat(evaluator.evaluate("1 ^ 1"), is(equalTo(true)));
+    }
+
+    @Test
+    public void evaluatesWithALoadedTable() throws IOException, SyntaxException {
+        Path file = folder.getRoot().toPath().resolve("language.llt");
+        ParseTableFile.save(parseTable, file);
+        BooleanEvaluator loaded = new BooleanEvaluator(ParseTableFile.load(file));
+
+        assertThat(loaded.evaluate("~(1 | 0) | 1 ^ 1"), is(equalTo(true)));
+    }
+
+    @Test(expected = BNFGrammarException.class)
+    public void rejectsGrammarWithUnknownActions() throws IOException, BNFGrammarException {
+        Path grammar = folder.newFile("xor.bnf").toPath();
+        Files.write(grammar, Arrays.asList("<S> ::= '1'<S>{xor}", "<S> ::= '0'{false}"));
+        ParseTable xor = new ParseTable(new Grammar(grammar.toString()));
+        xor.generate();
+
+        new BooleanEvaluator(xor);
+    }
+
+    @Test
+    public void rejectsGrammarsWhoseActionsDoNotLeaveOneValue() throws IOException {
+        assertThat(rejectionOf("<S> ::= '1'{true}'0'{false}"), containsString("leave 2 values instead of one"));
+        assertThat(rejectionOf("<S> ::= '1'{true}<T>", "<T> ::= '0'{false}", "<T> ::= ''"),
+                   containsString("The productions of <T> leave"));
+        assertThat(rejectionOf("<S> ::= '1'{not}{true}"), containsString("pop 1 values that are not there"));
+        // every ~ pops one more value than the one before
+        assertThat(rejectionOf("<S> ::= '1'{true}<T>", "<T> ::= '~'{and}<T>{true}", "<T> ::= ''"),
+                   containsString("pop more values than there are"));
+    }
+
+    private static String rejectionOf(String... productions) throws IOException {
+        try {
+            ParseTable parseTable = new ParseTable(new Grammar(new StringReader(String.join("\n", productions))));
+            parseTable.generate();
+            new BooleanEvaluator(parseTable);
+        } catch (BNFGrammarException e) {
+            return e.getMessage();
+        }
+        throw new AssertionError("expected a BNFGrammarException");
+    }
+}
@@ -0,0 +1,192 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CachingParserTest {
+    private final ParseTable parseTable;
+    private final ParserMetrics metrics;
+    private final CachingParser parser;
+
+    public CachingParserTest() throws IOException, BNFGrammarException {
+        this.parseTable = new ParseTable(new Grammar("language.bnf"));
+        parseTable.generate();
+        this.metrics = new ParserMetrics(parseTable);
+        this.parser = new CachingParser(new TableDrivenParser(parseTable, metrics),
+                                        new BooleanEvaluator(parseTable), 1 << 20);
+    }
+
+    @Test
+    public void parsesRepeatedInputsOnce() throws SyntaxException {
+        for(int i = 0; i < 10; i++) {
+            assertThat(parser.parse("(1 ^ 0) | ~(0 | 1)"), is(equalTo(true)));
+        }
+
+        assertThat(metrics.snapshot().parses(), is(equalTo(1L)));
+        assertThat(parser.stats().hitCount(), is(equalTo(9L)));
+        assertThat(parser.stats().missCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void sharesEntriesOfInputsThatOnlyDifferInWhitespace() throws SyntaxException {
+        parser.parse("1 | 0");
+        parser.parse("1|0");
+        parser.parse(" 1 |\t0\n");
+
+        assertThat(metrics.snapshot().parses(), is(equalTo(1L)));
+        assertThat(parser.size(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void cachesErrorsOfTheSameInput() {
+        SyntaxException first = parseError("1 | 0 ^");
+        SyntaxException second = parseError("1 | 0 ^");
+
+        assertThat(metrics.snapshot().parses(), is(equalTo(1L)));
+        assertThat(second.getMessage(), is(equalTo(first.getMessage())));
+        assertThat(second.getOffset(), is(equalTo(first.getOffset())));
+        assertThat(second.getExpected(), is(equalTo(first.getExpected())));
+    }
+
+    @Test
+    public void reportsErrorsAtTheOffsetOfTheInput() {
+        SyntaxException spaced = parseError("1 | 0 ^");
+        SyntaxException compact = parseError("1|0^");
+
+        assertThat(metrics.snapshot().parses(), is(equalTo(2L)));
+        assertThat(spaced.getOffset(), is(equalTo(7L)));
+        assertThat(compact.getOffset(), is(equalTo(4L)));
+    }
+
+    @Test
+    public void cachesValues() throws SyntaxException {
+        assertThat(parser.parse("~0 ^ 1"), is(equalTo(true)));
+        assertThat(parser.valueOf("~0 ^ 1"), is(equalTo(1)));
+        assertThat(parser.valueOf("~0^1"), is(equalTo(1)));
+        assertThat(parser.valueOf("1 ^ 0"), is(equalTo(0)));
+        assertThat(parser.valueOf("1^0"), is(equalTo(0)));
+
+        assertThat(parser.stats().hitCount(), is(equalTo(3L)));
+        assertThat(parser.size(), is(equalTo(2L)));
+    }
+
+    @Test
+    public void keepsWhitespaceOfGrammarsWithIdentifiers() throws IOException, BNFGrammarException, SyntaxException {
+        ParseTable table = new ParseTable(new Grammar(new StringReader("<S> ::= [identifier]<T>\n"
+                                                                            + "<T> ::= [identifier]\n"
+                                                                            + "<T> ::= ''")));
+        table.generate();
+        CachingParser identifiers = new CachingParser(new TableDrivenParser(table), 1 << 20);
+
+        assertThat(identifiers.parse("a b"), is(equalTo(true)));
+        assertThat(identifiers.parse("ab"), is(equalTo(true)));
+        assertThat(identifiers.size(), is(equalTo(2L)));
+        try {
+            identifiers.parse("a b c");
+        } catch (SyntaxException expected) {
+            return;
+        }
+        throw new AssertionError("expected a SyntaxException");
+    }
+
+    @Test
+    public void doesNotCacheErrorsOfLimits() throws SyntaxException {
+        CachingParser limited = new CachingParser(new TableDrivenParser(parseTable, new ParserLimits(64, 8, 100)),
+                                                  1 << 20);
+        assertThat(limited.parse("1|0"), is(equalTo(true)));
+        for(int i = 0; i < 2; i++) {
+            try {
+                limited.parse("1 | 0 | 1");
+                throw new AssertionError("expected a ParseLimitException");
+            } catch (ParseLimitException e) {
+                assertThat(e.getLimit(), is(equalTo(ParseLimitException.Limit.INPUT_LENGTH)));
+            }
+        }
+        assertThat(limited.size(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void evaluatesOnlyInputsTheParserAccepts() throws BNFGrammarException {
+        String nested = "((((((((((1))))))))))";
+        CachingParser limited = new CachingParser(new TableDrivenParser(parseTable, new ParserLimits(12, 1000, 1000)),
+                                                  new BooleanEvaluator(parseTable), 1 << 20);
+        for(int i = 0; i < 2; i++) {
+            try {
+                limited.valueOf(nested);
+                throw new AssertionError("expected a ParseLimitException");
+            } catch (ParseLimitException e) {
+                assertThat(e.getLimit(), is(equalTo(ParseLimitException.Limit.STACK_DEPTH)));
+            } catch (SyntaxException e) {
+                throw new AssertionError(e);
+            }
+        }
+        try {
+            limited.parse(nested);
+            throw new AssertionError("expected a ParseLimitException");
+        } catch (SyntaxException e) {
+            assertThat(e, is(instanceOf(ParseLimitException.class)));
+        }
+        assertThat(limited.size(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void evictsEntriesPastTheMaximumWeight() throws SyntaxException {
+        CachingParser small = new CachingParser(new TableDrivenParser(parseTable),
+                                                10 * CachingParser.ENTRY_OVERHEAD);
+        StringBuilder input = new StringBuilder("1");
+        for(int i = 0; i < 100; i++) {
+            small.parse(input.toString());
+            input.append("|1");
+        }
+
+        assertThat(small.size(), is(lessThan(10L)));
+        assertThat(small.stats().evictionCount(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void answersManyThreads() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> values = new ArrayList<>();
+            for(int i = 0; i < 1000; i++) {
+                String input = i % 2 == 0 ? "~(1 ^ 0)" : "0 | 0";
+                values.add(executor.submit(() -> {
+                    try {
+                        return parser.valueOf(input);
+                    } catch (SyntaxException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            for(int i = 0; i < values.size(); i++) {
+                assertThat(values.get(i).get(), is(equalTo(i % 2 == 0 ? 1 : 0)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(parser.size(), is(equalTo(2L)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void needsAnEvaluatorForValues() throws SyntaxException {
+        new CachingParser(new TableDrivenParser(parseTable), 1 << 20).valueOf("1");
+    }
+
+    private SyntaxException parseError(String input) {
+        try {
+            parser.parse(input);
+        } catch (SyntaxException e) {
+            return e;
+        }
+        throw new AssertionError("expected a SyntaxException for " + input);
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CompressedTableTest {
+
+    @Test
+    public void givesTheCellsOfTheDenseTable() {
+        Random random = new Random(3);
+        for(int i = 0; i < 50; i++) {
+            int rows = 1 + random.nextInt(40);
+            int columns = 1 + random.nextInt(70);
+            int[] cells = new int[rows * columns];
+            for(int cell = 0; cell < cells.length; cell++) {
+                int kind = random.nextInt(10);
+                // mostly empty, with one production dominating each row
+                cells[cell] = kind < 6 ? ParseTable.NO_RULE : kind < 9 ? cell / columns : random.nextInt(100);
+            }
+            CompressedTable compressed = new CompressedTable(cells, rows, columns);
+            for(int row = 0; row < rows; row++) {
+                for(int column = 0; column < columns; column++) {
+                    assertThat(compressed.get(row, column), is(equalTo(cells[row * columns + column])));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void compressesLanguageTableToTheSameRules() throws IOException, BNFGrammarException {
+        Grammar grammar = new Grammar("language.bnf");
+        ParseTable dense = new ParseTable(grammar);
+        dense.generate(Integer.MAX_VALUE);
+        ParseTable compressed = new ParseTable(grammar);
+        compressed.generate(0);
+
+        assertThat(dense.isCompressed(), is(equalTo(false)));
+        assertThat(compressed.isCompressed(), is(equalTo(true)));
+        SymbolTable symbols = grammar.symbols();
+        for(int nonTerminal = symbols.terminalCount(); nonTerminal < symbols.size(); nonTerminal++) {
+            for(int terminal = 0; terminal < symbols.terminalCount(); terminal++) {
+                assertThat(compressed.ruleToApply(nonTerminal, terminal),
+                           is(equalTo(dense.ruleToApply(nonTerminal, terminal))));
+            }
+            assertThat(compressed.expectedTerminals(nonTerminal), is(equalTo(dense.expectedTerminals(nonTerminal))));
+        }
+    }
+
+    @Test
+    public void compressesLargeTablesWhenGenerated() throws IOException, BNFGrammarException, SyntaxException {
+        Grammar grammar = largeGrammar(400, 60);
+        ParseTable dense = new ParseTable(grammar);
+        dense.generate(Integer.MAX_VALUE);
+        ParseTable compressed = new ParseTable(grammar);
+        compressed.generate();
+
+        assertThat(compressed.isCompressed(), is(equalTo(true)));
+        assertThat(compressed.tableSizeInBytes(), is(lessThan(dense.tableSizeInBytes() / 4)));
+
+        TableDrivenParser denseParser = new TableDrivenParser(dense);
+        TableDrivenParser compressedParser = new TableDrivenParser(compressed);
+        assertThat(compressedParser.parse("a0 b1 c2 ;"), is(equalTo(true)));
+        for(String input : new String[] {"a0 b1 ;", "a0 a1 c2 ;", "b399 b0"}) {
+            assertThat(message(compressedParser, input), is(equalTo(message(denseParser, input))));
+        }
+    }
+
+    /**
+     * &lt;Ni&gt; ::= 'ai'&lt;Ni+1&gt; | 'bi'&lt;Ni+1&gt; | 'ci'&lt;Ni+1&gt; | '', over
+     * the terminals a0 to c(terminals - 1), so most cells of a row are the empty production.
+     */
+    private static Grammar largeGrammar(int nonTerminals, int terminals) throws IOException, BNFGrammarException {
+        StringBuilder text = new StringBuilder("<S> ::= <N0>';'\n");
+        for(int i = 0; i < nonTerminals; i++) {
+            String next = i + 1 < nonTerminals ? "<N" + (i + 1) + ">" : "";
+            for(char c = 'a'; c <= 'c'; c++) {
+                text.append("<N").append(i).append("> ::= '").append(c).append(i % terminals).append("'")
+                    .append(next).append('\n');
+            }
+            text.append("<N").append(i).append("> ::= ''\n");
+        }
+        return new Grammar(new StringReader(text.toString()));
+    }
+
+    private static String message(TableDrivenParser parser, String input) {
+        try {
+            parser.parse(input);
+            return "valid";
+        } catch (SyntaxException e) {
+            return e.getMessage() + " " + e.getExpected();
+        }
+    }
+}
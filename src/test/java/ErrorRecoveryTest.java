@@ -0,0 +1,79 @@
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ErrorRecoveryTest {
+    private ParseTable parseTable;
+    private TableDrivenParser parser;
+
+    public ErrorRecoveryTest() throws IOException, BNFGrammarException {
+        this.parseTable = new ParseTable(new Grammar("language.bnf"));
+        parseTable.generate();
+        this.parser = new TableDrivenParser(parseTable);
+    }
+
+    @Test
+    public void validInputHasNoErrors() {
+        ParseResult result = parser.parseWithRecovery("~(1 | 0) ^ 1");
+        assertThat(result.isValid(), is(equalTo(true)));
+        assertThat(result.errors(), is(empty()));
+    }
+
+    @Test
+    public void reportsTheSameFirstErrorAsParse() {
+        String input = "1 | (0 ^ ) | 1";
+        SyntaxError error = parser.parseWithRecovery(input).errors().get(0);
+        try {
+            parser.parse(input);
+        } catch (SyntaxException e) {
+            assertThat(error.offset(), is(equalTo(e.getOffset())));
+            assertThat(error.invalidSymbol(), is(equalTo(e.getInvalidSymbol())));
+            assertThat(error.expected(), is(equalTo(e.getExpected())));
+            assertThat(error.message(), is(equalTo(e.getMessage())));
+        }
+    }
+
+    @Test
+    public void reportsEveryErrorInOnePass() {
+        ParseResult result = parser.parseWithRecovery("1 + 0 | (0 ^ ) | 1 1");
+
+        assertThat(result.errors(), hasSize(3));
+        assertThat(result.errors().get(0).offset(), is(equalTo(2L)));
+        assertThat(result.errors().get(0).invalidSymbol(), is(equalTo("+")));
+        assertThat(result.errors().get(1).offset(), is(equalTo(13L)));
+        assertThat(result.errors().get(1).invalidSymbol(), is(equalTo(")")));
+        assertThat(result.errors().get(1).expected(), containsInAnyOrder("(", "0", "1", "~"));
+        assertThat(result.errors().get(2).offset(), is(equalTo(19L)));
+    }
+
+    @Test
+    public void reportsMissingInputAtTheEnd() {
+        ParseResult result = parser.parseWithRecovery("(1 | ");
+
+        assertThat(result.errors(), hasSize(1));
+        assertThat(result.errors().get(0).invalidSymbol(), is(equalTo(Grammar.EOF)));
+        assertThat(result.errors().get(0).offset(), is(equalTo(5L)));
+    }
+
+    @Test
+    public void reportsOneErrorForARunOfBadTokens() {
+        ParseResult result = parser.parseWithRecovery("1 ^ ))) ^ 1");
+        assertThat(result.errors(), hasSize(1));
+    }
+
+    @Test
+    public void recoversWithALoadedTable() throws IOException, BNFGrammarException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ParseTableFile.write(parseTable, output);
+        TableDrivenParser loaded = new TableDrivenParser(ParseTableFile.read(ByteBuffer.wrap(output.toByteArray())));
+
+        String input = "1 + 0 | (0 ^ ) | 1 1";
+        assertThat(loaded.parseWithRecovery(input).toString(),
+                    is(equalTo(parser.parseWithRecovery(input).toString())));
+    }
+}
@@ -0,0 +1,152 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class GrammarAnalyzerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void languageGrammarHasNoProblems() throws IOException, BNFGrammarException {
+        assertThat(new GrammarAnalyzer(new Grammar("language.bnf")).analyze(), is(empty()));
+    }
+
+    @Test
+    public void reportsEveryConflictCell() throws IOException, BNFGrammarException {
+        GrammarAnalyzer analyzer = analyzerOf("<S> ::= '1'<A>", "<S> ::= '1'<B>", "<S> ::= <A>",
+                                                "<A> ::= '2'", "<A> ::= '1'", "<B> ::= '3'");
+
+        List<GrammarDiagnostic> conflicts = analyzer.conflicts();
+        assertThat(conflicts, hasSize(1));
+        assertThat(conflicts.get(0).symbols(), contains("S", "1"));
+        assertThat(conflicts.get(0).message(), containsString("'1'<A>"));
+        assertThat(conflicts.get(0).message(), containsString("'1'<B>"));
+        assertThat(conflicts.get(0).message(), containsString("<S> ::= <A>"));
+    }
+
+    @Test
+    public void warnsOfConflictsTheLookaheadDecides() throws IOException, BNFGrammarException {
+        List<GrammarDiagnostic> conflicts = analyzerOf("<S> ::= '1'<A>", "<S> ::= '1'<B>", "<S> ::= <A>",
+                                                        "<A> ::= '2'", "<A> ::= '1'", "<B> ::= '3'").conflicts();
+        assertThat(conflicts.get(0).kind(), is(equalTo(GrammarDiagnostic.Kind.LOOKAHEAD_CONFLICT)));
+        assertThat(conflicts.get(0).kind().isError(), is(equalTo(false)));
+
+        // decided by what is below <X>, however deep it is nested
+        conflicts = analyzerOf("<S> ::= '('<S>')'", "<S> ::= 'p'<X>'c'", "<S> ::= 'q'<X>'d'",
+                                "<X> ::= 'a'", "<X> ::= 'a''c'").conflicts();
+        assertThat(conflicts, hasSize(1));
+        assertThat(conflicts.get(0).kind(), is(equalTo(GrammarDiagnostic.Kind.LOOKAHEAD_CONFLICT)));
+    }
+
+    @Test
+    public void reportsConflictsTheLookaheadDoesNotDecide() throws IOException, BNFGrammarException {
+        String[][] grammars = {
+                {"<S> ::= <A>", "<S> ::= <B>", "<A> ::= 'a'", "<B> ::= 'a'"},
+                {"<S> ::= 'a''a''a''a''a''a''a''a''b'", "<S> ::= 'a''a''a''a''a''a''a''a''c'"},
+                {"<S> ::= <E>", "<E> ::= <E>'+'[number]", "<E> ::= [number]"},
+                {"<S> ::= <A>'x'", "<S> ::= <A>'y'", "<A> ::= '('<A>')'", "<A> ::= ''"}};
+        for(String[] grammar : grammars) {
+            List<GrammarDiagnostic> conflicts = analyzerOf(grammar).conflicts();
+            assertThat(Arrays.toString(grammar), conflicts, hasSize(1));
+            assertThat(Arrays.toString(grammar), conflicts.get(0).kind(),
+                       is(equalTo(GrammarDiagnostic.Kind.CONFLICT)));
+        }
+    }
+
+    @Test
+    public void findsDirectAndIndirectLeftRecursion() throws IOException, BNFGrammarException {
+        GrammarAnalyzer analyzer = analyzerOf("<S> ::= <E><A>", "<E> ::= <E>'+'<T>", "<E> ::= <T>", "<T> ::= '1'",
+                                                "<A> ::= <B>'a'", "<B> ::= <A>'b'", "<B> ::= 'c'");
+
+        List<GrammarDiagnostic> recursion = analyzer.leftRecursion();
+        assertThat(recursion, hasSize(2));
+        assertThat(recursion.get(0).symbols(), contains("E"));
+        assertThat(recursion.get(1).symbols(), containsInAnyOrder("A", "B"));
+    }
+
+    @Test
+    public void findsLeftRecursionBehindNullableSymbols() throws IOException, BNFGrammarException {
+        GrammarAnalyzer analyzer = analyzerOf("<S> ::= <N><S>'x'", "<S> ::= 'y'", "<N> ::= ''");
+        assertThat(analyzer.leftRecursion(), hasSize(1));
+    }
+
+    @Test
+    public void findsUnreachableUnproductiveAndUndefinedNonTerminals() throws IOException, BNFGrammarException {
+        GrammarAnalyzer analyzer = analyzerOf("<S> ::= '1'", "<S> ::= <L>", "<L> ::= <L>'x'",
+                                                "<S> ::= <X>'2'", "<U> ::= '3'");
+
+        assertThat(analyzer.unreachable().get(0).symbols(), contains("U"));
+        assertThat(analyzer.unproductive().get(0).symbols(), contains("L"));
+        assertThat(analyzer.unproductive(), hasSize(1));
+        assertThat(analyzer.undefined().get(0).symbols(), contains("X"));
+        assertThat(analyzer.undefined().get(0).message(), containsString("<S> ::= <X>'2'"));
+        assertThat(analyzer.unreachable().get(0).kind().isError(), is(equalTo(false)));
+    }
+
+    @Test
+    public void eliminatesLeftRecursion() throws IOException, BNFGrammarException, SyntaxException {
+        GrammarAnalyzer analyzer = analyzerOf("<S> ::= <E>", "<E> ::= <E>'+'<T>", "<E> ::= <T>",
+                                                "<T> ::= <T>'*'<F>", "<T> ::= <F>", "<F> ::= '('<E>')'", "<F> ::= '1'");
+
+        Grammar rewritten = grammarOf(analyzer.eliminateLeftRecursion());
+        assertThat(new GrammarAnalyzer(rewritten).analyze(), is(empty()));
+        assertThat(new TableDrivenParser(rewritten).parse("1 + 1 * (1 + 1) * 1"), is(equalTo(true)));
+    }
+
+    @Test
+    public void eliminatesIndirectLeftRecursion() throws IOException, BNFGrammarException {
+        GrammarAnalyzer analyzer = analyzerOf("<A> ::= <B>'a'", "<A> ::= 'x'", "<B> ::= <A>'b'", "<B> ::= 'c'");
+
+        Grammar rewritten = grammarOf(analyzer.eliminateLeftRecursion());
+        assertThat(new GrammarAnalyzer(rewritten).leftRecursion(), is(empty()));
+        assertThat(rewritten.getRules().get("B"), contains("'x''b'<Bprime>", "'c'<Bprime>"));
+        assertThat(rewritten.getRules().get("Bprime"), contains("'a''b'<Bprime>", ""));
+    }
+
+    @Test
+    public void leftFactorsCommonPrefixes() throws IOException, BNFGrammarException, SyntaxException {
+        GrammarAnalyzer analyzer = analyzerOf("<S> ::= 'if'<C>'then'<S>", "<S> ::= 'if'<C>'then'<S>'else'<S>",
+                                                "<S> ::= 'go'", "<C> ::= 'c'");
+
+        Grammar rewritten = grammarOf(analyzer.leftFactor());
+        assertThat(rewritten.getRules().get("S"), hasItem("'if'<C>'then'<S><Sprime>"));
+        assertThat(rewritten.getRules().get("Sprime"), containsInAnyOrder("", "'else'<S>"));
+        // the dangling else is still ambiguous, but no longer a common prefix conflict
+        assertThat(new GrammarAnalyzer(rewritten).conflicts(), hasSize(1));
+    }
+
+    @Test
+    public void analysesLongChainsWithoutRecursion() throws IOException, BNFGrammarException {
+        List<String> lines = new ArrayList<>();
+        for(int i = 0; i < 5000; i++) {
+            lines.add("<N" + i + "> ::= <N" + (i + 1) + ">'a'");
+            lines.add("<N" + i + "> ::= 'b'");
+        }
+        lines.add("<N5000> ::= <N0>'c'");
+
+        List<GrammarDiagnostic> recursion = new GrammarAnalyzer(grammarOf(lines)).leftRecursion();
+        assertThat(recursion, hasSize(1));
+        assertThat(recursion.get(0).symbols(), hasSize(5001));
+    }
+
+    private GrammarAnalyzer analyzerOf(String... productions) throws IOException, BNFGrammarException {
+        return new GrammarAnalyzer(grammarOf(Arrays.asList(productions)));
+    }
+
+    private Grammar grammarOf(List<String> productions) throws IOException, BNFGrammarException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), productions);
+        return new Grammar(file.getPath());
+    }
+}
@@ -1,16 +1,26 @@
 import com.google.common.collect.Multimap;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertEquals;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 public class GrammarTest {
     private Grammar ll1grammar;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     public GrammarTest() throws IOException, BNFGrammarException {
         ll1grammar = new Grammar("language.bnf");
     }
@@ -102,4 +112,108 @@ public class GrammarTest {
         assertThat(symbols.size(), is(equalTo(3)));
         assertThat(symbols, hasItems("+", "B", "C"));
     }
+
+    @Test
+    public void keepsActionsOutOfTheSymbols() throws BNFGrammarException {
+        assertThat(Grammar.fromBNF("'|'<B>{or}<Aprime>"), contains("|", "B", "Aprime"));
+
+        // production 2 is <Aprime> ::= '|'<B>{or}<Aprime>
+        assertThat(ll1grammar.actions(), hasItem("or"));
+        assertThat(ll1grammar.productionSymbols(2).length, is(equalTo(3)));
+        assertThat(ll1grammar.productionSteps(2)[2],
+                    is(equalTo(ll1grammar.symbols().size() + ll1grammar.actions().indexOf("or"))));
+    }
+
+    @Test
+    public void computesFirstSetsOfLeftRecursiveGrammar() throws IOException, BNFGrammarException {
+        Grammar grammar = grammarOf("<E> ::= <E>'+'<T>", "<E> ::= <T>", "<T> ::= '1'");
+        assertThat(grammar.firstOf("E"), is(equalTo(set("1"))));
+    }
+
+    @Test
+    public void firstSetsOfBodyLookPastNullableSymbols() throws IOException, BNFGrammarException {
+        Grammar grammar = grammarOf("<S> ::= <X>'b'", "<X> ::= 'a'", "<X> ::= ''");
+        assertThat(grammar.firstOf("S"), is(equalTo(set("a", "b"))));
+        assertThat(grammar.firstOf("X"), is(equalTo(set("a", Grammar.EPSILON))));
+    }
+
+    @Test
+    public void followSetsIncludeFollowOfHeadThroughNullableSuffix() throws IOException, BNFGrammarException {
+        Grammar grammar = grammarOf("<S> ::= <X><Y>'c'", "<X> ::= 'a'", "<Y> ::= 'b'", "<Y> ::= ''");
+        assertThat(grammar.followSetOf("X"), is(equalTo(set("b", "c"))));
+    }
+
+    @Test
+    public void readsCommentsBlankLinesAndAlternatives() throws IOException, BNFGrammarException {
+        Grammar grammar = grammarFrom(String.join("\n",
+                "# boolean expressions",
+                "",
+                "<E> ::= <T> '||' <E> | <T>   # or",
+                "<T> ::= 'true'",
+                "      | 'false'",
+                "",
+                "      | '(' <E> ')'",
+                "<T> ::= 'x|y' | ''"));
+
+        assertThat(grammar.getStartSymbol(), is(equalTo("E")));
+        assertThat(grammar.getRules().get("E"), contains("<T> '||' <E>", "<T>"));
+        assertThat(grammar.getRules().get("T"), contains("'true'", "'false'", "'(' <E> ')'", "'x|y'", ""));
+        assertThat(grammar.terminals(), containsInAnyOrder("||", "true", "false", "(", ")", "x|y", Grammar.EOF));
+    }
+
+    @Test
+    public void groupsProductionsByHead() throws IOException, BNFGrammarException {
+        Grammar grammar = grammarFrom("<S> ::= <A>'b'\n<A> ::= 'a'\n<S> ::= 'c'");
+
+        assertThat(grammar.productionBody(1), is(equalTo("'c'")));
+        assertThat(grammar.symbols().nameOf(grammar.productionHead(1)), is(equalTo("S")));
+        assertThat(grammar.symbols().nameOf(grammar.productionHead(2)), is(equalTo("A")));
+    }
+
+    @Test
+    public void reportsLineAndColumnOfErrors() throws IOException {
+        assertErrorAt("<S> ::= 'a'\n<A> ::= 'b' 'c\n", "Line 2, column 13");
+        assertErrorAt("<S> ::= 'a'\n\n<A> ::= <B\n", "Line 3, column 9");
+        assertErrorAt("<S> ::= 'a' |\n", "Line 1, column 14");
+        assertErrorAt("# comment\nS ::= 'a'", "Line 2, column 1");
+        assertErrorAt("<S> = 'a'", "Line 1, column 5");
+        assertErrorAt("<S> ::= 'a' ''", "Line 1, column 15");
+    }
+
+    @Test
+    public void loadsLargeGrammars() throws IOException, BNFGrammarException {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 20000; i++) {
+            text.append("<N").append(i).append("> ::= 'a").append(i).append("' <N").append(i + 1).append("> | ''\n");
+        }
+        Grammar grammar = grammarFrom(text.toString());
+
+        assertThat(grammar.numberOfProductions(), is(equalTo(40000)));
+        assertThat(grammar.nonTerminals(), hasSize(20000));
+        assertThat(grammar.symbols().nonTerminalCount(), is(equalTo(20001)));
+    }
+
+    private void assertErrorAt(String text, String position) throws IOException {
+        try {
+            grammarFrom(text);
+        } catch (BNFGrammarException e) {
+            assertThat(e.getMessage(), startsWith(position));
+            return;
+        }
+        throw new AssertionError("expected a BNFGrammarException for " + text);
+    }
+
+    private static Grammar grammarFrom(String text) throws IOException, BNFGrammarException {
+        return new Grammar(new StringReader(text));
+    }
+
+    private Grammar grammarOf(String... productions) throws IOException, BNFGrammarException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(productions));
+        return new Grammar(file.getPath());
+    }
+
+    private static Set<String> set(String... symbols) {
+        return new HashSet<>(Arrays.asList(symbols));
+    }
 }
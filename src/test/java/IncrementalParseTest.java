@@ -0,0 +1,106 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IncrementalParseTest {
+    private TableDrivenParser parser;
+
+    public IncrementalParseTest() throws IOException, BNFGrammarException {
+        this.parser = new TableDrivenParser(new Grammar("language.bnf"));
+    }
+
+    @Test
+    public void snapshotTellsWhetherInputIsValid() {
+        assertThat(parser.parseIncremental("1 | ~0").isValid(), is(equalTo(true)));
+
+        ParseSnapshot invalid = parser.parseIncremental("1 | ~");
+        assertThat(invalid.isValid(), is(equalTo(false)));
+        assertThat(invalid.error().getOffset(), is(equalTo(5L)));
+    }
+
+    @Test
+    public void smallEditInALongInputReadsFewTerminals() {
+        String input = longInput(5000);
+        ParseSnapshot snapshot = parser.parseIncremental(input);
+        assertThat(snapshot.isValid(), is(equalTo(true)));
+
+        // replace a 0 in the middle by a 1
+        int start = input.indexOf('0', input.length() / 2);
+        String edited = input.substring(0, start) + "1" + input.substring(start + 1);
+        ParseSnapshot reparsed = parser.reparse(snapshot, edited, start, start + 1, start + 1);
+
+        assertThat(reparsed.isValid(), is(equalTo(true)));
+        assertThat(reparsed.terminalsRead(), is(lessThan(100)));
+        assertThat(reparsed.length(), is(equalTo(edited.length())));
+    }
+
+    @Test
+    public void reparseSharesTheCheckpointsAfterTheEdit() {
+        String input = longInput(1000);
+        ParseSnapshot snapshot = parser.parseIncremental(input);
+
+        // insert a term in the middle
+        int start = input.indexOf('(', input.length() / 2);
+        String edited = input.substring(0, start) + "1 | " + input.substring(start);
+        ParseSnapshot reparsed = parser.reparse(snapshot, edited, start, start, start + 4);
+
+        int last = snapshot.checkpoints() - 1;
+        int reparsedLast = reparsed.checkpoints() - 1;
+        assertThat(reparsed.position(reparsedLast), is(equalTo(snapshot.position(last) + 4)));
+        assertThat(reparsed.stack(reparsedLast), is(sameInstance(snapshot.stack(last))));
+        assertThat(reparsed.position(0), is(equalTo(0)));
+        assertThat(reparsed.checkpointsBefore(start), is(equalTo(snapshot.checkpointsBefore(start))));
+        for(int checkpoint = 1; checkpoint < reparsed.checkpoints(); checkpoint++) {
+            assertThat(reparsed.position(checkpoint), is(greaterThan(reparsed.position(checkpoint - 1))));
+        }
+    }
+
+    @Test
+    public void editsThatBreakAndFixTheInput() {
+        String input = longInput(500);
+        ParseSnapshot snapshot = parser.parseIncremental(input);
+
+        int start = input.indexOf(')', input.length() / 2);
+        String broken = input.substring(0, start) + input.substring(start + 1);
+        snapshot = parser.reparse(snapshot, broken, start, start + 1, start);
+        assertThat(snapshot.isValid(), is(equalTo(false)));
+
+        snapshot = parser.reparse(snapshot, input, start, start, start + 1);
+        assertThat(snapshot.isValid(), is(equalTo(true)));
+    }
+
+    @Test
+    public void reparseAgreesWithAFullParse() {
+        Random random = new Random(7);
+        String[] insertions = {"1", " ", "|", "^", "~", "(", ")", "0 | ", " ^ 1", "(1)"};
+        String input = longInput(200);
+        ParseSnapshot snapshot = parser.parseIncremental(input);
+
+        for(int edit = 0; edit < 500; edit++) {
+            int start = random.nextInt(input.length() + 1);
+            int oldEnd = Math.min(input.length(), start + random.nextInt(4));
+            String insertion = insertions[random.nextInt(insertions.length)];
+            String edited = input.substring(0, start) + insertion + input.substring(oldEnd);
+
+            snapshot = parser.reparse(snapshot, edited, start, oldEnd, start + insertion.length());
+            ParseSnapshot full = parser.parseIncremental(edited);
+            assertThat(edited, snapshot.isValid(), is(equalTo(full.isValid())));
+            if(!full.isValid()) {
+                assertThat(edited, snapshot.error().getOffset(), is(equalTo(full.error().getOffset())));
+            }
+            input = edited;
+        }
+    }
+
+    private static String longInput(int terms) {
+        StringBuilder input = new StringBuilder();
+        for(int i = 0; i < terms; i++) {
+            input.append(i % 3 == 0 ? "~(1 ^ 0)" : "(0 | 1)").append(i % 2 == 0 ? " | " : " ^ ");
+        }
+        return input.append('1').toString();
+    }
+}
@@ -0,0 +1,139 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class LexerTest {
+    private static final String[] KEYWORD_GRAMMAR = {
+            "<S> ::= <E>",
+            "<E> ::= 'not'<E>",
+            "<E> ::= '('<E>')'",
+            "<E> ::= 'true'<T>",
+            "<E> ::= [identifier]<T>",
+            "<E> ::= [number]<T>",
+            "<T> ::= '=='<E>",
+            "<T> ::= '='<E>",
+            "<T> ::= ''"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Grammar grammar;
+    private Lexer lexer;
+
+    @Test
+    public void readsMultiCharacterTerminalsFromGrammar() throws IOException, BNFGrammarException {
+        load(KEYWORD_GRAMMAR);
+        assertThat(grammar.terminals(), hasItems("not", "true", "==", "=", Lexer.IDENTIFIER, Lexer.NUMBER));
+    }
+
+    @Test
+    public void prefersTheLongestLiteral() throws IOException, BNFGrammarException {
+        load(KEYWORD_GRAMMAR);
+        assertMatch("==1", "==", 2);
+        assertMatch("=1", "=", 1);
+    }
+
+    @Test
+    public void keywordWinsOverIdentifierOfTheSameLength() throws IOException, BNFGrammarException {
+        load(KEYWORD_GRAMMAR);
+        assertMatch("not x", "not", 3);
+    }
+
+    @Test
+    public void longerIdentifierWinsOverKeywordPrefix() throws IOException, BNFGrammarException {
+        load(KEYWORD_GRAMMAR);
+        assertMatch("nothing", Lexer.IDENTIFIER, 7);
+    }
+
+    @Test
+    public void matchesNumbersWithFractions() throws IOException, BNFGrammarException {
+        load(KEYWORD_GRAMMAR);
+        assertMatch("12.50)", Lexer.NUMBER, 5);
+    }
+
+    @Test
+    public void reportsNoMatchForUnknownCharacters() throws IOException, BNFGrammarException {
+        load(KEYWORD_GRAMMAR);
+        assertThat(lexer.match("+", 0, 1), is(equalTo(Lexer.NO_MATCH)));
+    }
+
+    @Test
+    public void parsesInputWithKeywordsIdentifiersAndNumbers() throws IOException, BNFGrammarException, SyntaxException {
+        load(KEYWORD_GRAMMAR);
+        TableDrivenParser parser = new TableDrivenParser(grammar);
+        assertThat(parser.parse("not count == (12 = true)"), is(equalTo(true)));
+    }
+
+    @Test(expected = SyntaxException.class)
+    public void rejectsTwoIdentifiersInARow() throws IOException, BNFGrammarException, SyntaxException {
+        load(KEYWORD_GRAMMAR);
+        new TableDrivenParser(grammar).parse("count total");
+    }
+
+    @Test
+    public void streamsIdentifiersLongerThanTheReadBuffer() throws IOException, BNFGrammarException, SyntaxException {
+        load(KEYWORD_GRAMMAR);
+        char[] name = new char[20000];
+        Arrays.fill(name, 'x');
+        String input = "a == " + new String(name) + " = 1";
+        assertThat(new TableDrivenParser(grammar).parse(new StringReader(input)), is(equalTo(true)));
+    }
+
+    @Test
+    public void streamsNumbersSplitBetweenReads() throws IOException, BNFGrammarException, SyntaxException {
+        load(KEYWORD_GRAMMAR);
+        TableDrivenParser parser = new TableDrivenParser(grammar);
+        for(String input : new String[] {"123.5 == x", "12345.5 == x", "x = 1.25"}) {
+            assertThat(input, parser.parse(new OneCharReader(input)), is(equalTo(true)));
+        }
+    }
+
+    private void assertMatch(String input, String terminal, int length) {
+        long match = lexer.match(input, 0, input.length());
+        assertThat(grammar.symbols().nameOf(Lexer.terminalOf(match)), is(equalTo(terminal)));
+        assertThat(Lexer.lengthOf(match), is(equalTo(length)));
+    }
+
+    private void load(String... productions) throws IOException, BNFGrammarException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(productions));
+        grammar = new Grammar(file.getPath());
+        lexer = new Lexer(grammar.symbols());
+    }
+
+    /**
+     * Reads one character at a time, as a slow stream may.
+     */
+    private static class OneCharReader extends Reader {
+        private final String input;
+        private int position;
+
+        OneCharReader(String input) {
+            this.input = input;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if(position == input.length()) {
+                return -1;
+            }
+            buffer[offset] = input.charAt(position++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
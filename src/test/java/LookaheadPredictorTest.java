@@ -0,0 +1,278 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class LookaheadPredictorTest {
+
+    @Test
+    public void leavesLL1GrammarsToTheTable() throws IOException, BNFGrammarException {
+        ParseTable parseTable = new ParseTable(new Grammar("language.bnf"));
+        parseTable.generate();
+        assertThat(parseTable.predictor(), is(nullValue()));
+    }
+
+    @Test
+    public void decidesWithTheSecondTerminal() throws IOException, BNFGrammarException, SyntaxException {
+        TableDrivenParser parser = parserOf("<S> ::= <A>",
+                                            "<A> ::= [identifier]'='[number]",
+                                            "<A> ::= [identifier]'('')'");
+
+        assertThat(parser.parse("x = 1"), is(equalTo(true)));
+        assertThat(parser.parse("f ( )"), is(equalTo(true)));
+        assertThat(parser.parse("x = 2"), is(equalTo(true)));
+        assertThat(messageOf(parser, "x ) 1"), containsString("at offset 2"));
+    }
+
+    @Test
+    public void decidesWithManyTerminals() throws IOException, BNFGrammarException, SyntaxException {
+        TableDrivenParser parser = parserOf("<S> ::= <L>",
+                                            "<L> ::= 'a''a''a''a''b'",
+                                            "<L> ::= 'a''a''a''a''c'",
+                                            "<L> ::= 'a''a''d'");
+
+        assertThat(parser.parse("aaaab"), is(equalTo(true)));
+        assertThat(parser.parse("aaaac"), is(equalTo(true)));
+        assertThat(parser.parse("aad"), is(equalTo(true)));
+        assertThat(messageOf(parser, "aaaad"), containsString("at offset 4"));
+    }
+
+    @Test
+    public void usesTheStackWhenTheDecisionDependsOnIt() throws IOException, BNFGrammarException, SyntaxException {
+        TableDrivenParser parser = parserOf("<S> ::= 'p'<X>'c'",
+                                            "<S> ::= 'q'<X>'d'",
+                                            "<X> ::= 'a'",
+                                            "<X> ::= 'a''c'");
+
+        assertThat(parser.parse("p a c"), is(equalTo(true)));
+        assertThat(parser.parse("p a c c"), is(equalTo(true)));
+        assertThat(parser.parse("q a d"), is(equalTo(true)));
+        assertThat(parser.parse("q a c d"), is(equalTo(true)));
+    }
+
+    @Test
+    public void decidesThroughNestedConflicts() throws IOException, BNFGrammarException, SyntaxException {
+        TableDrivenParser parser = parserOf("<S> ::= <A>';'",
+                                            "<A> ::= <B>'x'",
+                                            "<A> ::= <B>'y'",
+                                            "<B> ::= 'b'",
+                                            "<B> ::= 'b''b'");
+
+        for(String input : new String[] {"b x ;", "b b x ;", "b y ;", "b b y ;"}) {
+            assertThat(input, parser.parse(input), is(equalTo(true)));
+        }
+    }
+
+    @Test
+    public void givesUpOnLeftRecursion() throws IOException, BNFGrammarException, SyntaxException {
+        TableDrivenParser parser = parserOf("<S> ::= <E>",
+                                            "<E> ::= <E>'+'[number]",
+                                            "<E> ::= [number]");
+
+        // the production of the table, the last one, as without lookahead
+        assertThat(parser.parse("1"), is(equalTo(true)));
+        assertThat(messageOf(parser, "1 + 2"), containsString("at offset 2"));
+    }
+
+    @Test
+    public void sharesDecisionsBetweenThreads() throws IOException, BNFGrammarException, InterruptedException,
+                                                       ExecutionException {
+        TableDrivenParser parser = parserOf("<S> ::= <A><S>",
+                                            "<S> ::= ''",
+                                            "<A> ::= [identifier]'='[number]';'",
+                                            "<A> ::= [identifier]'('')'';'");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> parses = new ArrayList<>();
+            for(int i = 0; i < 400; i++) {
+                String input = i % 2 == 0 ? "x = 1; f(); y = 2;" : "f(); g(); x = " + i + ";";
+                parses.add(executor.submit(() -> {
+                    try {
+                        return parser.parse(input);
+                    } catch (SyntaxException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            for(Future<Boolean> parse : parses) {
+                assertThat(parse.get(), is(equalTo(true)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void readsOnlyTheTopOfADeepStack() throws IOException, BNFGrammarException {
+        ParseTable parseTable = new ParseTable(new Grammar(new StringReader(String.join("\n",
+                "<S> ::= '('<S>')'",
+                "<S> ::= 'p'<X>'c'",
+                "<S> ::= 'q'<X>'d'",
+                "<X> ::= 'a'",
+                "<X> ::= 'a''c'"))));
+        parseTable.generate();
+        SymbolTable symbols = parseTable.symbols();
+        int x = symbols.nonTerminalId("X");
+        int a = symbols.terminalId("a");
+        int[] reads = new int[1];
+        ParseStack stack = new ParseStack() {
+            @Override
+            public int peek(int depth) {
+                ++reads[0];
+                return super.peek(depth);
+            }
+        };
+        stack.push(parseTable.eof());
+        for(int i = 0; i < 100000; i++) {
+            stack.push(symbols.terminalId(")"));
+        }
+        stack.push(symbols.terminalId("c"));
+        stack.push(x);
+
+        // simulated the first time, then decided by the cache, reading only what the decision needs
+        for(int i = 0; i < 3; i++) {
+            reads[0] = 0;
+            int production = parseTable.predictor().predict(x, a, tokensOf(parseTable, "a c )"), stack);
+            assertThat(parseTable.productionSymbols(production).length, is(equalTo(1)));
+            assertThat(reads[0], is(lessThanOrEqualTo(2)));
+
+            reads[0] = 0;
+            production = parseTable.predictor().predict(x, a, tokensOf(parseTable, "a c c )"), stack);
+            assertThat(parseTable.productionSymbols(production).length, is(equalTo(2)));
+            assertThat(reads[0], is(lessThanOrEqualTo(2)));
+        }
+    }
+
+    @Test
+    public void decidesOnEveryKindOfParse() throws IOException, BNFGrammarException, SyntaxException {
+        TableDrivenParser parser = parserOf("<S> ::= <A>",
+                                            "<A> ::= [identifier]'='[number]",
+                                            "<A> ::= [identifier]'('')'");
+
+        for(String input : new String[] {"x = 1", "f ( )"}) {
+            assertThat(input, parser.parse(new StringReader(input)), is(equalTo(true)));
+            assertThat(input, parser.parseTree(input).size(), is(greaterThan(0)));
+            assertThat(input, parser.parseWithRecovery(input).isValid(), is(equalTo(true)));
+            assertThat(input, parser.parseIncremental(input).isValid(), is(equalTo(true)));
+        }
+        assertThat(parser.parseWithRecovery("x = = 1").errors(), hasSize(1));
+    }
+
+    @Test
+    public void readsAheadOfTheParseOfAReader() throws IOException, BNFGrammarException, SyntaxException {
+        TableDrivenParser parser = parserOf("<S> ::= <A><S>",
+                                            "<S> ::= ''",
+                                            "<A> ::= [identifier]'='[number]';'",
+                                            "<A> ::= [identifier]'('')'';'");
+        StringBuilder input = new StringBuilder();
+        for(int i = 0; i < 3000; i++) { // past the read buffer
+            input.append(i % 3 == 0 ? "f();\n" : "value_" + i + " = " + i + ";\n");
+        }
+
+        assertThat(parser.parse(new StringReader(input.toString())), is(equalTo(true)));
+        try {
+            parser.parse(new StringReader(input + "x ( 1 ) ;"));
+            throw new AssertionError("expected a SyntaxException");
+        } catch (SyntaxException e) {
+            assertThat(e.getOffset(), is(equalTo((long) input.length() + 4)));
+        }
+    }
+
+    @Test
+    public void decidesWithTheWholeStackOfATree() throws IOException, BNFGrammarException, SyntaxException {
+        TableDrivenParser parser = parserOf("<S> ::= 'p'<X>'c'",
+                                            "<S> ::= 'q'<X>'d'",
+                                            "<X> ::= 'a'",
+                                            "<X> ::= 'a''c'");
+
+        for(String input : new String[] {"p a c", "p a c c", "q a d", "q a c d"}) {
+            assertThat(input, parser.parseTree(input).size(), is(greaterThan(0)));
+        }
+    }
+
+    @Test
+    public void evaluatesWithLookahead() throws IOException, BNFGrammarException, SyntaxException {
+        ParseTable parseTable = new ParseTable(new Grammar(new StringReader(String.join("\n",
+                "<S> ::= 'p'<X>'c'{p}",
+                "<S> ::= 'q'<X>'d'{q}",
+                "<X> ::= 'a'{one}",
+                "<X> ::= 'a''c'{two}"))));
+        parseTable.generate();
+        // the value of an input is the digits of the actions run, each one plus one
+        Evaluator evaluator = new Evaluator(parseTable) {
+            @Override
+            protected void apply(int action, ParseStack values) {
+                values.push((values.isEmpty() ? 0 : values.pop()) * 10 + action + 1);
+            }
+
+            @Override
+            protected int arity(String action) {
+                return action.length() == 1 ? 1 : 0; // {p} and {q} take the value of <X>
+            }
+        };
+
+        assertThat(evaluator.valueOf("p a c"), is(equalTo(actions(parseTable, "one", "p"))));
+        assertThat(evaluator.valueOf("p a c c"), is(equalTo(actions(parseTable, "two", "p"))));
+        assertThat(evaluator.valueOf("q a d"), is(equalTo(actions(parseTable, "one", "q"))));
+        assertThat(evaluator.valueOf("q a c d"), is(equalTo(actions(parseTable, "two", "q"))));
+    }
+
+    @Test
+    public void reparsesFromBeforeTheDecisionsThatSawTheEdit()
+            throws IOException, BNFGrammarException, SyntaxException {
+        TableDrivenParser parser = parserOf("<S> ::= <I><S>",
+                                            "<S> ::= ''",
+                                            "<I> ::= 'a''a''a''a''b'",
+                                            "<I> ::= 'a''a''a''a''c'",
+                                            "<I> ::= 'x'");
+        StringBuilder input = new StringBuilder();
+        for(int i = 0; i < 30; i++) {
+            input.append("x ");
+        }
+        // a checkpoint after the second a, where the stack holds the b the decision saw
+        input.append("a a a a b x");
+        int edit = input.indexOf("b");
+        ParseSnapshot snapshot = parser.parseIncremental(input);
+        String edited = input.substring(0, edit) + "c" + input.substring(edit + 1);
+
+        assertThat(parser.parse(edited), is(equalTo(true)));
+        assertThat(parser.reparse(snapshot, edited, edit, edit + 1, edit + 1).isValid(), is(equalTo(true)));
+    }
+
+    private static TableDrivenParser parserOf(String... productions) throws IOException, BNFGrammarException {
+        ParseTable parseTable = new ParseTable(new Grammar(new StringReader(String.join("\n", productions))));
+        parseTable.generate();
+        assertThat(parseTable.predictor(), is(notNullValue()));
+        return new TableDrivenParser(parseTable);
+    }
+
+    private static LookaheadPredictor.SequenceTokens tokensOf(ParseTable parseTable, String input) {
+        return new LookaheadPredictor.SequenceTokens(parseTable, input).at(1);
+    }
+
+    private static String messageOf(TableDrivenParser parser, String input) {
+        try {
+            parser.parse(input);
+        } catch (SyntaxException e) {
+            return e.getMessage();
+        }
+        throw new AssertionError("expected a SyntaxException for " + input);
+    }
+
+    private static int actions(ParseTable parseTable, String... names) {
+        int value = 0;
+        for(String name : names) {
+            value = value * 10 + parseTable.actionId(name) + 1;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,119 @@
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParallelParserTest {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final TableDrivenParser sequential;
+    private final ParallelParser parallel;
+
+    public ParallelParserTest() throws IOException, BNFGrammarException {
+        ParseTable parseTable = new ParseTable(new Grammar("language.bnf"));
+        parseTable.generate();
+        this.sequential = new TableDrivenParser(parseTable);
+        this.parallel = new ParallelParser(sequential, pool, 16, "|", "^");
+    }
+
+    @After
+    public void shutDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void startsPartsAtSeparatorsOutsideBrackets() {
+        String input = "(1 | 0 | 1 | 0 | 1) ^ 1 | ~(0 ^ 1 ^ 0 ^ 1 ^ 0) | 1 | (0)";
+        int[] starts = parallel.partStarts(input);
+
+        assertThat(starts[0], is(equalTo(0)));
+        for(int i = 1; i < starts.length; i++) {
+            assertThat(starts[i], is(greaterThan(starts[i - 1])));
+            assertThat(input.charAt(starts[i]), isOneOf('|', '^'));
+            assertThat(depthAt(input, starts[i]), is(equalTo(0)));
+        }
+        assertThat(starts.length, is(greaterThan(1)));
+    }
+
+    @Test
+    public void parsesLongInputsLikeTheSequentialParser() {
+        Random random = new Random(11);
+        for(int i = 0; i < 300; i++) {
+            String input = expression(random, 3).toString();
+            if(random.nextInt(4) == 0) { // break it somewhere
+                int at = random.nextInt(input.length());
+                input = input.substring(0, at) + "|)~(^".charAt(random.nextInt(5)) + input.substring(at + 1);
+            }
+            assertThat(input, resultOf(parallel, input), is(equalTo(resultOf(sequential, input))));
+        }
+    }
+
+    @Test
+    public void parsesSequentiallyWhenTheGuessIsWrong() throws IOException, BNFGrammarException, SyntaxException {
+        // the stack before a ; differs with the nesting of the list it ends
+        ParseTable parseTable = new ParseTable(new Grammar(new StringReader(String.join("\n",
+                "<S> ::= <L>",
+                "<L> ::= 'a'<M>",
+                "<M> ::= ';'<L>",
+                "<M> ::= ','<N>",
+                "<M> ::= ''",
+                "<N> ::= 'b'<O>",
+                "<O> ::= ';'<L>",
+                "<O> ::= ''"))));
+        parseTable.generate();
+        TableDrivenParser parser = new TableDrivenParser(parseTable);
+        ParallelParser guessing = new ParallelParser(parser, pool, 8, ";");
+
+        StringBuilder input = new StringBuilder("a");
+        for(int i = 0; i < 100; i++) {
+            input.append(i % 3 == 0 ? ", b; a" : "; a");
+        }
+        assertThat(guessing.parse(input.toString()), is(equalTo(true)));
+        assertThat(resultOf(guessing, input + ";"), is(equalTo(resultOf(parser, input + ";"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSeparatorsThatAreNotTerminals() {
+        new ParallelParser(sequential, "&");
+    }
+
+    private static StringBuilder expression(Random random, int depth) {
+        StringBuilder expression = new StringBuilder();
+        int operands = 1 + random.nextInt(12);
+        for(int i = 0; i < operands; i++) {
+            if(i > 0) {
+                expression.append(random.nextBoolean() ? " | " : " ^ ");
+            }
+            if(random.nextInt(3) == 0) {
+                expression.append('~');
+            }
+            if(depth > 0 && random.nextInt(3) == 0) {
+                expression.append('(').append(expression(random, depth - 1)).append(')');
+            } else {
+                expression.append(random.nextInt(2));
+            }
+        }
+        return expression;
+    }
+
+    private static int depthAt(String input, int index) {
+        int depth = 0;
+        for(int i = 0; i < index; i++) {
+            depth += input.charAt(i) == '(' ? 1 : input.charAt(i) == ')' ? -1 : 0;
+        }
+        return depth;
+    }
+
+    private static String resultOf(Parser parser, String input) {
+        try {
+            return String.valueOf(parser.parse(input));
+        } catch (SyntaxException e) {
+            return e.getMessage() + " " + e.getExpected();
+        }
+    }
+}
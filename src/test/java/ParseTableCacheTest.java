@@ -0,0 +1,93 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParseTableCacheTest {
+    private ParseTableCache cache = new ParseTableCache(2);
+
+    @Test
+    public void grammarsWithTheSameTextShareATable() throws IOException, BNFGrammarException {
+        ParseTable first = cache.get(new Grammar("language.bnf"));
+        ParseTable second = cache.get(new Grammar("language.bnf"));
+
+        assertThat(second, is(sameInstance(first)));
+        assertThat(cache.stats().hitCount(), is(equalTo(1L)));
+        assertThat(cache.stats().missCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedTable() throws IOException, BNFGrammarException {
+        Grammar a = grammarOf("<S> ::= 'a'");
+        Grammar b = grammarOf("<S> ::= 'b'");
+        Grammar c = grammarOf("<S> ::= 'c'");
+        cache.get(a);
+        cache.get(b);
+        cache.get(a);
+        cache.get(c);
+
+        assertThat(cache.size(), is(equalTo(2L)));
+        assertThat(cache.getIfPresent(a.contentHash()), is(notNullValue()));
+        assertThat(cache.getIfPresent(b.contentHash()), is(nullValue()));
+        assertThat(cache.stats().evictionCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void generatesATableOnceForConcurrentRequests() throws Exception, BNFGrammarException {
+        Grammar grammar = new Grammar("language.bnf");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<ParseTable>> tables = new ArrayList<>();
+            for(int i = 0; i < 8; i++) {
+                tables.add(executor.submit((Callable<ParseTable>) () -> {
+                    start.await();
+                    try {
+                        return cache.get(grammar);
+                    } catch (BNFGrammarException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            start.countDown();
+            for(Future<ParseTable> table : tables) {
+                assertThat(table.get(), is(sameInstance(tables.get(0).get())));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(cache.stats().loadCount(), is(equalTo(1L)));
+        assertThat(cache.stats().requestCount(), is(equalTo(8L)));
+    }
+
+    @Test
+    public void keepsTablesLoadedElsewhere() throws IOException, BNFGrammarException {
+        ParseTable parseTable = new ParseTable(new Grammar("language.bnf"));
+        parseTable.generate();
+        cache.put(parseTable);
+
+        assertThat(cache.get(new Grammar("language.bnf")), is(sameInstance(parseTable)));
+    }
+
+    @Test
+    public void parsersOfTheSameGrammarShareTheSharedTable() throws IOException, BNFGrammarException {
+        Grammar grammar = new Grammar("language.bnf");
+        new TableDrivenParser(grammar);
+
+        assertThat(ParseTableCache.shared().getIfPresent(grammar.contentHash()), is(notNullValue()));
+    }
+
+    private static Grammar grammarOf(String text) throws IOException, BNFGrammarException {
+        return new Grammar(new StringReader(text));
+    }
+}
@@ -0,0 +1,128 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParseTableFileTest {
+    private ParseTable parseTable;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public ParseTableFileTest() throws IOException, BNFGrammarException {
+        parseTable = new ParseTable(new Grammar("language.bnf"));
+        parseTable.generate();
+    }
+
+    @Test
+    public void loadedTableHasTheSameEntries() throws IOException, BNFGrammarException {
+        Path file = folder.getRoot().toPath().resolve("language.llt");
+        ParseTableFile.save(parseTable, file);
+        ParseTable loaded = ParseTableFile.load(file);
+
+        SymbolTable symbols = parseTable.symbols();
+        for(int nonTerminal = symbols.terminalCount(); nonTerminal < symbols.size(); nonTerminal++) {
+            for(int terminal = 0; terminal < symbols.terminalCount(); terminal++) {
+                assertThat(loaded.ruleToApply(nonTerminal, terminal),
+                            is(equalTo(parseTable.ruleToApply(nonTerminal, terminal))));
+            }
+        }
+        assertThat(loaded.ruleToApply("D", "(").get(), is(equalTo("'('<A>')'")));
+        assertThat(loaded.grammarHash(), is(equalTo(parseTable.grammarHash())));
+    }
+
+    @Test
+    public void parsesWithLoadedTable() throws IOException, BNFGrammarException, SyntaxException {
+        ParseTable loaded = ParseTableFile.read(ByteBuffer.wrap(bytesOf(parseTable)));
+        assertThat(new TableDrivenParser(loaded).parse("1 | 1 ^ ~0 | ((1 ^ 0) | ~1)"), is(equalTo(true)));
+    }
+
+    @Test
+    public void keepsTheLookaheadOfGrammarsThatAreNotLL1() throws IOException, BNFGrammarException, SyntaxException {
+        ParseTable conflicting = new ParseTable(new Grammar(new StringReader(String.join("\n",
+                "<S> ::= <A>",
+                "<A> ::= [identifier]'='[number]",
+                "<A> ::= [identifier]'('')'"))));
+        conflicting.generate();
+        ParseTable loaded = ParseTableFile.read(ByteBuffer.wrap(bytesOf(conflicting)));
+
+        assertThat(loaded.predictor(), is(notNullValue()));
+        TableDrivenParser parser = new TableDrivenParser(loaded);
+        assertThat(parser.parse("x = 1"), is(equalTo(true)));
+        assertThat(parser.parse("f ( )"), is(equalTo(true)));
+    }
+
+    @Test(expected = BNFGrammarException.class)
+    public void rejectsTableOfAnotherGrammar() throws IOException, BNFGrammarException {
+        Path file = folder.getRoot().toPath().resolve("language.llt");
+        ParseTableFile.save(parseTable, file);
+        Path grammar = folder.newFile("other.bnf").toPath();
+        Files.write(grammar, Arrays.asList("<S> ::= '1'"));
+
+        ParseTableFile.load(file, grammar);
+    }
+
+    @Test
+    public void regeneratesTableOfAnotherGrammar() throws IOException, BNFGrammarException {
+        Path file = folder.getRoot().toPath().resolve("language.llt");
+        ParseTableFile.save(parseTable, file);
+        Path grammar = folder.newFile("other.bnf").toPath();
+        Files.write(grammar, Arrays.asList("<S> ::= '1'"));
+
+        ParseTable generated = ParseTableFile.loadOrGenerate(file, grammar);
+        assertThat(generated.ruleToApply("S", "1").get(), is(equalTo("'1'")));
+    }
+
+    @Test(expected = BNFGrammarException.class)
+    public void rejectsTruncatedFile() throws IOException, BNFGrammarException {
+        byte[] bytes = bytesOf(parseTable);
+        ParseTableFile.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length / 2)));
+    }
+
+    @Test
+    public void rejectsIndicesOutOfRange() throws IOException, BNFGrammarException {
+        ParseTable conflicting = new ParseTable(new Grammar(new StringReader(String.join("\n",
+                "<S> ::= <A>{list}",
+                "<A> ::= [identifier]'='[number]",
+                "<A> ::= [identifier]'('')'"))));
+        conflicting.generate();
+        byte[] bytes = bytesOf(conflicting);
+
+        // every int of the file, whatever it means, set out of the range of any index
+        for(int offset = 8; offset + Integer.BYTES <= bytes.length; offset += Integer.BYTES) {
+            for(int value : new int[] {-2, 1 << 20}) {
+                ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone());
+                corrupt.putInt(offset, value);
+                ParseTable loaded;
+                try {
+                    loaded = ParseTableFile.read(corrupt);
+                } catch (BNFGrammarException e) {
+                    assertThat(e.getMessage(), startsWith("Corrupt parse table file"));
+                    continue;
+                }
+                try {
+                    new TableDrivenParser(loaded).parse("x = 1");
+                    new TableDrivenParser(loaded).parse("f ( )");
+                } catch (SyntaxException e) {
+                    // a corrupt name, the table is still consistent
+                }
+            }
+        }
+    }
+
+    private static byte[] bytesOf(ParseTable parseTable) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ParseTableFile.write(parseTable, output);
+        return output.toByteArray();
+    }
+}
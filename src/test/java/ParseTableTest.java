@@ -0,0 +1,67 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParseTableTest {
+    private Grammar grammar;
+    private ParseTable parseTable;
+
+    public ParseTableTest() throws IOException, BNFGrammarException {
+        this.grammar = new Grammar("language.bnf");
+        this.parseTable = new ParseTable(grammar);
+        parseTable.generate();
+    }
+
+    @Test
+    public void findsRuleToApplyByName() {
+        Optional<String> rule = parseTable.ruleToApply("D", "(");
+        assertThat(rule.get(), is(equalTo("'('<A>')'")));
+    }
+
+    @Test
+    public void findsEpsilonRuleOnFollowSymbol() {
+        Optional<String> rule = parseTable.ruleToApply("Aprime", ")");
+        assertThat(rule.get(), is(equalTo("")));
+    }
+
+    @Test
+    public void returnsNothingForAnEmptyCell() {
+        assertThat(parseTable.ruleToApply("D", "|").isPresent(), is(equalTo(false)));
+    }
+
+    @Test
+    public void returnsNothingForUnknownSymbols() {
+        assertThat(parseTable.ruleToApply("D", "+").isPresent(), is(equalTo(false)));
+    }
+
+    @Test
+    public void generatesOnce() throws BNFGrammarException {
+        parseTable.generate(Integer.MAX_VALUE);
+
+        assertThat(parseTable.predictor(), is(nullValue()));
+        assertThat(parseTable.ruleToApply("D", "(").get(), is(equalTo("'('<A>')'")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parsesOnlyWithGeneratedTables() {
+        ParseTable notGenerated = new ParseTable(grammar);
+        assertThat(notGenerated.isGenerated(), is(equalTo(false)));
+        new TableDrivenParser(notGenerated);
+    }
+
+    @Test
+    public void compiledProductionsUseInternedSymbolIds() {
+        SymbolTable symbols = parseTable.symbols();
+        int production = parseTable.ruleToApply(symbols.nonTerminalId("D"), symbols.terminalId("("));
+
+        int[] body = parseTable.productionSymbols(production);
+        assertThat(body.length, is(equalTo(3)));
+        assertThat(body[0], is(equalTo(symbols.terminalId("("))));
+        assertThat(body[1], is(equalTo(symbols.nonTerminalId("A"))));
+        assertThat(body[2], is(equalTo(symbols.terminalId(")"))));
+    }
+}
@@ -0,0 +1,138 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParseTreeTest {
+    private TableDrivenParser parser;
+
+    public ParseTreeTest() throws IOException, BNFGrammarException {
+        this.parser = new TableDrivenParser(new Grammar("language.bnf"));
+    }
+
+    @Test
+    public void recordsEveryNodeInPreorder() throws SyntaxException {
+        ParseTree tree = parser.parseTree("~1");
+
+        List<String> names = new ArrayList<>();
+        for(int node = 0; node < tree.size(); node++) {
+            names.add(tree.name(node));
+        }
+        assertThat(names, contains("S", "A", "B", "C", "~", "D", "1", "Bprime", "Aprime"));
+        assertThat(tree.parent(tree.root()), is(equalTo(ParseTree.NO_PARENT)));
+        assertThat(tree.subtreeEnd(tree.root()), is(equalTo(tree.size())));
+    }
+
+    @Test
+    public void recordsOffsetsOfNodes() throws SyntaxException {
+        String input = " (1 | 0) ^ 1 ";
+        ParseTree tree = parser.parseTree(input);
+
+        assertThat(tree.text(tree.root(), input).toString(), is(equalTo("(1 | 0) ^ 1")));
+        for(int node = 0; node < tree.size(); node++) {
+            if(tree.isTerminal(node)) {
+                assertThat(tree.text(node, input).toString(), is(equalTo(tree.name(node))));
+            }
+            if(tree.parent(node) != ParseTree.NO_PARENT && tree.start(node) < tree.end(node)) {
+                assertThat(tree.start(node), is(greaterThanOrEqualTo(tree.start(tree.parent(node)))));
+                assertThat(tree.end(node), is(lessThanOrEqualTo(tree.end(tree.parent(node)))));
+            }
+        }
+    }
+
+    @Test
+    public void cursorWalksChildrenAndBack() throws SyntaxException {
+        ParseTree tree = parser.parseTree("(0)");
+        ParseTree.Cursor cursor = tree.cursor();
+
+        // S -> A -> B -> C -> D -> ( A )
+        for(int i = 0; i < 4; i++) {
+            assertThat(cursor.gotoFirstChild(), is(equalTo(true)));
+        }
+        assertThat(tree.name(cursor.node()), is(equalTo("D")));
+
+        List<String> children = new ArrayList<>();
+        cursor.gotoFirstChild();
+        do {
+            children.add(tree.name(cursor.node()));
+        } while(cursor.gotoNextSibling());
+        assertThat(children, contains("(", "A", ")"));
+
+        assertThat(cursor.gotoFirstChild(), is(equalTo(false)));
+        assertThat(cursor.gotoParent(), is(equalTo(true)));
+        assertThat(tree.name(cursor.node()), is(equalTo("D")));
+    }
+
+    @Test
+    public void visitorEntersAndExitsEveryNode() throws SyntaxException {
+        ParseTree tree = parser.parseTree("1 | 0");
+        StringBuilder terminals = new StringBuilder();
+        int[] depth = new int[2]; // current and deepest
+
+        tree.accept(new ParseTree.Visitor() {
+            @Override
+            public void enter(ParseTree tree, int node) {
+                depth[1] = Math.max(depth[1], ++depth[0]);
+                if(tree.isTerminal(node)) {
+                    terminals.append(tree.name(node));
+                }
+            }
+
+            @Override
+            public void exit(ParseTree tree, int node) {
+                --depth[0];
+            }
+        });
+
+        assertThat(terminals.toString(), is(equalTo("1|0")));
+        assertThat(depth[0], is(equalTo(0)));
+        assertThat(depth[1], is(greaterThan(4)));
+    }
+
+    @Test
+    public void epsilonNodesAreEmpty() throws SyntaxException {
+        ParseTree tree = parser.parseTree("1");
+        int bPrime = 0;
+        while(!tree.name(bPrime).equals("Bprime")) {
+            ++bPrime;
+        }
+        assertThat(tree.subtreeEnd(bPrime), is(equalTo(bPrime + 1)));
+        assertThat(tree.start(bPrime), is(equalTo(tree.end(bPrime))));
+    }
+
+    @Test
+    public void reusesTreeForAnotherInput() throws SyntaxException {
+        ParseTree tree = parser.parseTree("~(~(~(1 | 0)))");
+        parser.parseTree("0", tree);
+
+        assertThat(tree.size(), is(equalTo(parser.parseTree("1").size())));
+        assertThat(tree.end(tree.root()), is(equalTo(1)));
+    }
+
+    @Test
+    public void buildsDeepTrees() throws SyntaxException {
+        StringBuilder input = new StringBuilder();
+        for(int i = 0; i < 10000; i++) {
+            input.append('(');
+        }
+        input.append('1');
+        for(int i = 0; i < 10000; i++) {
+            input.append(')');
+        }
+        ParseTree tree = parser.parseTree(input);
+        int[] count = new int[1];
+        tree.accept((t, node) -> count[0]++);
+
+        assertThat(count[0], is(equalTo(tree.size())));
+        assertThat(tree.end(tree.root()), is(equalTo(input.length())));
+    }
+
+    @Test(expected = SyntaxException.class)
+    public void throwsSyntaxExceptionOnInvalidInput() throws SyntaxException {
+        parser.parseTree("(1 |");
+    }
+}
@@ -0,0 +1,119 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParserGeneratorTest {
+    private ParseTable parseTable;
+    private TableDrivenParser tableDrivenParser;
+    private Parser generated;
+
+    public ParserGeneratorTest() throws IOException, BNFGrammarException {
+        this.parseTable = ParseTableCache.shared().get(new Grammar("language.bnf"));
+        this.tableDrivenParser = new TableDrivenParser(parseTable);
+        this.generated = new ParserGenerator(parseTable).compile("GeneratedBooleanParser");
+    }
+
+    @Test
+    public void generatesOneMethodPerNonTerminal() {
+        String source = new ParserGenerator(parseTable).generate("BooleanParser");
+
+        assertThat(source, containsString("public final class BooleanParser implements Parser"));
+        for(String nonTerminal : new String[] {"S", "A", "Aprime", "B", "Bprime", "C", "D"}) {
+            assertThat(source, containsString("// <" + nonTerminal + ">"));
+        }
+        // <Aprime> ::= '|'<B><Aprime> is a loop
+        assertThat(source, containsString("continue;"));
+    }
+
+    @Test
+    public void acceptsValidInputs() throws SyntaxException {
+        assertThat(generated.parse("1"), is(equalTo(true)));
+        assertThat(generated.parse(" ~(1 | 0) ^ 1 "), is(equalTo(true)));
+    }
+
+    @Test
+    public void throwsTheSameErrorsAsTheTableDrivenParser() {
+        for(String input : new String[] {"", "1 |", "(1", "1 1", "2", "~", ")"}) {
+            SyntaxException expected = errorOf(tableDrivenParser, input);
+            SyntaxException actual = errorOf(generated, input);
+
+            assertThat(input, actual, is(notNullValue()));
+            assertThat(input, actual.getMessage(), is(equalTo(expected.getMessage())));
+            assertThat(input, actual.getOffset(), is(equalTo(expected.getOffset())));
+        }
+    }
+
+    @Test
+    public void agreesWithTheTableDrivenParser() {
+        Random random = new Random(11);
+        String[] pieces = {"1", "0", "~", "(", ")", "|", "^", " "};
+        for(int i = 0; i < 2000; i++) {
+            StringBuilder input = new StringBuilder();
+            for(int length = random.nextInt(12); length > 0; length--) {
+                input.append(pieces[random.nextInt(pieces.length)]);
+            }
+            assertThat(input.toString(), errorOf(generated, input.toString()) == null,
+                       is(equalTo(errorOf(tableDrivenParser, input.toString()) == null)));
+        }
+    }
+
+    @Test
+    public void parsesLongAndDeeplyNestedInputs() throws SyntaxException {
+        StringBuilder flat = new StringBuilder("1");
+        StringBuilder nested = new StringBuilder();
+        for(int i = 0; i < 100000; i++) {
+            flat.append(" | 0");
+            nested.append('(');
+        }
+        nested.append('1');
+        for(int i = 0; i < 100000; i++) {
+            nested.append(')');
+        }
+
+        assertThat(generated.parse(flat.toString()), is(equalTo(true)));
+        assertThat(generated.parse(nested.toString()), is(equalTo(true)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsGrammarsThatAreNotLL1() throws IOException, BNFGrammarException {
+        ParseTable conflicting = new ParseTable(new Grammar(new StringReader("<S> ::= 'a''b'\n<S> ::= 'a''c'")));
+        conflicting.generate();
+        new ParserGenerator(conflicting);
+    }
+
+    @Test
+    public void generatesParsersForGrammarsWithTokenClasses()
+            throws IOException, BNFGrammarException, SyntaxException {
+        ParseTable assignments = ParseTableCache.shared().get(new Grammar(new StringReader(
+                "<S> ::= [identifier] '=' <E> <S> | ''\n<E> ::= [number] | [identifier]")));
+        Parser parser = new ParserGenerator(assignments).compile("AssignmentParser");
+
+        assertThat(parser.parse("x = 1 y = x"), is(equalTo(true)));
+        assertThat(errorOf(parser, "x = = 1"), is(notNullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void generatedParserChecksItsGrammar() throws Throwable {
+        ParseTable other = ParseTableCache.shared().get(new Grammar(new StringReader("<S> ::= 'a'")));
+        try {
+            generated.getClass().getConstructor(ParseTable.class).newInstance(other);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static SyntaxException errorOf(Parser parser, String input) {
+        try {
+            parser.parse(input);
+            return null;
+        } catch (SyntaxException e) {
+            return e;
+        }
+    }
+}
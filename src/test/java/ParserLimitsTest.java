@@ -0,0 +1,169 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParserLimitsTest {
+    private ParseTable parseTable;
+
+    public ParserLimitsTest() throws IOException, BNFGrammarException {
+        this.parseTable = new ParseTable(new Grammar("language.bnf"));
+        parseTable.generate();
+    }
+
+    @Test
+    public void rejectsInputsNestedTooDeeply() {
+        TableDrivenParser parser = new TableDrivenParser(parseTable, new ParserLimits(100, Long.MAX_VALUE,
+                                                                                      Long.MAX_VALUE));
+        ParseLimitException e = parseFailure(parser, nested(1000));
+
+        assertThat(e.getLimit(), is(equalTo(ParseLimitException.Limit.STACK_DEPTH)));
+        assertThat(e.getMaximum(), is(equalTo(100L)));
+        assertThat(e.getOffset(), is(lessThan(100L)));
+    }
+
+    @Test
+    public void acceptsInputsWithinTheLimits() throws SyntaxException {
+        TableDrivenParser parser = new TableDrivenParser(parseTable, new ParserLimits(100, 100, 1000));
+
+        assertThat(parser.parse(nested(10)), is(equalTo(true)));
+        assertThat(parser.parseTree(nested(10)).size(), is(greaterThan(0)));
+    }
+
+    @Test
+    public void rejectsInputsThatAreTooLong() throws IOException {
+        TableDrivenParser parser = new TableDrivenParser(parseTable, new ParserLimits(100, 9, Long.MAX_VALUE));
+
+        ParseLimitException inMemory = parseFailure(parser, "1 | 0 | 1 | 0");
+        assertThat(inMemory.getLimit(), is(equalTo(ParseLimitException.Limit.INPUT_LENGTH)));
+        assertThat(inMemory.getOffset(), is(equalTo(0L)));
+        try {
+            parser.parse(new StringReader("1 | 0 | 1 | 0"));
+        } catch (ParseLimitException e) {
+            assertThat(e.getLimit(), is(equalTo(ParseLimitException.Limit.INPUT_LENGTH)));
+            // the | that goes past the limit, not the limit
+            assertThat(e.getOffset(), is(equalTo(10L)));
+            return;
+        } catch (SyntaxException e) {
+            throw new AssertionError(e);
+        }
+        throw new AssertionError("expected a ParseLimitException");
+    }
+
+    @Test
+    public void rejectsInputsThatTakeTooManySteps() {
+        TableDrivenParser parser = new TableDrivenParser(parseTable, new ParserLimits(100, Long.MAX_VALUE, 20));
+
+        assertThat(parseFailure(parser, "1 | 0 | 1 | 0 | 1 | 0").getLimit(),
+                   is(equalTo(ParseLimitException.Limit.STEPS)));
+    }
+
+    @Test
+    public void countsTheStepsAtTheEndOfInput() throws IOException {
+        // "1" takes five steps to match and two more to expand <Bprime> and <Aprime> to nothing
+        TableDrivenParser parser = new TableDrivenParser(parseTable, new ParserLimits(100, Long.MAX_VALUE, 6));
+
+        assertThat(parseFailure(parser, "1").getLimit(), is(equalTo(ParseLimitException.Limit.STEPS)));
+        try {
+            parser.parse(new StringReader("1"));
+        } catch (ParseLimitException e) {
+            assertThat(e.getLimit(), is(equalTo(ParseLimitException.Limit.STEPS)));
+            return;
+        } catch (SyntaxException e) {
+            throw new AssertionError(e);
+        }
+        throw new AssertionError("expected a ParseLimitException");
+    }
+
+    @Test
+    public void evaluatorKeepsToTheLimits() throws BNFGrammarException, SyntaxException {
+        BooleanEvaluator evaluator = new BooleanEvaluator(parseTable, new ParserLimits(100, 100, 1000));
+
+        assertThat(evaluator.evaluate(nested(10)), is(equalTo(true)));
+        assertThat(evaluationFailure(evaluator, nested(1000)).getLimit(),
+                   is(equalTo(ParseLimitException.Limit.INPUT_LENGTH)));
+        assertThat(evaluationFailure(evaluator, nested(40)).getLimit(),
+                   is(equalTo(ParseLimitException.Limit.STACK_DEPTH)));
+        assertThat(evaluationFailure(new BooleanEvaluator(parseTable, new ParserLimits(100, 100, 6)), "1").getLimit(),
+                   is(equalTo(ParseLimitException.Limit.STEPS)));
+    }
+
+    @Test
+    public void stackDoesNotGrowPastItsMaximum() {
+        ParseStack stack = new ParseStack(4, 6);
+        stack.pushReversed(new int[] {1, 2, 3, 4, 5});
+
+        assertThat(stack.hasRoomFor(1), is(equalTo(true)));
+        assertThat(stack.hasRoomFor(2), is(equalTo(false)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void stackThrowsWhenFull() {
+        ParseStack stack = new ParseStack(1, 2);
+        stack.push(1);
+        stack.push(2);
+        stack.push(3);
+    }
+
+    @Test
+    public void recoveryStopsAtALimit() {
+        TableDrivenParser parser = new TableDrivenParser(parseTable, new ParserLimits(100, Long.MAX_VALUE,
+                                                                                      Long.MAX_VALUE));
+        ParseResult result = parser.parseWithRecovery(nested(1000) + " ^");
+
+        assertThat(result.isValid(), is(equalTo(false)));
+        assertThat(result.errors().get(result.errors().size() - 1).message(), startsWith("Parse limit exceeded"));
+    }
+
+    @Test
+    public void incrementalParseFailsAtALimit() {
+        TableDrivenParser parser = new TableDrivenParser(parseTable, new ParserLimits(100, Long.MAX_VALUE,
+                                                                                      Long.MAX_VALUE));
+        ParseSnapshot snapshot = parser.parseIncremental(nested(1000));
+
+        assertThat(snapshot.isValid(), is(equalTo(false)));
+        assertThat(snapshot.error(), is(instanceOf(ParseLimitException.class)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAStackTooSmallForTheStartSymbol() {
+        new ParserLimits(1, 10, 10);
+    }
+
+    private static ParseLimitException parseFailure(TableDrivenParser parser, String input) {
+        try {
+            parser.parse(input);
+        } catch (ParseLimitException e) {
+            return e;
+        } catch (SyntaxException e) {
+            throw new AssertionError(e);
+        }
+        throw new AssertionError("expected a ParseLimitException for " + input);
+    }
+
+    private static ParseLimitException evaluationFailure(Evaluator evaluator, String input) {
+        try {
+            evaluator.valueOf(input);
+        } catch (ParseLimitException e) {
+            return e;
+        } catch (SyntaxException e) {
+            throw new AssertionError(e);
+        }
+        throw new AssertionError("expected a ParseLimitException for " + input);
+    }
+
+    private static String nested(int depth) {
+        StringBuilder input = new StringBuilder();
+        for(int i = 0; i < depth; i++) {
+            input.append('(');
+        }
+        input.append('1');
+        for(int i = 0; i < depth; i++) {
+            input.append(')');
+        }
+        return input.toString();
+    }
+}
@@ -0,0 +1,174 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParserMetricsTest {
+    private ParseTable parseTable;
+    private ParserMetrics metrics;
+    private TableDrivenParser parser;
+
+    public ParserMetricsTest() throws IOException, BNFGrammarException {
+        this.parseTable = new ParseTable(new Grammar("language.bnf"));
+        parseTable.generate();
+        this.metrics = new ParserMetrics(parseTable);
+        this.parser = new TableDrivenParser(parseTable, metrics);
+    }
+
+    @Test
+    public void countsExpansionsAndMatches() throws SyntaxException {
+        parser.parse("1");
+
+        ParserMetrics.Snapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.parses(), is(equalTo(1L)));
+        assertThat(snapshot.failures(), is(equalTo(0L)));
+        // S, A, B, C and D, then Bprime and Aprime to the empty body at EOF
+        assertThat(snapshot.expansions(), is(equalTo(7L)));
+        // 1 and EOF
+        assertThat(snapshot.matches(), is(equalTo(2L)));
+        assertThat(snapshot.maxStackDepth(), is(greaterThanOrEqualTo(3L)));
+    }
+
+    @Test
+    public void countsHitsOfEveryProduction() throws SyntaxException, IOException {
+        parser.parse("1 | 0 | 1");
+        parser.parse(new StringReader("~1"));
+
+        ParserMetrics.Snapshot snapshot = metrics.snapshot();
+        int or = production("Aprime", "'|'<B>{or}<Aprime>");
+        int not = production("C", "'~'<D>{not}");
+        assertThat(snapshot.productionHits(or), is(equalTo(2L)));
+        assertThat(snapshot.productionHits(not), is(equalTo(1L)));
+        assertThat(snapshot.parses(), is(equalTo(2L)));
+
+        int[] hottest = snapshot.hottestProductions(2);
+        assertThat(snapshot.productionHits(hottest[0]),
+                   is(greaterThanOrEqualTo(snapshot.productionHits(hottest[1]))));
+    }
+
+    @Test
+    public void countsFailedParses() {
+        try {
+            parser.parse("1 |");
+        } catch (SyntaxException expected) {
+        }
+
+        ParserMetrics.Snapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.parses(), is(equalTo(1L)));
+        assertThat(snapshot.failures(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void recordsLatencies() throws SyntaxException {
+        for(int i = 0; i < 100; i++) {
+            parser.parse("(1 ^ 0) | ~(0 | 1)");
+        }
+
+        ParserMetrics.Snapshot snapshot = metrics.snapshot();
+        long counted = 0;
+        for(int bucket = 0; bucket < ParserMetrics.LATENCY_BUCKETS; bucket++) {
+            counted += snapshot.latencyCount(bucket);
+        }
+        assertThat(counted, is(equalTo(100L)));
+        assertThat(snapshot.latencyQuantile(0.5), is(greaterThan(0L)));
+        assertThat(snapshot.latencyQuantile(0.99), is(greaterThanOrEqualTo(snapshot.latencyQuantile(0.5))));
+    }
+
+    @Test
+    public void addsCountsOfAllThreads() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> parses = new ArrayList<>();
+            for(int i = 0; i < 400; i++) {
+                parses.add(executor.submit(() -> {
+                    try {
+                        return parser.parse("~1 ^ 0");
+                    } catch (SyntaxException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            for(Future<Boolean> parse : parses) {
+                parse.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        ParserMetrics.Snapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.parses(), is(equalTo(400L)));
+        assertThat(snapshot.matches(), is(equalTo(400L * 5)));
+    }
+
+    @Test
+    public void countsMoreThanAnIntHolds() {
+        ParserMetrics.Trace trace = metrics.begin();
+        trace.expansions = Integer.MAX_VALUE;
+        trace.matches = Integer.MAX_VALUE;
+        trace.expanded(0, 1);
+        trace.matched();
+        metrics.end(trace, false);
+
+        ParserMetrics.Snapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.expansions(), is(equalTo(Integer.MAX_VALUE + 1L)));
+        assertThat(snapshot.matches(), is(equalTo(Integer.MAX_VALUE + 1L)));
+    }
+
+    @Test
+    public void reportsSnapshotsPeriodically() throws SyntaxException, InterruptedException {
+        parser.parse("1");
+        BlockingQueue<ParserMetrics.Snapshot> reported = new LinkedBlockingQueue<>();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            ScheduledFuture<?> reporting = metrics.reportEvery(executor, 1, TimeUnit.MILLISECONDS, reported::add);
+            ParserMetrics.Snapshot first = reported.poll(5, TimeUnit.SECONDS);
+            assertThat(first, is(notNullValue()));
+            assertThat(first.toString(), containsString("parses=1"));
+            assertThat(reported.poll(5, TimeUnit.SECONDS), is(notNullValue()));
+            reporting.cancel(false);
+            assertThat(reporting.isCancelled(), is(equalTo(true)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void parserWithoutMetricsCountsNothing() throws SyntaxException {
+        TableDrivenParser uncounted = new TableDrivenParser(parseTable);
+        uncounted.parse("1");
+
+        assertThat(uncounted.metrics(), is(nullValue()));
+        assertThat(metrics.snapshot().parses(), is(equalTo(0L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMetricsOfAnotherTable() throws IOException, BNFGrammarException {
+        ParseTable other = new ParseTable(new Grammar("language.bnf"));
+        other.generate();
+        new TableDrivenParser(other, metrics);
+    }
+
+    private int production(String head, String body) {
+        for(int production = 0; production < parseTable.numberOfProductions(); production++) {
+            if(parseTable.symbols().nameOf(parseTable.productionHead(production)).equals(head)
+                    && parseTable.productionBody(production).equals(body)) {
+                return production;
+            }
+        }
+        throw new AssertionError("no production " + head + " ::= " + body);
+    }
+}
@@ -0,0 +1,142 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class PrescannerTest {
+    private final ParseTable parseTable;
+    private final Prescanner prescanner;
+
+    public PrescannerTest() throws IOException, BNFGrammarException {
+        this.parseTable = new ParseTable(new Grammar("language.bnf"));
+        parseTable.generate();
+        this.prescanner = new Prescanner(parseTable);
+    }
+
+    @Test
+    public void comparesEveryByteOfAWord() {
+        Random random = new Random(42);
+        for(int i = 0; i < 10000; i++) {
+            long word = random.nextLong();
+            if(i % 2 == 0) { // mostly ASCII, with some bytes equal to the character looked for
+                word = (word & 0x7F7F7F7F7F7F7F7FL) | (0x28L << (8 * random.nextInt(8)));
+            }
+            int low = random.nextInt(0x80);
+            int high = low + random.nextInt(0x80 - low);
+            long between = 0;
+            long equal = 0;
+            for(int b = 0; b < Long.BYTES; b++) {
+                int value = (int) (word >>> (8 * b)) & 0xFF;
+                between |= value >= low && value <= high ? 0x80L << (8 * b) : 0;
+                equal |= value == '(' ? 0x80L << (8 * b) : 0;
+            }
+            assertThat(Prescanner.bytesBetween(word, low, high), is(equalTo(between)));
+            assertThat(Prescanner.bytesEqual(word, '('), is(equalTo(equal)));
+        }
+    }
+
+    @Test
+    public void checksBracketsTheGrammarBalances() {
+        assertThat(prescanner.checkedPairs(), contains("()"));
+    }
+
+    @Test
+    public void acceptsValidInputs() {
+        assertThat(prescanner.scan(bytes("")), is(nullValue()));
+        assertThat(prescanner.scan(bytes("(1 ^ 0) | ~(0 | 1)\n\t(((1)))")), is(nullValue()));
+    }
+
+    @Test
+    public void rejectsUnrecognizedSymbols() {
+        SyntaxError error = prescanner.scan(bytes("(1 ^ 0) | ~(0 | 1) & 1"));
+        assertThat(error.offset(), is(equalTo(19L)));
+        assertThat(error.invalidSymbol(), is(equalTo("&")));
+        assertThat(error.message(), is(equalTo("Syntax Error. Unrecognized symbol, &, at offset 19")));
+    }
+
+    @Test
+    public void rejectsUnbalancedBrackets() {
+        SyntaxError closed = prescanner.scan(bytes("(1 ^ 0) | 0 | 1) | (1)"));
+        assertThat(closed.offset(), is(equalTo(15L)));
+        assertThat(closed.message(), is(equalTo("Syntax Error. Unbalanced ) at offset 15")));
+
+        SyntaxError open = prescanner.scan(bytes("((1 ^ 0) | (0 | 1)"));
+        assertThat(open.offset(), is(equalTo(18L)));
+        assertThat(open.expected(), contains(")"));
+    }
+
+    @Test
+    public void reportsTheFirstErrorOfAWord() {
+        SyntaxError error = prescanner.scan(bytes("1 | 0)&1"));
+        assertThat(error.offset(), is(equalTo(5L)));
+    }
+
+    @Test
+    public void scansFromThePositionOfTheBuffer() {
+        ByteBuffer buffer = bytes("&&&&1 | 0 | (1 ^ 0) | 1&");
+        buffer.position(4).limit(buffer.limit() - 1);
+        assertThat(prescanner.scan(buffer), is(nullValue()));
+        assertThat(buffer.position(), is(equalTo(4)));
+    }
+
+    @Test
+    public void neverRejectsValidInputs() {
+        Random random = new Random(7);
+        char[] alphabet = "01|^~() &".toCharArray();
+        TableDrivenParser parser = new TableDrivenParser(parseTable);
+        for(int i = 0; i < 5000; i++) {
+            char[] input = new char[random.nextInt(24)];
+            for(int j = 0; j < input.length; j++) {
+                input[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String text = new String(input);
+            boolean valid;
+            try {
+                valid = parser.parse(text);
+            } catch (SyntaxException e) {
+                valid = false;
+            }
+            if(valid) {
+                assertThat(text, prescanner.scan(bytes(text)), is(nullValue()));
+            }
+        }
+    }
+
+    @Test
+    public void parsesByteBuffers() throws SyntaxException {
+        TableDrivenParser parser = new TableDrivenParser(parseTable);
+        assertThat(parser.parse(bytes("(1 ^ 0) | ~(0 | 1)")), is(equalTo(true)));
+        try {
+            parser.parse(bytes("(1 ^ 0) | ~(0 | 1"));
+        } catch (SyntaxException e) {
+            assertThat(e.getMessage(), containsString("unclosed ("));
+            return;
+        }
+        throw new AssertionError("expected a SyntaxException");
+    }
+
+    @Test
+    public void allowsTheCharactersOfTokenClasses() throws IOException, BNFGrammarException {
+        ParseTable table = new ParseTable(new Grammar(new StringReader(String.join("\n", Arrays.asList(
+                "<S> ::= <E>",
+                "<E> ::= '['<E>']'",
+                "<E> ::= [identifier]'=='[number]")))));
+        table.generate();
+        Prescanner identifiers = new Prescanner(table);
+
+        assertThat(identifiers.checkedPairs(), contains("[]"));
+        assertThat(identifiers.scan(bytes("[[ max_Size == 12.5 ]]")), is(nullValue()));
+        assertThat(identifiers.scan(bytes("[[ max-size == 12.5 ]]")).offset(), is(equalTo(6L)));
+    }
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
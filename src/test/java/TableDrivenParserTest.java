@@ -1,6 +1,15 @@
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -64,4 +73,171 @@ public class TableDrivenParserTest {
     public void recognizesComplexBooleanExpression() throws SyntaxException {
         assertThat(parser.parse("1 | 1 ^ ~0 | ((1 ^ 0) | ~1)"), is(equalTo(true)));
     }
+
+    @Test(expected = SyntaxException.class)
+    public void doesNotTreatEndOfInputMarkerInInputAsEndOfInput() throws SyntaxException {
+        parser.parse("1$");
+    }
+
+    @Test
+    public void ignoresAllKindsOfWhitespace() throws SyntaxException {
+        assertThat(parser.parse(" ~ 1\t|\n0\r\n"), is(equalTo(true)));
+    }
+
+    @Test
+    public void failedParseDoesNotAffectTheNextParse() throws SyntaxException {
+        try {
+            parser.parse("((1 ^");
+        } catch (SyntaxException expected) {
+        }
+        assertThat(parser.parse("1"), is(equalTo(true)));
+    }
+
+    @Test
+    public void sharedParserGivesTheSameResultsOnManyThreads() throws Exception {
+        final String[] inputs = { "1", "(1", "~(1 | 0) ^ 1", "1 + 1", "((0))", "1)", "1 | 1 ^ ~0 | ((1 ^ 0) | ~1)", "~" };
+        final boolean[] valid = { true, false, true, false, true, false, true, false };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for(int thread = 0; thread < 8; thread++) {
+                final int offset = thread;
+                results.add(executor.submit(() -> {
+                    int mismatches = 0;
+                    for(int i = 0; i < 20000; i++) {
+                        int which = (i + offset) % inputs.length;
+                        boolean accepted;
+                        try {
+                            accepted = parser.parse(inputs[which]);
+                        } catch (SyntaxException e) {
+                            accepted = false;
+                        }
+                        if(accepted != valid[which]) {
+                            ++mismatches;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            for(Future<Integer> result : results) {
+                assertThat(result.get(), is(equalTo(0)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parsesFromReader() throws SyntaxException, IOException {
+        TableDrivenParser tableDrivenParser = new TableDrivenParser(grammar);
+        assertThat(tableDrivenParser.parse(new StringReader("~(1 | 0) ^ 1")), is(equalTo(true)));
+    }
+
+    @Test
+    public void parsesFromByteChannel() throws SyntaxException, IOException {
+        TableDrivenParser tableDrivenParser = new TableDrivenParser(grammar);
+        byte[] input = "1 | 1 ^ ~0 | ((1 ^ 0) | ~1)".getBytes(StandardCharsets.ISO_8859_1);
+        assertThat(tableDrivenParser.parse(Channels.newChannel(new ByteArrayInputStream(input))), is(equalTo(true)));
+    }
+
+    @Test
+    public void parsesCharBuffer() throws SyntaxException, BNFGrammarException {
+        TableDrivenParser tableDrivenParser = new TableDrivenParser(grammar);
+        assertThat(tableDrivenParser.parse(CharBuffer.wrap("(1) ^ 0")), is(equalTo(true)));
+    }
+
+    @Test
+    public void reportsOffsetOfUnrecognizedSymbol() throws IOException, BNFGrammarException {
+        TableDrivenParser tableDrivenParser = new TableDrivenParser(grammar);
+        try {
+            tableDrivenParser.parse(new StringReader("1 | 0 + 1"));
+        } catch (SyntaxException e) {
+            assertThat(e.getOffset(), is(equalTo(6L)));
+            return;
+        }
+        throw new AssertionError("expected a SyntaxException");
+    }
+
+    @Test
+    public void reportsErrorsWithoutStackTraces() throws BNFGrammarException {
+        TableDrivenParser tableDrivenParser = new TableDrivenParser(grammar);
+        try {
+            tableDrivenParser.parse("1 | | 0");
+        } catch (SyntaxException e) {
+            assertThat(e.getStackTrace().length, is(equalTo(0)));
+            return;
+        }
+        throw new AssertionError("expected a SyntaxException");
+    }
+
+    @Test
+    public void reportsOffsetOfEndOfInput() throws IOException, BNFGrammarException {
+        TableDrivenParser tableDrivenParser = new TableDrivenParser(grammar);
+        try {
+            tableDrivenParser.parse(new StringReader("(1 | 0"));
+        } catch (SyntaxException e) {
+            assertThat(e.getOffset(), is(equalTo(6L)));
+            return;
+        }
+        throw new AssertionError("expected a SyntaxException");
+    }
+
+    @Test
+    public void streamsInputMuchLargerThanItsBuffer() throws SyntaxException, IOException, BNFGrammarException {
+        TableDrivenParser tableDrivenParser = new TableDrivenParser(grammar);
+        assertThat(tableDrivenParser.parse(new RepeatingReader("1 | ", 4_000_000, "0")), is(equalTo(true)));
+    }
+
+    @Test
+    public void rejectsTerminalsLongerThanTheBuffer() throws IOException, BNFGrammarException, SyntaxException {
+        TableDrivenParser tableDrivenParser = new TableDrivenParser(new Grammar(
+                new StringReader("<S> ::= [identifier]")));
+        assertThat(tableDrivenParser.parse(new RepeatingReader("a", TableDrivenParser.MAX_BUFFERED - 1, "")),
+                   is(equalTo(true)));
+        try {
+            tableDrivenParser.parse(new RepeatingReader("a", TableDrivenParser.MAX_BUFFERED, ""));
+        } catch (ParseLimitException e) {
+            assertThat(e.getLimit(), is(equalTo(ParseLimitException.Limit.TOKEN_LENGTH)));
+            assertThat(e.getOffset(), is(equalTo(0L)));
+            return;
+        }
+        throw new AssertionError("expected a ParseLimitException");
+    }
+
+    /**
+     * Produces a long input on the fly, so it never has to be held in memory.
+     */
+    private static class RepeatingReader extends Reader {
+        private final String unit;
+        private final String last;
+        private long remaining;
+        private int position;
+
+        RepeatingReader(String unit, long times, String last) {
+            this.unit = unit;
+            this.last = last;
+            this.remaining = times;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            String current = remaining > 0 ? unit : last;
+            if(remaining < 0) {
+                return -1;
+            }
+            int count = Math.min(length, current.length() - position);
+            current.getChars(position, position + count, buffer, offset);
+            position += count;
+            if(position == current.length()) {
+                position = 0;
+                --remaining;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -0,0 +1,198 @@
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ValidationServerTest {
+    private ExecutorService workers = Executors.newFixedThreadPool(4);
+    private ExecutorService clients = Executors.newCachedThreadPool();
+    private ValidationServer server;
+    private Thread serverThread;
+
+    public ValidationServerTest() throws IOException, BNFGrammarException {
+        start(new TableDrivenParser(new Grammar("language.bnf")), workers);
+    }
+
+    private void start(Parser parser, ExecutorService workers) throws IOException {
+        this.server = new ValidationServer(parser, workers, new InetSocketAddress("localhost", 0));
+        this.serverThread = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        serverThread.start();
+    }
+
+    @After
+    public void stopServer() throws InterruptedException {
+        server.close();
+        serverThread.join(5000);
+        workers.shutdown();
+        clients.shutdown();
+    }
+
+    @Test
+    public void answersEveryLineInOrder() throws IOException {
+        List<String> answers = send("1 | 0", "(1", "", "~0 ^ 1\r");
+
+        assertThat(answers, hasSize(4));
+        assertThat(answers.get(0), is(equalTo("0: valid")));
+        assertThat(answers.get(1), startsWith("1: "));
+        assertThat(answers.get(2), startsWith("2: "));
+        assertThat(answers.get(3), is(equalTo("3: valid")));
+    }
+
+    @Test
+    public void pipelinesManyLinesPerConnection() throws IOException {
+        String[] lines = new String[20000];
+        for(int i = 0; i < lines.length; i++) {
+            lines[i] = i % 7 == 0 ? "1 |" : "(1 ^ " + (i % 2) + ") | ~0";
+        }
+        List<String> answers = send(lines);
+
+        assertThat(answers, hasSize(lines.length));
+        for(int i = 0; i < lines.length; i++) {
+            assertThat(answers.get(i), startsWith(i + ": "));
+            assertThat(answers.get(i).endsWith(": valid"), is(equalTo(i % 7 != 0)));
+        }
+    }
+
+    @Test
+    public void servesManyClientsAtOnce() throws Exception {
+        List<Future<List<String>>> results = new ArrayList<>();
+        for(int client = 0; client < 16; client++) {
+            results.add(clients.submit(() -> send("1", "0 ^", "~(1)")));
+        }
+        for(Future<List<String>> result : results) {
+            List<String> answers = result.get();
+            assertThat(answers, hasSize(3));
+            assertThat(answers.get(0), is(equalTo("0: valid")));
+            assertThat(answers.get(1), not(endsWith("valid")));
+            assertThat(answers.get(2), is(equalTo("2: valid")));
+        }
+    }
+
+    @Test
+    public void rejectsLinesThatAreTooLong() throws IOException {
+        StringBuilder longLine = new StringBuilder();
+        while(longLine.length() <= ValidationServer.MAX_LINE_LENGTH) {
+            longLine.append("1 | ");
+        }
+        List<String> answers = send(longLine.append('1').toString(), "1");
+
+        assertThat(answers, hasSize(2));
+        assertThat(answers.get(0), containsString("Line longer than"));
+        assertThat(answers.get(1), is(equalTo("1: valid")));
+    }
+
+    @Test
+    public void answersLinesThatFailWithAnError() throws IOException, InterruptedException {
+        server.close();
+        serverThread.join(5000);
+        Parser parser = input -> {
+            if(input.equals("boom")) {
+                throw new IllegalStateException("boom");
+            }
+            return true;
+        };
+        start(parser, workers);
+        List<String> answers = send("1", "boom", "0");
+
+        assertThat(answers, contains("0: valid", "1: Internal error", "2: valid"));
+        assertThat(send("1"), contains("0: valid"));
+    }
+
+    @Test
+    public void answersLinesTheWorkersRefuse() throws IOException, InterruptedException {
+        server.close();
+        serverThread.join(5000);
+        ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+        start(input -> true, stopped);
+        List<String> answers = send("1", "0");
+
+        assertThat(answers, hasSize(2));
+        assertThat(answers.get(0), startsWith("0: Not validated"));
+        assertThat(answers.get(1), startsWith("1: Not validated"));
+    }
+
+    @Test
+    public void stopsSplittingLinesWhileTooManyWaitForAnAnswer() throws Exception {
+        server.close();
+        serverThread.join(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch filled = new CountDownLatch(ValidationServer.MAX_PENDING);
+        ThreadPoolExecutor blocked = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(Runnable task) {
+                super.execute(task);
+                filled.countDown();
+            }
+        };
+        start(input -> {
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, blocked);
+        String[] lines = new String[3 * ValidationServer.MAX_PENDING];
+        Arrays.fill(lines, "1");
+        Future<List<String>> answers = clients.submit(() -> send(lines));
+
+        assertThat(filled.await(5, TimeUnit.SECONDS), is(equalTo(true)));
+        // a single read holds more lines than that, give the server time to split them
+        Thread.sleep(100);
+        assertThat(blocked.getTaskCount(), is(equalTo((long) ValidationServer.MAX_PENDING)));
+        release.countDown();
+        assertThat(answers.get(), hasSize(lines.length));
+        assertThat(answers.get().get(lines.length - 1), is(equalTo((lines.length - 1) + ": valid")));
+        blocked.shutdown();
+    }
+
+    /**
+     * Sends all lines, closes the output and reads the answers until the server closes the connection.
+     */
+    private List<String> send(String... lines) throws IOException {
+        try(Socket socket = new Socket("localhost", server.address().getPort())) {
+            // write from another thread, so a server that stops reading cannot block the test
+            Future<?> writing = clients.submit(() -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                                                                          StandardCharsets.UTF_8));
+                for(String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+                writer.flush();
+                socket.shutdownOutput();
+                return null;
+            });
+            List<String> answers = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                                                             StandardCharsets.UTF_8));
+            String answer;
+            while((answer = reader.readLine()) != null) {
+                answers.add(answer);
+            }
+            writing.get();
+            return answers;
+        } catch (Exception e) {
+            if(e instanceof IOException) {
+                throw (IOException) e;
+            }
+            throw new IllegalStateException(e);
+        }
+    }
+}